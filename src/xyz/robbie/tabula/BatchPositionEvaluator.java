@@ -0,0 +1,43 @@
+package xyz.robbie.tabula;
+
+/**
+ * BatchPositionEvaluator is a PositionEvaluator which can also evaluate many positions in one call, as a search does
+ * for all the turns of one roll. The positions are first encoded as columns of a float[] with each input in a row of
+ * its own (struct of arrays), so that the evaluator can work through one input of every position at a time.
+ **/
+
+public interface BatchPositionEvaluator extends PositionEvaluator {
+
+    /**
+     * @return the number of inputs, which is the number of rows a batch needs
+     **/
+    int getNumberOfInputs();
+
+    /**
+     * Write the inputs for a position into one column of a batch
+     *
+     * @param board a position which neither colour has won
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @param inputs the batch, with input i of the position in column p at inputs[i * stride + p]
+     *
+     * @param stride the length of each row of the batch, which is the most positions it can hold
+     *
+     * @param position the column to write the inputs into
+     **/
+    void encode(SearchBoardInterface board, Colour colour, float[] inputs, int stride, int position);
+
+    /**
+     * Evaluate the positions in the first columns of a batch, without creating an object for each position
+     *
+     * @param inputs the batch, as filled in by encode()
+     *
+     * @param stride the length of each row of the batch
+     *
+     * @param numberOfPositions the number of columns to evaluate
+     *
+     * @param values the array to write the value of the position in each column to, from -WIN to WIN as in evaluate()
+     **/
+    void evaluate(float[] inputs, int stride, int numberOfPositions, double[] values);
+}
@@ -108,6 +108,57 @@ public class BoardTestBasic {
 		assertEquals(b.getBoardLocation(5).numberOfPieces(B), 1);
 	}
 
+	@Test
+	public void unmake_restores_knock() throws Exception {
+		m.setSourceLocation(0);
+		m.setDiceValue(5);
+		b.makeMove(G,m);
+		int undo = ((SearchBoardInterface) b).makeUndoableMove(B,m);
+		assertEquals(k.numberOfPieces(G), 1);
+		((SearchBoardInterface) b).unmakeMove(undo);
+		assertEquals(k.numberOfPieces(G), 0);
+		assertEquals(b.getBoardLocation(5).numberOfPieces(G), 1);
+		assertEquals(b.getBoardLocation(5).numberOfPieces(B), 0);
+		assertEquals(s.numberOfPieces(B), 15);
+	}
+
+	@Test
+	public void unmake_returns_knocked_piece() throws Exception {
+		m.setSourceLocation(0);
+		m.setDiceValue(5);
+		b.makeMove(G,m);
+		b.makeMove(B,m);
+		n.setSourceLocation(0);
+		n.setDiceValue(3);
+		int undo = ((SearchBoardInterface) b).makeUndoableMove(G,n);
+		assertEquals(k.numberOfPieces(G), 0);
+		assertEquals(b.getBoardLocation(3).numberOfPieces(G), 1);
+		((SearchBoardInterface) b).unmakeMove(undo);
+		assertEquals(k.numberOfPieces(G), 1);
+		assertEquals(s.numberOfPieces(G), 14);
+		assertEquals(b.getBoardLocation(3).numberOfPieces(G), 0);
+	}
+
+	@Test
+	public void illegal_turn_leaves_board_unchanged() throws Exception {
+		m.setSourceLocation(0);
+		m.setDiceValue(5);
+		n.setSourceLocation(12);
+		n.setDiceValue(4);
+		t.addMove(m);
+		t.addMove(n);
+		List<Integer> dice = new ArrayList<>();
+		dice.add(4);
+		dice.add(5);
+		try {
+			b.takeTurn(G, t, dice);
+			fail("Turn should have been illegal");
+		} catch (IllegalTurnException ex) {
+			assertEquals(s.numberOfPieces(G), 15);
+			assertEquals(b.getBoardLocation(5).numberOfPieces(G), 0);
+		}
+	}
+
 	@Test
 	public void piece_can_finish() throws Exception {
 		l1 = b.getBoardLocation(23);
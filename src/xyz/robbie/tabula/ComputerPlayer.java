@@ -1,8 +1,6 @@
 package xyz.robbie.tabula;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Player represents a player in the game of tabula
@@ -15,29 +13,17 @@ import java.util.Set;
 public class ComputerPlayer implements PlayerInterface {
     private final String typeOfPlayer = "computer"; // This is used for Gson so that we have a string representation of what type of player this is
 
+    private transient TurnGenerator turnGenerator;
+
+    public ComputerPlayer() {
+        turnGenerator = new TurnGenerator();
+    }
+
     public TurnInterface getTurn(Colour colour, BoardInterface board, List<Integer> diceValues) throws PauseException {
-        String c = colour.toString().toUpperCase();
-
-        TurnInterface turn = new Turn();
-
-        while(diceValues.size() != 0) {
-            ArrayList<Integer> wrappedFirstDieValue = new ArrayList<Integer>();
-            wrappedFirstDieValue.add(diceValues.get(0)); // Wrap it because possibleMoves() requires a List of die values
-            Set<MoveInterface> possibleMoves = board.possibleMoves(colour, wrappedFirstDieValue);
-            if(possibleMoves.size() == 0) {
-                break;
-            }
-            MoveInterface chosenMove = possibleMoves.iterator().next(); // i.e. the 'first' element in possibleMoves
-            try {
-                board.makeMove(colour, chosenMove);
-                turn.addMove(chosenMove); // i.e. the 'first' element in possibleMoves
-            } catch (IllegalTurnException | IllegalMoveException e) {
-                // Should never happen
-                e.printStackTrace();
-            }
-            diceValues.remove(0);
-        }
-        return turn;
+
+        /* Take the first of the legal turns, which all use as many of the dice as possible */
+        turnGenerator.generateTurns(PackedBoard.copyOf(board), colour, diceValues);
+        return EncodedTurn.toTurn(turnGenerator.getTurn(0));
     }
 
     public String toString() {
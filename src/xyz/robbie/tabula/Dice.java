@@ -19,6 +19,16 @@ public class Dice implements DiceInterface {
         d2 = new Die();
     }
 
+    /**
+     * @param random the random stream for both dice to use instead of the shared randomiser, for example one from
+     *               RandomStreams.forGame(). Setting the seed of either die reseeds the stream for both.
+     */
+    public Dice(SplittableRandom random) {
+        Die.RandomSource source = new Die.RandomSource(random);
+        d1 = new Die(source);
+        d2 = new Die(source);
+    }
+
     /**
      * @return true if and only if both of the dice have been rolled
      **/
@@ -40,19 +50,16 @@ public class Dice implements DiceInterface {
      * @throws NotRolledYetException if either of the dice have not been rolled yet
      **/
     public List<Integer> getValues() throws NotRolledYetException {
-        List<Integer> values = new ArrayList<Integer>();
-        if (d1.getValue() == d2.getValue()) // Rolled a double
-        {
-            /* The same value four times */
-            values.add(d1.getValue());
-            values.add(d1.getValue());
-            values.add(d1.getValue());
-            values.add(d1.getValue());
-        } else {
-            values.add(d1.getValue());
-            values.add(d2.getValue());
-        }
-        return values;
+        return getRoll().getValues();
+    }
+
+    /**
+     * @return the roll shown by the dice, which is one of the shared DiceRoll instances so no object is created
+     *
+     * @throws NotRolledYetException if either of the dice have not been rolled yet
+     **/
+    public DiceRoll getRoll() throws NotRolledYetException {
+        return DiceRoll.of(d1.getValue(), d2.getValue());
     }
 
     /**
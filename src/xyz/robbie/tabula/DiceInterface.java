@@ -23,12 +23,19 @@ public interface DiceInterface {
     void roll();
 
     /**
-     * @return four numbers if there is a double, otherwise two
+     * @return four numbers if there is a double, otherwise two, in a list which must not be changed
      *
      * @throws NotRolledYetException if either of the dice have not been rolled yet
      **/
     List<Integer> getValues() throws NotRolledYetException;
 
+    /**
+     * @return the roll shown by the dice
+     *
+     * @throws NotRolledYetException if either of the dice have not been rolled yet
+     **/
+    DiceRoll getRoll() throws NotRolledYetException;
+
     
     /**
      * clear both of the dice so they have no value until they are rolled again
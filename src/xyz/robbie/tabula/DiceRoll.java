@@ -0,0 +1,159 @@
+package xyz.robbie.tabula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DiceRoll is an immutable roll of a pair of dice. The order of the two dice does not matter, so there are only 21
+ * distinct rolls, and there is exactly one instance of each, so rolls can be compared with == and getting one never
+ * creates an object.
+ *
+ * Each roll knows how likely it is to be thrown and the sequence of die values it gives a player: four of the same
+ * value for a double, otherwise the two values.
+ */
+public final class DiceRoll {
+
+    public static final int NUMBER_OF_ROLLS = 21;
+
+    /* The number of equally likely ordered outcomes of throwing two dice */
+    public static final int NUMBER_OF_OUTCOMES = DieInterface.NUMBER_OF_SIDES_ON_DIE * DieInterface.NUMBER_OF_SIDES_ON_DIE;
+
+    /* The canonical rolls in order of smaller value then larger value, so 1-1, 1-2, ... 1-6, 2-2, ... 6-6 */
+    private static final DiceRoll[] ROLLS = new DiceRoll[NUMBER_OF_ROLLS];
+
+    /* Indexed by ((dieValue1 - 1) * NUMBER_OF_SIDES_ON_DIE + dieValue2 - 1), in either order */
+    private static final DiceRoll[] BY_VALUES = new DiceRoll[NUMBER_OF_OUTCOMES];
+
+    private static final List<DiceRoll> ALL;
+
+    static {
+        int index = 0;
+        for (int smaller = 1; smaller <= DieInterface.NUMBER_OF_SIDES_ON_DIE; smaller++) {
+            for (int larger = smaller; larger <= DieInterface.NUMBER_OF_SIDES_ON_DIE; larger++) {
+                DiceRoll roll = new DiceRoll(index, smaller, larger);
+                ROLLS[index++] = roll;
+                BY_VALUES[(smaller - 1) * DieInterface.NUMBER_OF_SIDES_ON_DIE + larger - 1] = roll;
+                BY_VALUES[(larger - 1) * DieInterface.NUMBER_OF_SIDES_ON_DIE + smaller - 1] = roll;
+            }
+        }
+        ALL = Collections.unmodifiableList(Arrays.asList(ROLLS));
+    }
+
+    private final int index;
+    private final int smallerValue;
+    private final int largerValue;
+    private final int[] dieValues;
+    private final List<Integer> values;
+
+    private DiceRoll(int index, int smallerValue, int largerValue) {
+        this.index = index;
+        this.smallerValue = smallerValue;
+        this.largerValue = largerValue;
+        if (smallerValue == largerValue) {
+            dieValues = new int[]{smallerValue, smallerValue, smallerValue, smallerValue};
+        } else {
+            dieValues = new int[]{smallerValue, largerValue};
+        }
+
+        List<Integer> list = new ArrayList<Integer>(dieValues.length);
+        for (int value : dieValues) {
+            list.add(value);
+        }
+        values = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @param dieValue1 the value of one die, from 1 to NUMBER_OF_SIDES_ON_DIE
+     * @param dieValue2 the value of the other die, from 1 to NUMBER_OF_SIDES_ON_DIE
+     * @return the roll with those values, in either order
+     */
+    public static DiceRoll of(int dieValue1, int dieValue2) {
+        if (dieValue1 < 1 || dieValue1 > DieInterface.NUMBER_OF_SIDES_ON_DIE || dieValue2 < 1 || dieValue2 > DieInterface.NUMBER_OF_SIDES_ON_DIE) {
+            throw new IllegalArgumentException("Die values must be between 1 and " + DieInterface.NUMBER_OF_SIDES_ON_DIE + ".");
+        }
+        return BY_VALUES[(dieValue1 - 1) * DieInterface.NUMBER_OF_SIDES_ON_DIE + dieValue2 - 1];
+    }
+
+    /**
+     * @param index the index of the roll, from 0 to NUMBER_OF_ROLLS - 1
+     * @return the roll with that index
+     */
+    public static DiceRoll get(int index) {
+        return ROLLS[index];
+    }
+
+    /**
+     * @return all 21 rolls in order of index, as an unmodifiable list
+     */
+    public static List<DiceRoll> all() {
+        return ALL;
+    }
+
+    /**
+     * @return the index of the roll, from 0 to NUMBER_OF_ROLLS - 1
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getSmallerValue() {
+        return smallerValue;
+    }
+
+    public int getLargerValue() {
+        return largerValue;
+    }
+
+    public boolean isDouble() {
+        return smallerValue == largerValue;
+    }
+
+    /**
+     * @return the number of the 36 ordered outcomes of throwing two dice which give this roll: 1 for a double, otherwise 2
+     */
+    public int getWeight() {
+        return isDouble() ? 1 : 2;
+    }
+
+    /**
+     * @return the chance of throwing this roll
+     */
+    public double getProbability() {
+        return (double) getWeight() / NUMBER_OF_OUTCOMES;
+    }
+
+    /**
+     * @return the number of die values the roll gives, which is 4 for a double, otherwise 2
+     */
+    public int getNumberOfDice() {
+        return dieValues.length;
+    }
+
+    /**
+     * @param i the position of the die value, from 0 to getNumberOfDice() - 1
+     * @return the die value at that position
+     */
+    public int getDieValue(int i) {
+        return dieValues[i];
+    }
+
+    /**
+     * @return the die values, shared by every caller so they must not be changed
+     */
+    int[] dieValues() {
+        return dieValues;
+    }
+
+    /**
+     * @return the die values as an unmodifiable list: four values if there is a double, otherwise two
+     */
+    public List<Integer> getValues() {
+        return values;
+    }
+
+    public String toString() {
+        return smallerValue + "-" + largerValue;
+    }
+}
@@ -0,0 +1,163 @@
+package xyz.robbie.tabula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * DiceSequences holds pre-generated sequences of rolls, one for each game, so that the same dice can be replayed in
+ * more than one game. Playing each sequence twice with the players swapping colours gives both players exactly the
+ * same luck, which removes most of the noise when comparing them (common random numbers).
+ *
+ * Rolls are stored as their DiceRoll index in 5 bits, twelve to a long, so a sequence of 256 rolls takes 176 bytes.
+ * Games that need more rolls than were stored carry on with the same random stream the stored rolls came from, so a
+ * replayed game gets the same dice as game number (sequence) of a Simulation run with the same seed.
+ */
+public final class DiceSequences {
+
+    public static final int DEFAULT_ROLLS_PER_SEQUENCE = 256;
+
+    private static final int BITS_PER_ROLL = 5;
+    private static final int ROLLS_PER_WORD = Long.SIZE / BITS_PER_ROLL;
+    private static final long ROLL_MASK = (1L << BITS_PER_ROLL) - 1;
+
+    private final long seed;
+    private final int numberOfSequences;
+    private final int rollsPerSequence;
+    private final int wordsPerSequence;
+    private final long[] words;
+
+    private DiceSequences(long seed, int numberOfSequences, int rollsPerSequence) {
+        this.seed = seed;
+        this.numberOfSequences = numberOfSequences;
+        this.rollsPerSequence = rollsPerSequence;
+        this.wordsPerSequence = (rollsPerSequence + ROLLS_PER_WORD - 1) / ROLLS_PER_WORD;
+        this.words = new long[Math.multiplyExact(numberOfSequences, wordsPerSequence)];
+    }
+
+    /**
+     * Generate the sequences for a seed. Sequence i comes from RandomStreams.forGame(i) for the seed.
+     *
+     * @param seed the root seed
+     * @param numberOfSequences the number of sequences, one per pair of games
+     * @param rollsPerSequence the number of rolls to store for each sequence
+     * @return the sequences
+     */
+    public static DiceSequences generate(long seed, int numberOfSequences, int rollsPerSequence) {
+        DiceSequences sequences = new DiceSequences(seed, numberOfSequences, rollsPerSequence);
+        RandomStreams streams = new RandomStreams(seed);
+        for (int sequence = 0; sequence < numberOfSequences; sequence++) {
+            SplittableRandom random = streams.forGame(sequence);
+            for (int i = 0; i < rollsPerSequence; i++) {
+                int index = sequence * sequences.wordsPerSequence + i / ROLLS_PER_WORD;
+                sequences.words[index] |= (long) nextRoll(random).getIndex() << (i % ROLLS_PER_WORD * BITS_PER_ROLL);
+            }
+        }
+        return sequences;
+    }
+
+    /* Roll two dice in the same way as Die does */
+    private static DiceRoll nextRoll(SplittableRandom random) {
+        int dieValue1 = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+        int dieValue2 = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+        return DiceRoll.of(dieValue1, dieValue2);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getNumberOfSequences() {
+        return numberOfSequences;
+    }
+
+    public int getRollsPerSequence() {
+        return rollsPerSequence;
+    }
+
+    /**
+     * @return the memory used by the stored rolls
+     */
+    public long getSizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * @param sequence the index of the sequence
+     * @param i the index of the roll in the sequence, less than getRollsPerSequence()
+     * @return the roll
+     */
+    public DiceRoll getRoll(int sequence, int i) {
+        long word = words[sequence * wordsPerSequence + i / ROLLS_PER_WORD];
+        return DiceRoll.get((int) ((word >>> (i % ROLLS_PER_WORD * BITS_PER_ROLL)) & ROLL_MASK));
+    }
+
+    /**
+     * @param sequence the index of the sequence
+     * @return new dice which roll the rolls of the sequence in order, for one game
+     */
+    public DiceInterface dice(int sequence) {
+        return new ReplayDice(sequence);
+    }
+
+    /**
+     * ReplayDice rolls the stored rolls of one sequence, then carries on with the random stream they came from.
+     */
+    private final class ReplayDice implements DiceInterface {
+        private final int sequence;
+        private int rollsMade;
+        private DiceRoll roll;
+        private SplittableRandom overflow;
+
+        ReplayDice(int sequence) {
+            this.sequence = sequence;
+        }
+
+        public boolean haveRolled() {
+            return roll != null;
+        }
+
+        public void roll() {
+            if (rollsMade < rollsPerSequence) {
+                roll = DiceSequences.this.getRoll(sequence, rollsMade);
+            } else {
+                if (overflow == null) {
+                    /* Skip over the stored rolls to where the stream left off */
+                    overflow = new RandomStreams(seed).forGame(sequence);
+                    for (int i = 0; i < rollsPerSequence; i++) {
+                        nextRoll(overflow);
+                    }
+                }
+                roll = nextRoll(overflow);
+            }
+            rollsMade++;
+        }
+
+        public List<Integer> getValues() throws NotRolledYetException {
+            return getRoll().getValues();
+        }
+
+        public DiceRoll getRoll() throws NotRolledYetException {
+            if (roll == null) {
+                throw new NotRolledYetException("Dice have not yet been rolled.");
+            }
+            return roll;
+        }
+
+        public void clear() {
+            roll = null;
+        }
+
+        public List<DieInterface> getDice() {
+            List<DieInterface> dice = new ArrayList<DieInterface>();
+            for (int i = 0; i < 2; i++) {
+                Die die = new Die();
+                if (roll != null) {
+                    die.setValue((i == 0) ? roll.getSmallerValue() : roll.getLargerValue());
+                }
+                dice.add(die);
+            }
+            return dice;
+        }
+    }
+}
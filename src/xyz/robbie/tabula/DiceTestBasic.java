@@ -59,4 +59,84 @@ public class DiceTestBasic {
         ds.roll();
         assertEquals(ds.getValues().size(), 4);
     }
+
+    @Test
+    public void same_stream_gives_same_rolls() throws Exception {
+        Dice first = new Dice(new RandomStreams(7).forGame(3));
+        Dice second = new Dice(new RandomStreams(7).forGame(3));
+        for (int i = 0; i < 20; i++) {
+            first.roll();
+            second.roll();
+            assertEquals(first.getValues(), second.getValues());
+        }
+    }
+
+    @Test
+    public void own_stream_is_not_reseeded_by_shared_seed() throws Exception {
+        Die own = new Die(new java.util.SplittableRandom(1));
+        own.roll();
+        int firstValue = own.getValue();
+        own.setSeed(1);
+        d.setSeed(99);
+        own.roll();
+        assertEquals(firstValue, own.getValue());
+    }
+
+    @Test
+    public void reseeding_both_dice_of_a_stream_does_not_give_only_doubles() throws Exception {
+        Dice dice = new Dice(new RandomStreams(1).forGame(0));
+        for (DieInterface die : dice.getDice()) {
+            die.setSeed(42);
+        }
+        int doubles = 0;
+        for (int i = 0; i < 100; i++) {
+            dice.roll();
+            if (dice.getRoll().isDouble()) {
+                doubles++;
+            }
+        }
+        assertEquals(true, doubles < 50);
+
+        /* Both dice still roll from the one reseeded stream */
+        Dice reseeded = new Dice(new RandomStreams(2).forGame(0));
+        reseeded.getDice().get(0).setSeed(42);
+        dice.getDice().get(0).setSeed(42);
+        for (int i = 0; i < 20; i++) {
+            dice.roll();
+            reseeded.roll();
+            assertEquals(dice.getValues(), reseeded.getValues());
+        }
+    }
+
+    @Test
+    public void streams_differ_between_games() throws Exception {
+        RandomStreams streams = new RandomStreams(7);
+        assertEquals(false, streams.forGame(0).nextLong() == streams.forGame(1).nextLong());
+        assertEquals(false, streams.forGame(0).nextLong() == streams.forWorker(0).nextLong());
+    }
+
+    @Test
+    public void rolls_are_canonical() throws Exception {
+        double total = 0;
+        for (DiceRoll roll : DiceRoll.all()) {
+            total += roll.getProbability();
+            assertEquals(roll, DiceRoll.of(roll.getLargerValue(), roll.getSmallerValue()));
+            assertEquals(roll, DiceRoll.get(roll.getIndex()));
+            assertEquals(roll.isDouble() ? 4 : 2, roll.getValues().size());
+        }
+        assertEquals(DiceRoll.NUMBER_OF_ROLLS, DiceRoll.all().size());
+        assertEquals(1.0, total, 1e-12);
+    }
+
+    @Test
+    public void dice_give_shared_roll() throws Exception {
+        ds.roll();
+        assertEquals(true, ds.getRoll() == ds.getRoll());
+        assertEquals(ds.getRoll().getValues(), ds.getValues());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void roll_values_cannot_be_changed() throws Exception {
+        DiceRoll.of(3, 5).getValues().remove(0);
+    }
 }
@@ -1,6 +1,7 @@
 package xyz.robbie.tabula;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Die represents a single die.
@@ -9,11 +10,15 @@ import java.util.Random;
  *
  * Requires a constructor with no parameters. Initially the die has no value until it is rolled.
  *
- * A single static java.util.Random object should be the source of all randomisation.
+ * By default a single static java.util.Random object is the source of all randomisation. A die can instead be given
+ * its own SplittableRandom stream (see RandomStreams), so that games can be reproduced and dice in different threads
+ * do not contend on the shared generator. Dice which share a stream (such as the two of a Dice) hold it through one
+ * RandomSource, so that reseeding either of them reseeds the stream they both roll from.
  **/
 
 public class Die implements DieInterface {
     private static Random randomiser;
+    private transient RandomSource source; // null if using the shared randomiser
     private Integer value; // null if unrolled
 
     public Die() {
@@ -24,6 +29,33 @@ public class Die implements DieInterface {
         }
     }
 
+    /**
+     * @param random the random stream for this die to use instead of the shared randomiser. Dice which share a
+     *               stream must be rolled from one thread only
+     */
+    public Die(SplittableRandom random) {
+        this(new RandomSource(random));
+    }
+
+    /**
+     * @param source the holder of the random stream for this die to use, which other dice may share
+     */
+    Die(RandomSource source) {
+        this();
+        this.source = source;
+    }
+
+    /**
+     * RandomSource holds the stream that one or more dice roll from, so that it can be replaced for all of them at once
+     */
+    static final class RandomSource {
+        private SplittableRandom random;
+
+        RandomSource(SplittableRandom random) {
+            this.random = random;
+        }
+    }
+
     /**
      * @return false when first constructed or cleared, then true once rolled (unless it is then cleared)
      **/
@@ -35,7 +67,7 @@ public class Die implements DieInterface {
      * rolls the die to give a it a value in the range 1-NUMBER_OF_SIDES_ON_DIE (inclusive)
      */
     public void roll() {
-        value = randomiser.nextInt(NUMBER_OF_SIDES_ON_DIE) + 1; // nextInt(int bound) produces a random int between 0 (inc) and bound (exc), so add 1 to get a random int between 1 (inc) and bound (inc)
+        value = ((source != null) ? source.random.nextInt(NUMBER_OF_SIDES_ON_DIE) : randomiser.nextInt(NUMBER_OF_SIDES_ON_DIE)) + 1; // nextInt(int bound) produces a random int between 0 (inc) and bound (exc), so add 1 to get a random int between 1 (inc) and bound (inc)
     }
 
     /**
@@ -73,11 +105,16 @@ public class Die implements DieInterface {
     }
 
     /**
-     * sets the seed for the random number generator used by all dice
+     * sets the seed for the random number generator used by all dice, or if this die has its own stream, for the
+     * dice which share that stream
      *
      * @param seed the seed value to use for randomisation
      **/
     public void setSeed(long seed) {
-        randomiser.setSeed(seed);
+        if (source != null) {
+            source.random = new SplittableRandom(seed);
+        } else {
+            randomiser.setSeed(seed);
+        }
     }
 }
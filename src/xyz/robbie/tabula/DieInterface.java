@@ -51,7 +51,8 @@ public interface DieInterface{
     void clear();
 
     /**
-     * sets the seed for the random number generator used by all dice
+     * sets the seed for the random number generator used by all dice, or by all the dice sharing this die's stream
+     * if it has one of its own (see Die)
      *
      * @param seed the seed value to use for randomisation
      **/
@@ -0,0 +1,72 @@
+package xyz.robbie.tabula;
+
+/**
+ * EncodedMove packs a move into a single int, so that move generation and search can work with moves without
+ * creating a Move object for each one. Moves are only turned back into MoveInterface objects (see toMove()) where
+ * they are handed over to code which expects them, e.g. in a Turn.
+ *
+ * A move from source location s (0-24) using die value d (1-6) is encoded as s * NUMBER_OF_SIDES_ON_DIE + (d - 1),
+ * so every encoded move lies in the range 0 to NUMBER_OF_MOVES - 1 and fits in a single byte.
+ */
+public final class EncodedMove {
+
+    /**
+     * The number of different encoded moves
+     */
+    public static final int NUMBER_OF_MOVES = (BoardInterface.NUMBER_OF_LOCATIONS + 1) * DieInterface.NUMBER_OF_SIDES_ON_DIE;
+
+    /**
+     * The most moves that can be legal for one colour with a single die value, i.e. the size of buffer that
+     * SearchBoardInterface.generateMoves() needs
+     */
+    public static final int MAX_MOVES_PER_DIE = BoardInterface.NUMBER_OF_LOCATIONS + 1;
+
+    private EncodedMove() {
+    }
+
+    /**
+     * @param sourceLocation the location to move a piece from, in the range 0-24
+     * @param dieValue the value of the die to use, in the range 1-6
+     * @return the encoded move
+     */
+    public static int of(int sourceLocation, int dieValue) {
+        return sourceLocation * DieInterface.NUMBER_OF_SIDES_ON_DIE + (dieValue - 1);
+    }
+
+    /**
+     * @param move the move to encode
+     * @return the encoded move
+     */
+    public static int of(MoveInterface move) {
+        return of(move.getSourceLocation(), move.getDiceValue());
+    }
+
+    public static int sourceLocation(int move) {
+        return move / DieInterface.NUMBER_OF_SIDES_ON_DIE;
+    }
+
+    public static int dieValue(int move) {
+        return move % DieInterface.NUMBER_OF_SIDES_ON_DIE + 1;
+    }
+
+    /**
+     * @param move the encoded move
+     * @return a new Move equivalent to the encoded move
+     */
+    public static MoveInterface toMove(int move) {
+        Move m = new Move();
+        try {
+            m.setSourceLocation(sourceLocation(move));
+            m.setDiceValue(dieValue(move));
+        } catch (NoSuchLocationException | IllegalMoveException e) {
+            /* Should never be called for a move that was generated by a board */
+            e.printStackTrace();
+        }
+        return m;
+    }
+
+    /* For debugging */
+    public static String toString(int move) {
+        return "Move " + dieValue(move) + " spaces from location no. " + sourceLocation(move);
+    }
+}
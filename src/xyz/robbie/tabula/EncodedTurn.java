@@ -0,0 +1,124 @@
+package xyz.robbie.tabula;
+
+/**
+ * EncodedTurn packs a whole turn of up to four moves into a single int, one byte per move, so that turns can be
+ * generated, stored and compared without creating any objects.
+ *
+ * Byte i holds (encoded move + 1) for the (i + 1)th move of the turn, or 0 if the turn has fewer moves, so EMPTY is
+ * the turn in which no moves are made. Moves are encoded as described in EncodedMove.
+ */
+public final class EncodedTurn {
+
+    /**
+     * The turn in which no moves are made
+     */
+    public static final int EMPTY = 0;
+
+    /**
+     * The most moves there can be in one turn (when a double is thrown)
+     */
+    public static final int MAX_MOVES = 4;
+
+    private static final int BITS_PER_MOVE = 8;
+    private static final int MOVE_MASK = (1 << BITS_PER_MOVE) - 1;
+
+    private EncodedTurn() {
+    }
+
+    /**
+     * @param turn the encoded turn
+     * @param index the index of the move to replace, from 0 to MAX_MOVES - 1
+     * @param move the encoded move (see EncodedMove) to put at that index
+     * @return the encoded turn with the move at the given index replaced by the given move
+     */
+    public static int withMove(int turn, int index, int move) {
+        int shift = index * BITS_PER_MOVE;
+        return (turn & ~(MOVE_MASK << shift)) | ((move + 1) << shift);
+    }
+
+    /**
+     * @param turn the encoded turn
+     * @return the number of moves in the turn
+     */
+    public static int numberOfMoves(int turn) {
+        int numberOfMoves = 0;
+        while (numberOfMoves < MAX_MOVES && ((turn >>> (numberOfMoves * BITS_PER_MOVE)) & MOVE_MASK) != 0) {
+            numberOfMoves++;
+        }
+        return numberOfMoves;
+    }
+
+    /**
+     * @param turn the encoded turn
+     * @param index the index of the move, from 0 to numberOfMoves(turn) - 1
+     * @return the encoded move (see EncodedMove) at that index
+     */
+    public static int move(int turn, int index) {
+        return ((turn >>> (index * BITS_PER_MOVE)) & MOVE_MASK) - 1;
+    }
+
+    /**
+     * Make each of the moves of an encoded turn on a board in order, keeping their undo records so that the turn can
+     * be taken back with unmakeTurn(). If one of the moves is illegal then the board is left unchanged.
+     *
+     * @param board the board to make the moves on
+     * @param colour the colour to move
+     * @param turn the encoded turn
+     * @param undos the buffer to put the undo records in, which must have room for numberOfMoves(turn) after offset
+     * @param offset the index in undos of the undo record for the first move
+     * @return the number of moves made
+     * @throws IllegalMoveException if one of the moves is not legal
+     */
+    public static int makeTurn(SearchBoardInterface board, Colour colour, int turn, int[] undos, int offset) throws IllegalMoveException {
+        int numberOfMoves = numberOfMoves(turn);
+        for (int i = 0; i < numberOfMoves; i++) {
+            try {
+                undos[offset + i] = board.makeUndoableMove(colour, move(turn, i));
+            } catch (IllegalMoveException e) {
+                unmakeTurn(board, undos, offset, i);
+                throw e;
+            }
+        }
+        return numberOfMoves;
+    }
+
+    /**
+     * Take back the moves of a turn made by makeTurn()
+     *
+     * @param board the board the moves were made on
+     * @param undos the undo records filled in by makeTurn()
+     * @param offset the index in undos of the undo record for the first move
+     * @param numberOfMoves the number of moves made, as returned by makeTurn()
+     */
+    public static void unmakeTurn(SearchBoardInterface board, int[] undos, int offset, int numberOfMoves) {
+        for (int i = offset + numberOfMoves - 1; i >= offset; i--) {
+            board.unmakeMove(undos[i]);
+        }
+    }
+
+    /**
+     * @param turn the encoded turn
+     * @return a new Turn containing the moves of the encoded turn in order
+     */
+    public static TurnInterface toTurn(int turn) {
+        TurnInterface t = new Turn();
+        for (int i = 0; i < numberOfMoves(turn); i++) {
+            try {
+                t.addMove(EncodedMove.toMove(move(turn, i)));
+            } catch (IllegalTurnException e) {
+                // Will never be called as there are never more than four moves
+                e.printStackTrace();
+            }
+        }
+        return t;
+    }
+
+    /* For debugging */
+    public static String toString(int turn) {
+        String output = "Turn of " + numberOfMoves(turn) + " move" + (numberOfMoves(turn) == 1 ? "" : "s");
+        for (int i = 0; i < numberOfMoves(turn); i++) {
+            output += "\n" + EncodedMove.toString(move(turn, i));
+        }
+        return output;
+    }
+}
@@ -0,0 +1,439 @@
+package xyz.robbie.tabula;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExpectiminimaxPlayer is a computer player which searches a fixed number of plies ahead, averaging over the 21
+ * distinct rolls of the dice at each chance node, and uses a PositionEvaluator where the search stops.
+ *
+ * A ply is one player's turn, so a depth of 2 looks at every turn this player can take and every reply the opponent
+ * can make with each of the rolls they might throw. Chance nodes are pruned with the Star1 and Star2 algorithms
+ * (Ballard, 1983), which need the evaluator's values to lie between -WIN and WIN.
+ *
+ * The candidate turns at the root can be searched in parallel on a ForkJoinPool. Each task has its own scratch board
+ * and search buffers, and the tasks share only the evaluator, the transposition table and the best value so far.
+ * Players search on the calling thread unless given a parallelism, since the simulation harnesses already make a
+ * player for each of their threads. A player with its own pool should be closed when it is no longer needed.
+ *
+ * Each implementation requires a constructor with no parameters.
+ **/
+
+public class ExpectiminimaxPlayer implements PlayerInterface, AutoCloseable {
+    private final String typeOfPlayer = "expectiminimax"; // This is used for Gson so that we have a string representation of what type of player this is
+
+    public static final int DEFAULT_DEPTH = 2;
+
+    public static final long DEFAULT_TABLE_BYTES = 16L << 20;
+
+    private static final double WIN = PositionEvaluator.WIN;
+
+    private transient int depth;
+    private transient PositionEvaluator evaluator;
+    private transient TranspositionTable transpositionTable;
+    private transient int parallelism;
+    private transient OpeningBook openingBook;
+
+    /* The search used by the calling thread, and the pool for parallel searches which is created when first needed */
+    private transient Search search;
+    private transient ForkJoinPool pool;
+
+    public ExpectiminimaxPlayer() {
+        this(DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param depth the number of plies to search, at least 1
+     */
+    public ExpectiminimaxPlayer(int depth) {
+        this(depth, new HeuristicEvaluator());
+    }
+
+    /**
+     * @param depth the number of plies to search, at least 1
+     * @param evaluator the evaluator to use where the search stops
+     */
+    public ExpectiminimaxPlayer(int depth, PositionEvaluator evaluator) {
+        this(depth, evaluator, new TranspositionTable(DEFAULT_TABLE_BYTES));
+    }
+
+    /**
+     * @param depth the number of plies to search, at least 1
+     * @param evaluator the evaluator to use where the search stops
+     * @param transpositionTable the table to cache search results in, or null to search without one
+     */
+    public ExpectiminimaxPlayer(int depth, PositionEvaluator evaluator, TranspositionTable transpositionTable) {
+        this(depth, evaluator, transpositionTable, 1);
+    }
+
+    /**
+     * @param depth the number of plies to search, at least 1
+     * @param evaluator the evaluator to use where the search stops, which must be safe to call from several threads
+     *                  at once if parallelism is more than 1
+     * @param transpositionTable the table to cache search results in, or null to search without one
+     * @param parallelism the number of threads to search with, where 1 searches on the calling thread only
+     */
+    public ExpectiminimaxPlayer(int depth, PositionEvaluator evaluator, TranspositionTable transpositionTable, int parallelism) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The search depth must be at least 1 ply.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The search needs at least 1 thread.");
+        }
+        this.depth = depth;
+        this.evaluator = evaluator;
+        this.transpositionTable = transpositionTable;
+        this.parallelism = parallelism;
+        this.search = new Search();
+    }
+
+    /**
+     * @return the transposition table used by the search, or null if there is none
+     */
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * @return the number of threads the search uses
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Shut down the threads of the parallel search, if it has started any. The player can still be used afterwards,
+     * and starts new threads if it needs them.
+     */
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return the opening book the player takes turns from instead of searching, or null if it has none
+     */
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    /**
+     * @param openingBook the opening book to take turns from instead of searching, or null to always search
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public TurnInterface getTurn(Colour colour, BoardInterface board, List<Integer> diceValues) throws PauseException {
+        return EncodedTurn.toTurn(chooseTurn(PackedBoard.copyOf(board), colour, diceValues));
+    }
+
+    /**
+     * @param board the board to choose a turn on, which is left as it was found
+     * @param colour the colour to move
+     * @param diceValues the dice values available
+     * @return the encoded turn (see EncodedTurn) with the highest expected value
+     */
+    int chooseTurn(SearchBoardInterface board, Colour colour, List<Integer> diceValues) {
+        TurnGenerator generator = search.turnGenerators[depth];
+        int numberOfTurns = generator.generateTurns(board, colour, diceValues);
+        int[] turns = new int[numberOfTurns];
+        for (int i = 0; i < numberOfTurns; i++) {
+            turns[i] = generator.getTurn(i);
+        }
+        if (numberOfTurns == 1) {
+            return turns[0];
+        }
+        if (openingBook != null) {
+            int bookTurn = openingBook.legalTurn(board, colour, diceValues, generator, numberOfTurns);
+            if (bookTurn != EncodedTurn.EMPTY) {
+                return bookTurn;
+            }
+        }
+
+        /* Search the first turn on its own, so that the other turns can be pruned against its value */
+        RootSearch root = new RootSearch(board, colour, turns);
+        root.searchTurns(search, board, 0, 1);
+        if (parallelism == 1) {
+            root.searchTurns(search, board, 1, numberOfTurns);
+        } else {
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+            }
+            pool.invoke(new RootTask(root, 1, numberOfTurns));
+        }
+        return root.bestTurn();
+    }
+
+    /**
+     * RootSearch holds the candidate turns at the root and what is known about each, shared between the threads
+     * searching them. The best value found so far is shared too, so that every thread can prune with it.
+     */
+    private final class RootSearch {
+        private final SearchBoardInterface board;
+        private final Colour colour;
+        private final int[] turns;
+        private final double[] values;
+        private final boolean[] exact;
+
+        /* The bits of the best exact value found so far */
+        private final AtomicLong alpha = new AtomicLong(Double.doubleToLongBits(-WIN));
+
+        RootSearch(SearchBoardInterface board, Colour colour, int[] turns) {
+            this.board = board;
+            this.colour = colour;
+            this.turns = turns;
+            this.values = new double[turns.length];
+            this.exact = new boolean[turns.length];
+        }
+
+        /* Search the turns from index from up to (but not including) index to, on the given scratch board */
+        void searchTurns(Search search, SearchBoardInterface scratchBoard, int from, int to) {
+            for (int i = from; i < to; i++) {
+                double currentAlpha = Double.longBitsToDouble(alpha.get());
+                values[i] = search.turnValue(scratchBoard, colour, turns[i], depth, currentAlpha, WIN);
+
+                /* A value at or below alpha is only an upper bound, unless alpha is a certain loss */
+                exact[i] = values[i] > currentAlpha || currentAlpha <= -WIN;
+                if (exact[i]) {
+                    long bits = alpha.get();
+                    while (values[i] > Double.longBitsToDouble(bits) && !alpha.compareAndSet(bits, Double.doubleToLongBits(values[i]))) {
+                        bits = alpha.get();
+                    }
+                }
+            }
+        }
+
+        /* The first turn with the highest exact value */
+        int bestTurn() {
+            int best = 0;
+            for (int i = 1; i < turns.length; i++) {
+                if (exact[i] && (!exact[best] || values[i] > values[best])) {
+                    best = i;
+                }
+            }
+            return turns[best];
+        }
+    }
+
+    /**
+     * RootTask splits the candidate turns at the root in half until there is one turn left, which it searches with a
+     * Search and scratch board of its own.
+     */
+    private final class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RootSearch root;
+        private final int from;
+        private final int to;
+
+        RootTask(RootSearch root, int from, int to) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from == 1) {
+                root.searchTurns(new Search(), root.board.clone(), from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RootTask(root, from, middle), new RootTask(root, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Search holds the buffers for one thread's search, so that the search does not create any objects and each
+     * thread of a parallel search has its own.
+     */
+    private final class Search {
+
+        /* Indexed by the number of plies left to search */
+        private final TurnGenerator[] turnGenerators = new TurnGenerator[depth + 1];
+        private final int[] undos = new int[(depth + 1) * EncodedTurn.MAX_MOVES];
+        private final double[][] probeValues = new double[depth + 1][DiceRoll.NUMBER_OF_ROLLS];
+
+        Search() {
+            for (int i = 0; i <= depth; i++) {
+                turnGenerators[i] = new TurnGenerator();
+            }
+        }
+
+        /* Value for colour of taking the given turn, with plies plies left to search including this one */
+        private double turnValue(SearchBoardInterface board, Colour colour, int turn, int plies, double alpha, double beta) {
+            int offset = plies * EncodedTurn.MAX_MOVES;
+            int numberOfMoves;
+            try {
+                numberOfMoves = EncodedTurn.makeTurn(board, colour, turn, undos, offset);
+            } catch (IllegalMoveException e) {
+                // Should never happen as the turn generator only generates legal turns
+                e.printStackTrace();
+                return -WIN;
+            }
+            double value = -chanceValue(board, colour.otherColour(), plies - 1, -beta, -alpha);
+            EncodedTurn.unmakeTurn(board, undos, offset, numberOfMoves);
+            return value;
+        }
+
+        /* Expected value for colour, who is about to roll, over all rolls */
+        private double chanceValue(SearchBoardInterface board, Colour colour, int plies, double alpha, double beta) {
+            Colour winner = board.winner();
+            if (winner != null) {
+                return (winner == colour) ? WIN : -WIN;
+            }
+            if (plies == 0) {
+                return evaluator.evaluate(board, colour);
+            }
+
+            long key = board.positionHash(colour);
+            if (transpositionTable != null) {
+                long entry = transpositionTable.probe(key);
+                if (entry != 0 && TranspositionTable.depth(entry) >= plies && isCutoff(entry, alpha, beta)) {
+                    return TranspositionTable.value(entry);
+                }
+            }
+            double value = searchChance(board, colour, plies, alpha, beta);
+            if (transpositionTable != null) {
+                transpositionTable.store(key, plies, value, boundType(value, alpha, beta), EncodedTurn.EMPTY);
+            }
+            return value;
+        }
+
+        private double searchChance(SearchBoardInterface board, Colour colour, int plies, double alpha, double beta) {
+            /* Star2: the value of any one turn is a lower bound on the value of a roll, so probe one turn for each
+               roll first. This is only worth it when the turn's value is more than a single evaluation. */
+            double[] lowerBounds = probeValues[plies];
+            double remainingLower = 0;
+            for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+                DiceRoll roll = DiceRoll.get(r);
+                lowerBounds[r] = -WIN;
+                if (plies > 1) {
+                    TurnGenerator generator = turnGenerators[plies];
+                    int numberOfTurns = generator.generateTurns(board, colour, roll);
+                    int first = indexOf(generator, numberOfTurns, hashedTurn(board, colour, roll));
+                    lowerBounds[r] = turnValue(board, colour, generator.getTurn(first), plies, -WIN, WIN);
+                }
+                remainingLower += roll.getProbability() * lowerBounds[r];
+            }
+            if (remainingLower >= beta) {
+                return remainingLower;
+            }
+
+            /* Star1: stop as soon as the bounds on the expected value fall outside the window */
+            double searchedSum = 0;
+            double remainingProbability = 1;
+            for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+                DiceRoll roll = DiceRoll.get(r);
+                double probability = roll.getProbability();
+                remainingProbability -= probability;
+                remainingLower -= probability * lowerBounds[r];
+
+                double rollAlpha = (alpha - searchedSum - remainingProbability * WIN) / probability;
+                double rollBeta = (beta - searchedSum - remainingLower) / probability;
+                double value = decisionValue(board, colour, roll, plies, rollAlpha, rollBeta);
+                searchedSum += probability * value;
+
+                if (value <= rollAlpha) {
+                    return searchedSum + remainingProbability * WIN;    // Upper bound, which is no more than alpha
+                }
+                if (value >= rollBeta) {
+                    return searchedSum + remainingLower;                // Lower bound, which is at least beta
+                }
+            }
+            return searchedSum;
+        }
+
+        /* Value for colour of the best turn with the given roll */
+        private double decisionValue(SearchBoardInterface board, Colour colour, DiceRoll roll, int plies, double alpha, double beta) {
+            long key = board.positionHash(colour) ^ ZobristKeys.rollKey(roll.getSmallerValue(), roll.getLargerValue());
+            int hashedTurn = EncodedTurn.EMPTY;
+            if (transpositionTable != null) {
+                long entry = transpositionTable.probe(key);
+                if (entry != 0) {
+                    if (TranspositionTable.depth(entry) >= plies && isCutoff(entry, alpha, beta)) {
+                        return TranspositionTable.value(entry);
+                    }
+                    hashedTurn = TranspositionTable.turn(entry);
+                }
+            }
+
+            TurnGenerator generator = turnGenerators[plies];
+            int numberOfTurns = generator.generateTurns(board, colour, roll);
+
+            /* Search the best turn from an earlier search first, as it is the most likely to cause a cutoff */
+            int first = indexOf(generator, numberOfTurns, hashedTurn);
+
+            int bestTurn = EncodedTurn.EMPTY;
+            double bestValue = -Double.MAX_VALUE;
+            for (int n = 0; n < numberOfTurns; n++) {
+                int turn = generator.getTurn((n == 0) ? first : (n <= first) ? n - 1 : n);
+                double value = turnValue(board, colour, turn, plies, Math.max(alpha, bestValue), beta);
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestTurn = turn;
+                    if (bestValue >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            if (transpositionTable != null) {
+                transpositionTable.store(key, plies, bestValue, boundType(bestValue, alpha, beta), bestTurn);
+            }
+            return bestValue;
+        }
+
+        /* Best turn stored for colour with the given roll, or EncodedTurn.EMPTY if there is none */
+        private int hashedTurn(SearchBoardInterface board, Colour colour, DiceRoll roll) {
+            if (transpositionTable == null) {
+                return EncodedTurn.EMPTY;
+            }
+            long entry = transpositionTable.probe(board.positionHash(colour) ^ ZobristKeys.rollKey(roll.getSmallerValue(), roll.getLargerValue()));
+            return (entry != 0) ? TranspositionTable.turn(entry) : EncodedTurn.EMPTY;
+        }
+    }
+
+    /* Index of the given turn among those generated, or 0 if it was not generated */
+    private static int indexOf(TurnGenerator generator, int numberOfTurns, int turn) {
+        for (int i = 0; i < numberOfTurns && turn != EncodedTurn.EMPTY; i++) {
+            if (generator.getTurn(i) == turn) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /* True if and only if the stored value settles the search with the window alpha to beta */
+    private static boolean isCutoff(long entry, double alpha, double beta) {
+        double value = TranspositionTable.value(entry);
+        switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.EXACT:
+                return true;
+            case TranspositionTable.LOWER_BOUND:
+                return value >= beta;
+            case TranspositionTable.UPPER_BOUND:
+                return value <= alpha;
+            default:
+                return false;
+        }
+    }
+
+    private static int boundType(double value, double alpha, double beta) {
+        if (value <= alpha) {
+            return TranspositionTable.UPPER_BOUND;
+        }
+        if (value >= beta) {
+            return TranspositionTable.LOWER_BOUND;
+        }
+        return TranspositionTable.EXACT;
+    }
+
+    public String toString() {
+        return "expectiminimax";
+    }
+}
@@ -0,0 +1,105 @@
+package xyz.robbie.tabula;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExpectiminimaxPlayerTestBasic {
+
+    private PositionEvaluator evaluator;
+    private Random random;
+
+    @Before
+    public void setUp()
+    {
+        evaluator = new HeuristicEvaluator();
+        random = new Random(7);
+    }
+
+    private static List<Integer> roll(int d1, int d2) {
+        return (d1 == d2) ? Arrays.asList(d1, d1, d1, d1) : Arrays.asList(d1, d2);
+    }
+
+    /* Plain expectimax over all 36 rolls with no pruning */
+    private double expectimax(PackedBoard board, Colour colour, int plies) throws Exception {
+        if (board.winner() != null) {
+            return (board.winner() == colour) ? PositionEvaluator.WIN : -PositionEvaluator.WIN;
+        }
+        if (plies == 0) {
+            return evaluator.evaluate(board, colour);
+        }
+        double sum = 0;
+        for (int d1 = 1; d1 <= DieInterface.NUMBER_OF_SIDES_ON_DIE; d1++) {
+            for (int d2 = 1; d2 <= DieInterface.NUMBER_OF_SIDES_ON_DIE; d2++) {
+                double best = -Double.MAX_VALUE;
+                for (int turn : turns(board, colour, roll(d1, d2))) {
+                    best = Math.max(best, turnValue(board, colour, turn, plies));
+                }
+                sum += best / 36;
+            }
+        }
+        return sum;
+    }
+
+    private double turnValue(PackedBoard board, Colour colour, int turn, int plies) throws Exception {
+        PackedBoard child = board.clone();
+        EncodedTurn.makeTurn(child, colour, turn, new int[EncodedTurn.MAX_MOVES], 0);
+        return -expectimax(child, colour.otherColour(), plies - 1);
+    }
+
+    private static int[] turns(PackedBoard board, Colour colour, List<Integer> diceValues) {
+        TurnGenerator generator = new TurnGenerator();
+        int[] turns = new int[generator.generateTurns(board, colour, diceValues)];
+        for (int i = 0; i < turns.length; i++) {
+            turns[i] = generator.getTurn(i);
+        }
+        return turns;
+    }
+
+    /* Play random moves to reach a position part way through a game */
+    private PackedBoard randomPosition(int numberOfTurns) throws Exception {
+        PackedBoard board = new PackedBoard();
+        for (int i = 0; i < numberOfTurns && board.winner() == null; i++) {
+            int[] turns = turns(board, Colour.values()[i % 2], roll(random.nextInt(6) + 1, random.nextInt(6) + 1));
+            EncodedTurn.makeTurn(board, Colour.values()[i % 2], turns[random.nextInt(turns.length)], new int[EncodedTurn.MAX_MOVES], 0);
+        }
+        return board;
+    }
+
+    @Test
+    public void pruned_search_finds_best_turn() throws Exception {
+        for (int plies = 1; plies <= 2; plies++) {
+            ExpectiminimaxPlayer player = new ExpectiminimaxPlayer(plies, evaluator, new TranspositionTable(1 << 20), 1);
+            ExpectiminimaxPlayer parallelPlayer = new ExpectiminimaxPlayer(plies, evaluator, new TranspositionTable(1 << 20), 4);
+            for (int position = 0; position < 3; position++) {
+                PackedBoard board = randomPosition(4 + random.nextInt(20));
+                PackedBoard before = board.clone();
+                Colour colour = Colour.values()[0];
+                List<Integer> diceValues = roll(random.nextInt(6) + 1, random.nextInt(6) + 1);
+
+                double best = -Double.MAX_VALUE;
+                for (int turn : turns(board, colour, diceValues)) {
+                    best = Math.max(best, turnValue(board, colour, turn, plies));
+                }
+                int chosen = player.chooseTurn(board, colour, diceValues);
+                assertEquals(best, turnValue(board, colour, chosen, plies), 1e-6);
+                chosen = parallelPlayer.chooseTurn(board, colour, diceValues);
+                assertEquals(best, turnValue(board, colour, chosen, plies), 1e-6);
+                assertEquals(before.positionHash(), board.positionHash());
+            }
+            parallelPlayer.close();
+        }
+    }
+
+    @Test
+    public void plays_legal_turns() throws Exception {
+        Board board = new Board();
+        PlayerInterface player = new ExpectiminimaxPlayer(1);
+        List<Integer> diceValues = roll(3, 5);
+        board.takeTurn(Colour.GREEN, player.getTurn(Colour.GREEN, board, diceValues), diceValues);
+        assertEquals(Board.PIECES_PER_PLAYER * Board.FINISH_INDEX - 8, HeuristicEvaluator.pipCount(PackedBoard.copyOf(board), Colour.GREEN));
+    }
+}
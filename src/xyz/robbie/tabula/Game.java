@@ -2,14 +2,13 @@ package xyz.robbie.tabula;
 
 import com.google.gson.*;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 /**
  * Game represents the game state including the board, the dice and the players
@@ -32,18 +31,33 @@ public class Game implements GameInterface {
 
     private static final String DEFAULT_SAVE_LOCATION = "save.json";
 
+    /* Saves to files with this extension use the compact binary GameSnapshot format rather than JSON */
+    public static final String BINARY_SAVE_EXTENSION = ".tab";
+
     private static Game g;
 
     private HashMap<Colour, PlayerInterface> players;
     private Colour currentColour;
     private BoardInterface board;
     private DiceInterface d;
+    private transient SplittableRandom random; // null if the dice use the shared randomiser
+    private transient GameJournal.Writer journal; // null if the game is not being journalled
 
     public Game() {
         this.players = new HashMap<>();
         resetGame();
     }
 
+    /**
+     * @param random the random stream for the dice of this game and any new games started on it, so that the games
+     *               can be reproduced
+     */
+    public Game(SplittableRandom random) {
+        this.players = new HashMap<>();
+        this.random = random;
+        resetGame();
+    }
+
     /**
      * @param colour of the player to set
      *
@@ -94,6 +108,17 @@ public class Game implements GameInterface {
         while (stillPlaying) {
             if(!d.haveRolled()) {
                 d.roll();
+                if(journal != null) {
+                    try {
+                        journal.roll(d.getRoll());
+                    } catch (IOException e) {
+                        stopJournal(e);
+                    } catch (NotRolledYetException e) {
+
+                        /* Should never happen */
+                        e.printStackTrace();
+                    }
+                }
             }
             boolean handleComputerPrint = false;// = !(players.get(Colour.values()[0]) instanceof HumanConsolePlayer) && !(players.get(Colour.values()[1]) instanceof HumanConsolePlayer);
             if(!(players.get(currentColour) instanceof HumanConsolePlayer)) {
@@ -127,6 +152,13 @@ public class Game implements GameInterface {
                 for (MoveInterface move : t.getMoves()) {
                     try {
                         board.makeMove(currentColour, move);
+                        if(journal != null) {
+                            try {
+                                journal.move(EncodedMove.of(move));
+                            } catch (IOException | IllegalMoveException e) {
+                                stopJournal(e);
+                            }
+                        }
                         if(handleComputerPrint) {
                             System.out.println("Computer moved a counter " + move.getDiceValue() + " space" + (move.getDiceValue() > 1 ? "s" : "") + " from location " + move.getSourceLocation() + ".");
                         }
@@ -143,25 +175,90 @@ public class Game implements GameInterface {
                 e.printStackTrace();
                 stillPlaying = false;
             }
+            if(journal != null) {
+                try {
+                    journal.endTurn();
+                } catch (IOException e) {
+                    stopJournal(e);
+                }
+            }
             setCurrentPlayer(currentColour.otherColour());
             if(board.winner() != null) {
                 stillPlaying = false;
             }
         }
 
+        closeJournal();
         setCurrentPlayer(null);
         return board.winner(); // Returns the colour of the winner
     }
 
+    /**
+     * Start recording every roll, move and turn of this game from its current position into a journal file (see
+     * GameJournal), replacing any journal already being written. The journal is closed when the game ends.
+     *
+     * @param filename the name of the journal file
+     *
+     * @throws IOException when the journal cannot be created
+     */
+    public void startJournal(String filename) throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new GameJournal.Writer(Paths.get(filename), toSnapshot(), true);
+    }
+
+    /**
+     * Start recording this game into a journal written to a stream instead of a file, for example to keep it in
+     * memory, replacing any journal already being written. The stream is closed when the game ends.
+     *
+     * @param out the stream to write the journal to
+     *
+     * @throws IOException when the start of the journal cannot be written
+     */
+    public void startJournal(OutputStream out) throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new GameJournal.Writer(out, toSnapshot(), true);
+    }
+
+    /* Stop journalling after a write fails or the journal has lost track of the game, rather than stopping the game */
+    private void stopJournal(Exception e) {
+        System.out.println("Stopped writing the journal: " + e);
+        closeJournal();
+    }
+
+    /* Close the journal, if there is one, once the game is over or the journal has been stopped */
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException closeException) {
+
+                /* Nothing more can be done */
+            }
+            journal = null;
+        }
+    }
+
     /**
      * Save the current state of the game (including the board, dice and player types) into a file so it can be re-loaded and game play continued. You choose what the format of the file is.
      *
+     * Files whose names end with BINARY_SAVE_EXTENSION are saved as a compact GameSnapshot, and all others as JSON.
+     *
      * @param filename the name of the file in which to save the game state
      *
      * @throws IOException when an I/O problem occurs while saving
      **/
     public void saveGame(String filename) throws IOException {
 
+        if (filename.endsWith(BINARY_SAVE_EXTENSION)) {
+            Files.write(Paths.get(filename), toSnapshot().toBytes());
+            System.out.println("Saved game state to " + Paths.get(filename).toAbsolutePath().toString());
+            return;
+        }
+
         GsonBuilder gsonBuilder = new GsonBuilder();
         gsonBuilder.serializeNulls();
         Gson gson = gsonBuilder.setPrettyPrinting().create();
@@ -175,96 +272,135 @@ public class Game implements GameInterface {
     /**
      * Load the game state from the given file
      *
+     * Either format written by saveGame() can be loaded, whatever the name of the file, as snapshots start with magic bytes.
+     *
      * @param filename  the name of the file from which to load the game state
      *
      * @throws IOException when an I/O problem occurs or the file is not in the correct format (as used by saveGame())
      **/
     public void loadGame(String filename) throws IOException {
 
-        String wholeFile = null;
-        try {
-            wholeFile = new String(Files.readAllBytes(Paths.get(filename)));
-        } catch (FileNotFoundException e) {
-            throw new IOException("The file '" + filename + "' was not found.");
-        } catch (IOException e) {
-            throw e;
-        }
-        JsonObject jsonObject = new JsonParser().parse(wholeFile).getAsJsonObject();
+        /* Read as a stream, so the file is never held as a whole string or a tree of JSON objects */
+        SaveFileReader.SavedGame saved = SaveFileReader.readSavedGame(Paths.get(filename));
 
-        resetGame();
+        load(saved.board.toBoard(), saved.currentColour, saved.dieValue1, saved.dieValue2, saved.playerTypes);
+    }
 
-        Board newBoard = new Board(false);
-        JsonObject jsonBoard = jsonObject.get("board").getAsJsonObject();
-        JsonArray jsonLocations = jsonBoard.get("locations").getAsJsonArray();
-
-        /* Transfer player/colour assignment
-         * Adapted from http://stackoverflow.com/a/27964552/2176546, retrieved 30/04/2017 */
-        Set<Map.Entry<String, JsonElement>> entrySet = jsonObject.get("players").getAsJsonObject().entrySet();
-        for(Map.Entry<String,JsonElement> entry : entrySet) {
-            JsonObject jsonColour = entry.getValue().getAsJsonObject();
-            for(Colour c : Colour.values()) {
-                if(entry.getKey().toUpperCase().equals(c.toString().toUpperCase())) {
-                    if(jsonColour.get("typeOfPlayer").getAsString().toLowerCase().equals("human")) {
-                        g.setPlayer(c, new HumanConsolePlayer());
-                    } else if(jsonColour.get("typeOfPlayer").getAsString().toLowerCase().equals("computer")) {
-                        g.setPlayer(c, new ComputerPlayer());
-                    } else {
-                        g.setPlayer(c, null);
-                    }
-                }
-            }
+    /**
+     * Set up the game from a snapshot, such as a position found in a GameArchive, so that play can continue from it
+     *
+     * @param snapshot the state of the game
+     *
+     * @throws IOException when the snapshot does not hold a valid board
+     **/
+    public void loadPosition(GameSnapshot snapshot) throws IOException {
+        String[] playerTypes = new String[Colour.values().length];
+        for (Colour c : Colour.values()) {
+            playerTypes[c.ordinal()] = snapshot.getPlayerType(c);
+        }
+        load(snapshot.toBoard(), snapshot.getCurrentColour(), snapshot.getDieValue1(), snapshot.getDieValue2(), playerTypes);
+    }
+
+    private void load(Board newBoard, Colour currentColour, int dieValue1, int dieValue2, String[] playerTypes) throws IOException {
+        if(!newBoard.isValid()) {
+            throw new IOException("The loaded board state is not valid.");
         }
 
-        /* Set newBoard name */
-        newBoard.setName(jsonBoard.get("name").getAsString());
+        resetGame();
 
-        /* Check there are the right number of locations in the save file */
-        if(jsonLocations.size() != BoardInterface.NUMBER_OF_LOCATIONS+3) {
-            throw new IOException("The saved game state has an invalid number of locations (need " + (BoardInterface.NUMBER_OF_LOCATIONS+3) + " but only found " + jsonLocations.size() + ")");
+        /* Transfer player/colour assignment */
+        for(Colour c : Colour.values()) {
+            if(playerTypes[c.ordinal()] != null) {
+                setPlayer(c, playerOfType(playerTypes[c.ordinal()]));
+            }
         }
 
-        /* Transfer over details about each location */
-        for(int i=0; i<=Board.KNOCKED_INDEX; i++) {
-            JsonObject jsonLocation = jsonLocations.get(i).getAsJsonObject();
+        /* Transfer current player */
+        setCurrentPlayer(currentColour);
 
-            /* Transfer over location name */
-            Location newLocation = new Location(jsonLocation.get("name").getAsString());
+        /* Transfer die values */
+        d.getDice().get(0).setValue(dieValue1);
+        d.getDice().get(1).setValue(dieValue2);
 
-            /* Transfer over location mixed property */
-            newLocation.setMixed(jsonLocation.get("mixed").getAsBoolean());
+        setBoard(newBoard);
+    }
 
-            /* Transfer number of each piece */
-            for(Colour c : Colour.values()) {
-                if(jsonLocation.get("pieces").getAsJsonObject().has(c.toString())) {
-                    for(int j=1; j<=jsonLocation.get("pieces").getAsJsonObject().get(c.toString()).getAsInt(); j++) {
-                        try {
-                            newLocation.addPieceGetKnocked(c);
-                        } catch (IllegalMoveException e) {
-                            throw new IOException("The saved game state is not valid");
-                        }
-                    }
+    /**
+     * @return the state of this game as a compact snapshot
+     */
+    GameSnapshot toSnapshot() {
+        String[] playerTypes = new String[Colour.values().length];
+        for (Colour c : Colour.values()) {
+            playerTypes[c.ordinal()] = typeOfPlayer(players.get(c));
+        }
+        int[] dieValues = new int[2];
+        for (int i = 0; i < dieValues.length; i++) {
+            DieInterface die = d.getDice().get(i);
+            if (die.hasRolled()) {
+                try {
+                    dieValues[i] = die.getValue();
+                } catch (NotRolledYetException e) {
+                    // Should never happen as we have just checked the die has been rolled
+                    e.printStackTrace();
                 }
             }
-            newBoard.replaceLocation(i, newLocation);
         }
+        return new GameSnapshot(board, currentColour, dieValues[0], dieValues[1], playerTypes);
+    }
 
-        /* Transfer current player */
-        for(Colour c : Colour.values()) {
-            if(c.toString().equals(jsonObject.get("currentColour").getAsString())) {
-                g.setCurrentPlayer(c);
-            }
+    /**
+     * @param player a player, or null
+     *
+     * @return the type of the player as saved in a game file, or null if it has no type which playerOfType() can make
+     */
+    static String typeOfPlayer(PlayerInterface player) {
+        if (player instanceof HumanConsolePlayer) {
+            return "human";
+        } else if (player instanceof ComputerPlayer) {
+            return "computer";
+        } else if (player instanceof ExpectiminimaxPlayer) {
+            return "expectiminimax";
+        } else if (player instanceof MonteCarloPlayer) {
+            return "montecarlo";
         }
+        return null;
+    }
 
-        /* Transfer die values */
-        JsonObject jsonDice = jsonObject.get("d").getAsJsonObject();
-        d.getDice().get(0).setValue(jsonDice.get("d1").getAsJsonObject().get("value").getAsInt());
-        d.getDice().get(1).setValue(jsonDice.get("d2").getAsJsonObject().get("value").getAsInt());
-
-        if(!newBoard.isValid()) {
-            throw new IOException("The loaded board state is not valid.");
+    /**
+     * @param typeOfPlayer the type of player as saved in a game file, such as "human" or "computer"
+     *
+     * @return a new player of that type, or null if there is no such type
+     */
+    public static PlayerInterface playerOfType(String typeOfPlayer) {
+        switch (typeOfPlayer.toLowerCase()) {
+            case "human":
+                return new HumanConsolePlayer();
+            case "computer":
+                return new ComputerPlayer();
+            case "expectiminimax":
+                return new ExpectiminimaxPlayer();
+            case "montecarlo":
+                return new MonteCarloPlayer();
+            default:
+                return null;
         }
+    }
 
-        setBoard(newBoard);
+    /**
+     * @param typeOfPlayer the type of player as saved in a game file
+     *
+     * @return true if and only if playerOfType() makes a computer player of that type, which can play unattended on
+     *         any thread, without making one
+     */
+    public static boolean isComputerType(String typeOfPlayer) {
+        switch (typeOfPlayer.toLowerCase()) {
+            case "computer":
+            case "expectiminimax":
+            case "montecarlo":
+                return true;
+            default:
+                return false;
+        }
     }
 
     private BoardInterface getBoard() {
@@ -334,7 +470,7 @@ public class Game implements GameInterface {
                         if(g.getCurrentPlayer() == null) { // No game is currently being played
                             System.out.println("No game is being played.");
                         } else {
-                            System.out.println("Enter name of save file, or press Enter to use default:");
+                            System.out.println("Enter name of save file (ending " + BINARY_SAVE_EXTENSION + " for the compact format), or press Enter to use default:");
                             input = scanner.nextLine();
                             String filename = DEFAULT_SAVE_LOCATION;
                             if(!input.equals("")) {
@@ -480,7 +616,7 @@ public class Game implements GameInterface {
     private void resetGame() {
         setCurrentPlayer(null);
         board = new Board();
-        d = new Dice();
+        d = (random != null) ? new Dice(random) : new Dice();
     }
 
     /**
@@ -0,0 +1,533 @@
+package xyz.robbie.tabula;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GameArchive stores a very large number of finished games as GameJournals packed into segment files, with an index
+ * from the hash of every position reached at the start of a turn to the games and turns that reached it, so that all
+ * of the games which reached a position can be found without reading the rest.
+ *
+ * A Writer appends games to segment files in batches. When a segment is full or the writer is closed, the segment is
+ * sealed by writing its index beside it, after which it never changes. Opening a GameArchive memory-maps the sealed
+ * segments and their indexes, so games are read straight from the mapped files without copying them. A segment
+ * without an index (for example after a crash) is ignored.
+ *
+ * A segment file ("segment-NNNNNN.taba") is the magic bytes "TABA" and a version byte, followed by each game as its
+ * length (4 bytes) and its journal. An index file ("segment-NNNNNN.tabi") is the magic bytes "TABI", a version byte,
+ * the number of games (4 bytes), the offset of each game in the segment (4 bytes each) and then ENTRY_SIZE bytes for
+ * every position of every game: its positionHash() (8 bytes), its game in the segment (4 bytes) and the number of
+ * turns completed when it was reached (4 bytes), sorted by hash.
+ *
+ * Games are numbered from 0 across the whole archive, in the order they were added.
+ */
+public class GameArchive {
+
+    public static final int VERSION = 1;
+
+    /* Default size of a segment file before the writer starts a new one */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    static final String SEGMENT_EXTENSION = ".taba";
+    static final String INDEX_EXTENSION = ".tabi";
+
+    private static final byte[] SEGMENT_MAGIC = {'T', 'A', 'B', 'A'};
+    private static final byte[] INDEX_MAGIC = {'T', 'A', 'B', 'I'};
+    private static final int HEADER_SIZE = SEGMENT_MAGIC.length + 1;
+    private static final int ENTRY_SIZE = 16;
+
+    /* Segments are mapped as single buffers, so neither file may reach 2 GiB */
+    private static final int MAX_ENTRIES_PER_SEGMENT = 64 * 1024 * 1024;
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final List<ByteBuffer> indexes = new ArrayList<ByteBuffer>();
+
+    /* The number of the first game in each segment, plus the total number of games at the end */
+    private long[] firstGames;
+
+    /**
+     * Occurrence is one place in the archive where a position was reached
+     */
+    public static final class Occurrence {
+        private final long game;
+        private final int turn;
+
+        Occurrence(long game, int turn) {
+            this.game = game;
+            this.turn = turn;
+        }
+
+        /**
+         * @return the number of the game in the archive
+         */
+        public long getGame() {
+            return game;
+        }
+
+        /**
+         * @return the number of turns completed in the game when the position was reached
+         */
+        public int getTurn() {
+            return turn;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Occurrence && ((Occurrence) o).game == game && ((Occurrence) o).turn == turn;
+        }
+
+        public int hashCode() {
+            return Long.hashCode(game) * 31 + turn;
+        }
+
+        public String toString() {
+            return "game " + game + " after turn " + turn;
+        }
+    }
+
+    private GameArchive() {
+    }
+
+    /**
+     * Open the sealed segments of an archive for reading. The files are memory-mapped, so opening is quick however
+     * many games they hold.
+     *
+     * @param directory the directory of the archive
+     * @return the archive
+     *
+     * @throws IOException if a segment or index cannot be read or is not valid
+     */
+    public static GameArchive open(Path directory) throws IOException {
+        GameArchive archive = new GameArchive();
+        List<Path> indexFiles = listFiles(directory, INDEX_EXTENSION);
+        archive.firstGames = new long[indexFiles.size() + 1];
+        for (int i = 0; i < indexFiles.size(); i++) {
+            Path indexFile = indexFiles.get(i);
+            ByteBuffer index = map(indexFile);
+            ByteBuffer segment = map(segmentFor(indexFile));
+            checkHeader(index, INDEX_MAGIC, indexFile);
+            checkHeader(segment, SEGMENT_MAGIC, segmentFor(indexFile));
+            int games = index.getInt(HEADER_SIZE);
+            if (games < 0 || (index.limit() - entriesStart(games)) % ENTRY_SIZE != 0) {
+                throw new IOException("The index '" + indexFile + "' is not valid.");
+            }
+            archive.indexes.add(index);
+            archive.segments.add(segment);
+            archive.firstGames[i + 1] = archive.firstGames[i] + games;
+        }
+        return archive;
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer, byte[] magic, Path file) throws IOException {
+        if (buffer.limit() < HEADER_SIZE) {
+            throw new IOException("The file '" + file + "' is too short to have a header.");
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer.get(i) != magic[i]) {
+                throw new IOException("The file '" + file + "' is not part of a game archive.");
+            }
+        }
+        if (buffer.get(magic.length) != VERSION) {
+            throw new IOException("The file '" + file + "' has version " + buffer.get(magic.length) + " but only version " + VERSION + " can be read.");
+        }
+    }
+
+    /* The files in the directory with the extension, in order of name */
+    private static List<Path> listFiles(Path directory, String extension) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + extension)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static Path segmentFor(Path indexFile) {
+        String name = indexFile.getFileName().toString();
+        return indexFile.resolveSibling(name.substring(0, name.length() - INDEX_EXTENSION.length()) + SEGMENT_EXTENSION);
+    }
+
+    private static int entriesStart(int games) {
+        return HEADER_SIZE + 4 + 4 * games;
+    }
+
+    /**
+     * @return the number of games in the archive
+     */
+    public long getNumberOfGames() {
+        return firstGames[segments.size()];
+    }
+
+    /**
+     * @param game the number of a game, from 0 to getNumberOfGames() - 1
+     * @return the journal of the game, read straight from the mapped segment
+     *
+     * @throws IOException if the game's journal is corrupt
+     */
+    public GameJournal getGame(long game) throws IOException {
+        if (game < 0 || game >= getNumberOfGames()) {
+            throw new IllegalArgumentException("The archive has " + getNumberOfGames() + " games.");
+        }
+        int segment = segmentOf(game);
+        int offset = indexes.get(segment).getInt(HEADER_SIZE + 4 + 4 * (int) (game - firstGames[segment]));
+        ByteBuffer journal = segments.get(segment).duplicate();
+        journal.position(offset + 4);
+        journal.limit(offset + 4 + journal.getInt(offset));
+        return GameJournal.wrap(journal.slice());
+    }
+
+    /* The segment holding the game, by binary search */
+    private int segmentOf(long game) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstGames[middle] <= game) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find every place a position with the given hash was reached. Different positions can very rarely have the same
+     * hash, so use find(BoardInterface) to be sure of the position.
+     *
+     * @param positionHash the positionHash() of a board
+     * @return where a position with the hash was reached, in order of game and turn
+     */
+    public List<Occurrence> find(long positionHash) {
+        List<Occurrence> found = new ArrayList<Occurrence>();
+        for (int s = 0; s < segments.size(); s++) {
+            ByteBuffer index = indexes.get(s);
+            int start = entriesStart(index.getInt(HEADER_SIZE));
+            int low = 0;
+            int high = (index.limit() - start) / ENTRY_SIZE;
+            /* Find the first entry with the hash or a greater one */
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(start + middle * ENTRY_SIZE) < positionHash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int offset = start + low * ENTRY_SIZE; offset < index.limit() && index.getLong(offset) == positionHash; offset += ENTRY_SIZE) {
+                found.add(new Occurrence(firstGames[s] + index.getInt(offset + 8), index.getInt(offset + 12)));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param board a board
+     * @return every place the position of the board was reached at the start of a turn, in order of game and turn
+     *
+     * @throws IOException if the journal of a game which may have reached it is corrupt
+     */
+    public List<Occurrence> find(BoardInterface board) throws IOException {
+        List<Occurrence> found = new ArrayList<Occurrence>();
+        for (Occurrence occurrence : find(ZobristKeys.hash(board))) {
+            GameSnapshot position = positionOf(occurrence);
+            if (samePieces(board, position)) {
+                found.add(occurrence);
+            }
+        }
+        return found;
+    }
+
+    private static boolean samePieces(BoardInterface board, GameSnapshot position) {
+        for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+            LocationInterface location = PackedBoard.locationOf(board, i);
+            for (Colour c : Colour.values()) {
+                if (location.numberOfPieces(c) != position.numberOfPieces(i, c)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param occurrence a place in the archive
+     * @return the position there, which Game.loadPosition() or GameSnapshot.toBoard() can turn back into a game or board
+     *
+     * @throws IOException if the game's journal is corrupt
+     */
+    public GameSnapshot positionOf(Occurrence occurrence) throws IOException {
+        return getGame(occurrence.getGame()).positionAfterTurns(occurrence.getTurn());
+    }
+
+    /**
+     * Writer adds games to an archive. Games are buffered and written to the current segment in large blocks, and the
+     * index of a segment is kept in memory (ENTRY_SIZE bytes per turn) until the segment is sealed.
+     *
+     * Only one writer should add to an archive at a time. Games added are not seen by a GameArchive until their
+     * segment is sealed and the archive is opened again.
+     */
+    public static class Writer implements Closeable {
+        private final Path directory;
+        private final long segmentSize;
+        private int nextSegment;
+
+        private Path segmentFile;
+        private OutputStream out;
+        private long segmentBytes;
+        private int[] offsets = new int[1024];
+        private int games;
+        private long[] hashes = new long[1024];
+        private long[] places = new long[1024];
+        private int entries;
+
+        /**
+         * @param directory the directory of the archive, which is created if it does not exist; new segments are
+         *                  added after any already there
+         * @param segmentSize the size at which to start a new segment, in bytes, below 2 GiB
+         *
+         * @throws IOException if the directory cannot be created or listed
+         */
+        public Writer(Path directory, long segmentSize) throws IOException {
+            if (segmentSize <= HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("A segment must be larger than its header and smaller than 2 GiB.");
+            }
+            this.directory = directory;
+            this.segmentSize = segmentSize;
+            Files.createDirectories(directory);
+            for (Path file : listFiles(directory, SEGMENT_EXTENSION)) {
+                String name = file.getFileName().toString();
+                nextSegment = Math.max(nextSegment, Integer.parseInt(name.substring("segment-".length(), name.length() - SEGMENT_EXTENSION.length())) + 1);
+            }
+        }
+
+        /**
+         * @param journal the bytes of a game's journal, as written by GameJournal.Writer
+         *
+         * @throws IOException if the journal is not valid or cannot be written
+         */
+        public void add(byte[] journal) throws IOException {
+            long[] turnHashes = GameJournal.wrap(ByteBuffer.wrap(journal)).hashesAfterTurns();
+            if (out != null && (segmentBytes + 4 + journal.length > segmentSize || entries + turnHashes.length > MAX_ENTRIES_PER_SEGMENT)) {
+                seal();
+            }
+            if (out == null) {
+                startSegment();
+            }
+            if (segmentBytes + 4 + journal.length > Integer.MAX_VALUE) {
+                throw new IOException("The journal is too long to archive.");
+            }
+
+            if (games == offsets.length) {
+                offsets = Arrays.copyOf(offsets, games * 2);
+            }
+            offsets[games] = (int) segmentBytes;
+            for (int turn = 0; turn < turnHashes.length; turn++) {
+                if (entries == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, entries * 2);
+                    places = Arrays.copyOf(places, entries * 2);
+                }
+                hashes[entries] = turnHashes[turn];
+                places[entries] = (long) games << 32 | turn;
+                entries++;
+            }
+            games++;
+
+            out.write(journal.length >>> 24);
+            out.write(journal.length >>> 16);
+            out.write(journal.length >>> 8);
+            out.write(journal.length);
+            out.write(journal);
+            segmentBytes += 4 + journal.length;
+        }
+
+        /**
+         * @param journalFile a journal file, as written by GameJournal.Writer
+         *
+         * @throws IOException if the file cannot be read or is not a valid journal
+         */
+        public void add(Path journalFile) throws IOException {
+            add(Files.readAllBytes(journalFile));
+        }
+
+        private void startSegment() throws IOException {
+            segmentFile = directory.resolve(String.format("segment-%06d", nextSegment++) + SEGMENT_EXTENSION);
+            out = new BufferedOutputStream(Files.newOutputStream(segmentFile), 1 << 20);
+            out.write(SEGMENT_MAGIC);
+            out.write(VERSION);
+            segmentBytes = HEADER_SIZE;
+        }
+
+        /* Finish the current segment and write its index, which makes it visible to readers */
+        private void seal() throws IOException {
+            out.close();
+            out = null;
+            sort(hashes, places, 0, entries - 1);
+
+            String name = segmentFile.getFileName().toString();
+            Path indexFile = segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_EXTENSION.length()) + INDEX_EXTENSION);
+            Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 20))) {
+                index.write(INDEX_MAGIC);
+                index.write(VERSION);
+                index.writeInt(games);
+                for (int i = 0; i < games; i++) {
+                    index.writeInt(offsets[i]);
+                }
+                for (int i = 0; i < entries; i++) {
+                    index.writeLong(hashes[i]);
+                    index.writeLong(places[i]);
+                }
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            games = 0;
+            entries = 0;
+        }
+
+        /**
+         * Write out the games buffered so far. They are still not visible to readers until the segment is sealed.
+         */
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Seal the current segment
+         */
+        public void close() throws IOException {
+            if (out != null) {
+                seal();
+            }
+        }
+    }
+
+    /* Sort the entries from first to last inclusive by hash, then by place, with a quicksort */
+    private static void sort(long[] hashes, long[] places, int first, int last) {
+        while (last - first > 16) {
+            int middle = (first + last) >>> 1;
+            long pivotHash = hashes[middle];
+            long pivotPlace = places[middle];
+            int i = first;
+            int j = last;
+            while (i <= j) {
+                while (compare(hashes[i], places[i], pivotHash, pivotPlace) < 0) {
+                    i++;
+                }
+                while (compare(hashes[j], places[j], pivotHash, pivotPlace) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, places, i++, j--);
+                }
+            }
+            /* Recurse into the smaller side and loop on the larger, so the stack stays shallow */
+            if (j - first < last - i) {
+                sort(hashes, places, first, j);
+                first = i;
+            } else {
+                sort(hashes, places, i, last);
+                last = j;
+            }
+        }
+        for (int i = first + 1; i <= last; i++) {
+            for (int j = i; j > first && compare(hashes[j - 1], places[j - 1], hashes[j], places[j]) > 0; j--) {
+                swap(hashes, places, j - 1, j);
+            }
+        }
+    }
+
+    private static int compare(long hash1, long place1, long hash2, long place2) {
+        return (hash1 != hash2) ? Long.compare(hash1, hash2) : Long.compare(place1, place2);
+    }
+
+    private static void swap(long[] hashes, long[] places, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        long place = places[i];
+        places[i] = places[j];
+        places[j] = place;
+    }
+
+    /**
+     * Archive computer-played games, or list the games in an archive which reached a position
+     *
+     * @param args the archive directory, then either "play" and a number of games, or "find" and a position ID
+     *             (see PositionId)
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[1].equals("play") || args[1].equals("find"))) {
+            System.out.println("Usage: GameArchive <directory> play <games> | GameArchive <directory> find <position ID>");
+            return;
+        }
+        try {
+            Path directory = Paths.get(args[0]);
+            if (args[1].equals("play")) {
+                int numberOfGames = Integer.parseInt(args[2]);
+                long start = System.nanoTime();
+                try (Writer writer = new Writer(directory, DEFAULT_SEGMENT_SIZE)) {
+                    for (int i = 0; i < numberOfGames; i++) {
+                        writer.add(playGame(new ComputerPlayer(), new ComputerPlayer()));
+                    }
+                }
+                System.out.println("Archived " + numberOfGames + " games in " + String.format("%.2f", (System.nanoTime() - start) / 1e9) + " s");
+            } else {
+                GameArchive archive = open(directory);
+                List<Occurrence> found = archive.find(PositionId.decode(args[2]));
+                System.out.println(found.size() + " occurrences in " + archive.getNumberOfGames() + " games");
+                for (Occurrence occurrence : found) {
+                    System.out.println(occurrence);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("There was an error using the archive: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Play a game between two players from the starting position, recording it in a journal
+     *
+     * @return the bytes of the game's journal
+     */
+    static byte[] playGame(PlayerInterface first, PlayerInterface second) throws IOException {
+        ByteArrayOutputStream journal = new ByteArrayOutputStream();
+        Game game = new Game();
+        game.setPlayer(Colour.values()[0], first);
+        game.setPlayer(Colour.values()[1], second);
+        game.startJournal(journal);
+        try {
+            game.play();
+        } catch (PlayerNotDefinedException e) {
+            // Should never happen as both players have just been set
+            e.printStackTrace();
+        }
+        return journal.toByteArray();
+    }
+}
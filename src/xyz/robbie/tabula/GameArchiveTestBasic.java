@@ -0,0 +1,82 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameArchiveTestBasic {
+
+    @Test
+    public void every_game_reaching_a_position_is_found() throws Exception {
+        Path directory = Files.createTempDirectory("archive");
+        try {
+            byte[][] journals = new byte[6][];
+            /* Small segments, so the games are spread over several */
+            try (GameArchive.Writer writer = new GameArchive.Writer(directory, 1500)) {
+                for (int i = 0; i < journals.length; i++) {
+                    journals[i] = GameArchive.playGame(new ComputerPlayer(), new ComputerPlayer());
+                    writer.add(journals[i]);
+                }
+            }
+            GameArchive archive = GameArchive.open(directory);
+            assertEquals(journals.length, archive.getNumberOfGames());
+
+            List<GameArchive.Occurrence> starts = archive.find(new PackedBoard());
+            assertEquals(journals.length, starts.size());
+            for (int i = 0; i < starts.size(); i++) {
+                assertEquals(new GameArchive.Occurrence(i, 0), starts.get(i));
+            }
+
+            GameJournal journal = archive.getGame(3);
+            assertEquals(GameJournal.wrap(ByteBuffer.wrap(journals[3])).getTurns(), journal.getTurns());
+            GameSnapshot position = journal.positionAfterTurns(5);
+            List<GameArchive.Occurrence> found = archive.find(position.toBoard());
+            assertTrue(found.contains(new GameArchive.Occurrence(3, 5)));
+            for (GameArchive.Occurrence occurrence : found) {
+                assertEquals(position.toPackedBoard().positionHash(), archive.positionOf(occurrence).toPackedBoard().positionHash());
+            }
+
+            Game game = new Game();
+            game.loadPosition(archive.positionOf(found.get(0)));
+            assertEquals(position.toPackedBoard().positionHash(), game.toSnapshot().toPackedBoard().positionHash());
+        } finally {
+            for (Path file : Files.newDirectoryStream(directory)) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void a_new_writer_adds_segments_after_the_existing_ones() throws Exception {
+        Path directory = Files.createTempDirectory("archive");
+        try {
+            byte[] journal = GameArchive.playGame(new ComputerPlayer(), new ComputerPlayer());
+            for (int i = 0; i < 2; i++) {
+                try (GameArchive.Writer writer = new GameArchive.Writer(directory, GameArchive.DEFAULT_SEGMENT_SIZE)) {
+                    writer.add(journal);
+                }
+            }
+            GameArchive.Writer unsealed = new GameArchive.Writer(directory, GameArchive.DEFAULT_SEGMENT_SIZE);
+            unsealed.add(journal);
+            unsealed.flush();
+
+            GameArchive archive = GameArchive.open(directory);
+            assertEquals(2, archive.getNumberOfGames());
+            assertEquals(2, archive.find(new PackedBoard()).size());
+            unsealed.close();
+            assertEquals(3, GameArchive.open(directory).getNumberOfGames());
+        } finally {
+            for (Path file : Files.newDirectoryStream(directory)) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package xyz.robbie.tabula;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * GameJournal is an append-only record of everything that happens in a game, one byte per event, so that a game can
+ * be recovered after a crash and any point in it can be looked at afterwards. A Writer appends events as the game is
+ * played, and opening the file as a GameJournal reads them back.
+ *
+ * The file starts with the magic bytes "TABJ" and a version byte, followed by events:
+ *
+ *   0-149    a move, as its EncodedMove
+ *   150-170  a roll, as ROLL plus its DiceRoll index
+ *   171      the end of a turn
+ *   172-173  a win, as WINNER plus the ordinal of the winning colour
+ *   174      a snapshot, followed by GameSnapshot.SIZE bytes of the position at the start of the next turn
+ *
+ * Only the first snapshot can hold dice, when the game was started with the first turn's dice already rolled (as in
+ * a game saved part way through a turn), and then that turn has no roll event.
+ *
+ * The first event is always a snapshot of the starting position, and the writer adds another every SNAPSHOT_INTERVAL
+ * turns. To find the position after a given turn or move, the reader starts from the last snapshot before it and
+ * replays the events after that, so it never replays more than SNAPSHOT_INTERVAL turns whatever the point in the game.
+ * A snapshot or event cut short at the end of the file (for example by a crash) is ignored.
+ */
+public class GameJournal {
+
+    public static final int VERSION = 1;
+
+    /* Turns between snapshots */
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    static final int ROLL = EncodedMove.NUMBER_OF_MOVES;
+    static final int TURN_END = ROLL + DiceRoll.NUMBER_OF_ROLLS;
+    static final int WINNER = TURN_END + 1;
+    static final int SNAPSHOT = WINNER + Colour.values().length;
+
+    private static final byte[] MAGIC = {'T', 'A', 'B', 'J'};
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+
+    private final ByteBuffer events;
+
+    /* For each snapshot, the turns and moves made before it and the offset of its first byte */
+    private int[] snapshotTurns = new int[8];
+    private int[] snapshotMoves = new int[8];
+    private int[] snapshotOffsets = new int[8];
+    private int numberOfSnapshots;
+
+    private int turns;
+    private int moves;
+    private Colour winner;
+
+    /* Offset just after the last complete event */
+    private int end;
+
+    private GameJournal(ByteBuffer events) throws IOException {
+        this.events = events;
+        index();
+    }
+
+    /**
+     * Open a journal for reading. The file is memory-mapped, so opening even a long journal is quick.
+     *
+     * @param file the journal file
+     * @return the journal
+     *
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static GameJournal open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GameJournal(mapped);
+        }
+    }
+
+    /**
+     * Read a journal held in a buffer, such as part of a GameArchive segment, without copying it
+     *
+     * @param events the whole journal, from its header at index 0 up to the buffer's limit
+     * @return the journal
+     *
+     * @throws IOException if the buffer does not hold a journal
+     */
+    static GameJournal wrap(ByteBuffer events) throws IOException {
+        return new GameJournal(events);
+    }
+
+    /* Check the header and find the snapshots, the number of turns and moves and the winner */
+    private void index() throws IOException {
+        if (events.limit() < HEADER_SIZE) {
+            throw new IOException("The journal is too short to have a header.");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (events.get(i) != MAGIC[i]) {
+                throw new IOException("The file is not a game journal.");
+            }
+        }
+        if (events.get(MAGIC.length) != VERSION) {
+            throw new IOException("The journal has version " + events.get(MAGIC.length) + " but only version " + VERSION + " can be read.");
+        }
+
+        int offset = HEADER_SIZE;
+        end = offset;
+        while (offset < events.limit()) {
+            int event = events.get(offset) & 0xFF;
+            if (event < ROLL) {
+                moves++;
+                offset++;
+            } else if (event < TURN_END) {
+                offset++;
+            } else if (event == TURN_END) {
+                turns++;
+                offset++;
+            } else if (event < SNAPSHOT) {
+                winner = Colour.values()[event - WINNER];
+                offset++;
+            } else if (event == SNAPSHOT) {
+                if (offset + 1 + GameSnapshot.SIZE > events.limit()) {
+                    break;
+                }
+                addSnapshot(offset + 1);
+                offset += 1 + GameSnapshot.SIZE;
+            } else {
+                throw new IOException("The journal has an unknown event " + event + " at byte " + offset + ".");
+            }
+            end = offset;
+        }
+        if (numberOfSnapshots == 0) {
+            throw new IOException("The journal has no starting position.");
+        }
+    }
+
+    private void addSnapshot(int offset) {
+        if (numberOfSnapshots == snapshotOffsets.length) {
+            snapshotTurns = Arrays.copyOf(snapshotTurns, numberOfSnapshots * 2);
+            snapshotMoves = Arrays.copyOf(snapshotMoves, numberOfSnapshots * 2);
+            snapshotOffsets = Arrays.copyOf(snapshotOffsets, numberOfSnapshots * 2);
+        }
+        snapshotTurns[numberOfSnapshots] = turns;
+        snapshotMoves[numberOfSnapshots] = moves;
+        snapshotOffsets[numberOfSnapshots] = offset;
+        numberOfSnapshots++;
+    }
+
+    /**
+     * @return the number of turns completed
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * @return the number of moves made, counting each die used as one move
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return the colour which won, or null if the game has not finished
+     */
+    public Colour getWinner() {
+        return winner;
+    }
+
+    public int getNumberOfSnapshots() {
+        return numberOfSnapshots;
+    }
+
+    /**
+     * @param turn the number of completed turns, from 0 to getTurns()
+     * @return the position at the start of the next turn, before its dice are rolled (except for turn 0 of a game
+     *         started with them already rolled)
+     *
+     * @throws IOException if the snapshot the position is rebuilt from is corrupt
+     */
+    public GameSnapshot positionAfterTurns(int turn) throws IOException {
+        if (turn < 0 || turn > turns) {
+            throw new IllegalArgumentException("The journal has " + turns + " turns.");
+        }
+        return replay(lastSnapshotBefore(snapshotTurns, turn), turn, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param move the number of moves made, from 0 to getMoves()
+     * @return the position just after that move, with the colour and dice of the turn it was made in (or the starting
+     *         position for move 0)
+     *
+     * @throws IOException if the snapshot the position is rebuilt from is corrupt
+     */
+    public GameSnapshot positionAfterMoves(int move) throws IOException {
+        if (move < 0 || move > moves) {
+            throw new IllegalArgumentException("The journal has " + moves + " moves.");
+        }
+        /* Start before the move rather than at a later snapshot with the same number of moves */
+        return replay((move == 0) ? 0 : lastSnapshotBefore(snapshotMoves, move - 1), Integer.MAX_VALUE, move);
+    }
+
+    /* The index of the last snapshot at or before the target, by binary search */
+    private int lastSnapshotBefore(int[] counts, int target) {
+        int low = 0;
+        int high = numberOfSnapshots - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (counts[middle] <= target) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the positionHash() of the board at the start of the game and after each completed turn, indexed by the
+     *         number of turns completed
+     *
+     * @throws IOException if the starting snapshot is corrupt or a move is illegal
+     */
+    long[] hashesAfterTurns() throws IOException {
+        long[] hashes = new long[turns + 1];
+        byte[] bytes = new byte[GameSnapshot.SIZE];
+        int offset = snapshotOffsets[0];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = events.get(offset + i);
+        }
+        GameSnapshot start = GameSnapshot.fromBytes(bytes);
+        PackedBoard board = start.toPackedBoard();
+        Colour colour = (start.getCurrentColour() == null) ? Colour.values()[0] : start.getCurrentColour();
+        int turn = 0;
+        hashes[0] = board.positionHash();
+
+        offset += GameSnapshot.SIZE;
+        while (turn < turns && offset < end) {
+            int event = events.get(offset) & 0xFF;
+            if (event < ROLL) {
+                try {
+                    board.makeUndoableMove(colour, event);
+                } catch (IllegalMoveException e) {
+                    throw new IOException("The journal has an illegal move at byte " + offset + ".");
+                }
+                offset++;
+            } else if (event == TURN_END) {
+                colour = colour.otherColour();
+                turn++;
+                hashes[turn] = board.positionHash();
+                offset++;
+            } else if (event == SNAPSHOT) {
+                offset += 1 + GameSnapshot.SIZE;
+            } else {
+                offset++;
+            }
+        }
+        return hashes;
+    }
+
+    /* Replay from a snapshot until either the target turn or the target move is reached */
+    private GameSnapshot replay(int snapshot, int targetTurn, int targetMove) throws IOException {
+        byte[] bytes = new byte[GameSnapshot.SIZE];
+        int offset = snapshotOffsets[snapshot];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = events.get(offset + i);
+        }
+        GameSnapshot start = GameSnapshot.fromBytes(bytes);
+        PackedBoard board = start.toPackedBoard();
+        Colour colour = (start.getCurrentColour() == null) ? Colour.values()[0] : start.getCurrentColour();
+        DiceRoll roll = (start.getDieValue1() == 0 || start.getDieValue2() == 0) ? null : DiceRoll.of(start.getDieValue1(), start.getDieValue2());
+        int turn = snapshotTurns[snapshot];
+        int move = snapshotMoves[snapshot];
+
+        offset += GameSnapshot.SIZE;
+        while (turn < targetTurn && move < targetMove && offset < end) {
+            int event = events.get(offset) & 0xFF;
+            if (event < ROLL) {
+                try {
+                    board.makeUndoableMove(colour, event);
+                } catch (IllegalMoveException e) {
+                    throw new IOException("The journal has an illegal move at byte " + offset + ".");
+                }
+                move++;
+                offset++;
+            } else if (event < TURN_END) {
+                roll = DiceRoll.get(event - ROLL);
+                offset++;
+            } else if (event == TURN_END) {
+                colour = colour.otherColour();
+                roll = null;
+                turn++;
+                offset++;
+            } else if (event == SNAPSHOT) {
+                offset += 1 + GameSnapshot.SIZE;
+            } else {
+                offset++;
+            }
+        }
+
+        String[] playerTypes = new String[Colour.values().length];
+        for (Colour c : Colour.values()) {
+            playerTypes[c.ordinal()] = start.getPlayerType(c);
+        }
+        return new GameSnapshot(board, colour, (roll == null) ? 0 : roll.getSmallerValue(), (roll == null) ? 0 : roll.getLargerValue(), playerTypes);
+    }
+
+    /**
+     * Writer appends the events of one game to a journal file. Events are buffered in memory and written out at the
+     * end of each turn if flushEveryTurn is set (so a crash loses at most the turn being played), otherwise only when
+     * the buffer fills or the writer is flushed or closed.
+     *
+     * The writer follows the game on its own board, so that it can write the snapshots and notice when the game is won.
+     */
+    public static class Writer implements Closeable {
+        private final OutputStream out;
+        private final boolean flushEveryTurn;
+        private final PackedBoard board;
+        private final String[] playerTypes;
+        private Colour colour;
+        private int turns;
+        private boolean finished;
+
+        /**
+         * Create a new journal file, replacing any file of the same name, and write the starting position to it
+         *
+         * @param file the journal file
+         * @param start the position the game starts from
+         * @param flushEveryTurn true to write the events out at the end of every turn
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(Path file, GameSnapshot start, boolean flushEveryTurn) throws IOException {
+            this(new BufferedOutputStream(Files.newOutputStream(file)), start, flushEveryTurn);
+        }
+
+        /**
+         * Write a journal to a stream, for example to keep it in memory until it is added to a GameArchive
+         *
+         * @param out the stream to write to, which is closed when the writer is closed
+         * @param start the position the game starts from
+         * @param flushEveryTurn true to flush the stream at the end of every turn
+         *
+         * @throws IOException if the stream cannot be written
+         */
+        public Writer(OutputStream out, GameSnapshot start, boolean flushEveryTurn) throws IOException {
+            this.out = out;
+            this.flushEveryTurn = flushEveryTurn;
+            this.board = start.toPackedBoard();
+            this.colour = (start.getCurrentColour() == null) ? Colour.values()[0] : start.getCurrentColour();
+            this.playerTypes = new String[Colour.values().length];
+            for (Colour c : Colour.values()) {
+                playerTypes[c.ordinal()] = start.getPlayerType(c);
+            }
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeSnapshot(start.getDieValue1(), start.getDieValue2());
+            out.flush();
+        }
+
+        private void writeSnapshot(int dieValue1, int dieValue2) throws IOException {
+            out.write(SNAPSHOT);
+            out.write(new GameSnapshot(board, colour, dieValue1, dieValue2, playerTypes).toBytes());
+        }
+
+        /**
+         * @param roll the roll of the dice for the current turn
+         */
+        public void roll(DiceRoll roll) throws IOException {
+            out.write(ROLL + roll.getIndex());
+        }
+
+        /**
+         * @param move the encoded move made by the player whose turn it is
+         *
+         * @throws IllegalMoveException if the move is not legal in the position the journal has reached
+         */
+        public void move(int move) throws IOException, IllegalMoveException {
+            board.makeUndoableMove(colour, move);
+            out.write(move);
+        }
+
+        /**
+         * End the current turn, writing a snapshot if one is due and the winner if the game has been won
+         */
+        public void endTurn() throws IOException {
+            out.write(TURN_END);
+            colour = colour.otherColour();
+            turns++;
+            Colour winner = board.winner();
+            if (winner != null && !finished) {
+                out.write(WINNER + winner.ordinal());
+                finished = true;
+            } else if (turns % SNAPSHOT_INTERVAL == 0) {
+                writeSnapshot(0, 0);
+            }
+            if (flushEveryTurn || finished) {
+                out.flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Print a summary of a journal and optionally save the position after a turn, for example to recover a game
+     * after a crash
+     *
+     * @param args the journal file, then optionally the number of turns and a file to save that position to (which
+     *             Game can load)
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: GameJournal <journal file> [turn] [snapshot file to write]");
+            return;
+        }
+        try {
+            GameJournal journal = open(Paths.get(args[0]));
+            System.out.println(journal.getTurns() + " turns, " + journal.getMoves() + " moves, " + journal.getNumberOfSnapshots()
+                    + " snapshots, " + ((journal.getWinner() == null) ? "not finished" : journal.getWinner() + " won"));
+            int turn = (args.length > 1) ? Integer.parseInt(args[1]) : journal.getTurns();
+            GameSnapshot position = journal.positionAfterTurns(turn);
+            System.out.println("After turn " + turn + ", " + position.getCurrentColour() + " to play:");
+            System.out.println(position.toPackedBoard());
+            if (args.length > 2) {
+                Files.write(Paths.get(args[2]), position.toBytes());
+                System.out.println("Saved the position to " + Paths.get(args[2]).toAbsolutePath());
+            }
+        } catch (IOException e) {
+            System.out.println("There was an error reading the journal: " + e.getMessage());
+        }
+    }
+}
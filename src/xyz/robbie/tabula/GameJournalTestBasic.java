@@ -0,0 +1,133 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GameJournalTestBasic {
+
+    @Test
+    public void every_turn_and_move_can_be_rebuilt() throws Exception {
+        Path file = Files.createTempFile("journal", ".tabj");
+        try {
+            PackedBoard board = new PackedBoard();
+            TurnGenerator generator = new TurnGenerator();
+            SplittableRandom random = new SplittableRandom(42);
+            List<Long> hashAfterTurn = new ArrayList<Long>();
+            List<Long> hashAfterMove = new ArrayList<Long>();
+            hashAfterTurn.add(board.positionHash());
+            hashAfterMove.add(board.positionHash());
+
+            Colour colour = Colour.values()[0];
+            try (GameJournal.Writer writer = new GameJournal.Writer(file, new GameSnapshot(board, colour, 0, 0, new String[2]), false)) {
+                while (board.winner() == null) {
+                    DiceRoll roll = DiceRoll.of(random.nextInt(6) + 1, random.nextInt(6) + 1);
+                    writer.roll(roll);
+                    generator.generateTurns(board, colour, roll);
+                    int turn = generator.getTurn(random.nextInt(generator.getNumberOfTurns()));
+                    for (int i = 0; i < EncodedTurn.numberOfMoves(turn); i++) {
+                        board.makeUndoableMove(colour, EncodedTurn.move(turn, i));
+                        writer.move(EncodedTurn.move(turn, i));
+                        hashAfterMove.add(board.positionHash());
+                    }
+                    writer.endTurn();
+                    hashAfterTurn.add(board.positionHash());
+                    colour = colour.otherColour();
+                }
+            }
+
+            GameJournal journal = GameJournal.open(file);
+            assertEquals(hashAfterTurn.size() - 1, journal.getTurns());
+            assertEquals(hashAfterMove.size() - 1, journal.getMoves());
+            assertEquals(board.winner(), journal.getWinner());
+            assertTrue(journal.getNumberOfSnapshots() > 1);
+            for (int t = 0; t <= journal.getTurns(); t++) {
+                GameSnapshot position = journal.positionAfterTurns(t);
+                assertEquals((long) hashAfterTurn.get(t), position.toPackedBoard().positionHash());
+                assertEquals(Colour.values()[t % 2], position.getCurrentColour());
+            }
+            for (int m = 0; m <= journal.getMoves(); m++) {
+                assertEquals((long) hashAfterMove.get(m), journal.positionAfterMoves(m).toPackedBoard().positionHash());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void truncated_journal_keeps_complete_events() throws Exception {
+        Path file = Files.createTempFile("journal", ".tabj");
+        try {
+            Game game = new Game(new SplittableRandom(3));
+            game.setPlayer(Colour.GREEN, new ComputerPlayer());
+            game.setPlayer(Colour.BLUE, new ComputerPlayer());
+            game.startJournal(file.toString());
+            Colour winner = game.play();
+            assertEquals(winner, GameJournal.open(file).getWinner());
+
+            /* Cut the file part way through a snapshot, as a crash might */
+            byte[] bytes = Files.readAllBytes(file);
+            int lastSnapshot = 0;
+            for (int i = 6 + GameSnapshot.SIZE; i < bytes.length; i++) {
+                if ((bytes[i] & 0xFF) == GameJournal.SNAPSHOT) {
+                    lastSnapshot = i;
+                    break;
+                }
+            }
+            Files.write(file, Arrays.copyOf(bytes, lastSnapshot + 10));
+            GameJournal truncated = GameJournal.open(file);
+            assertEquals(1, truncated.getNumberOfSnapshots());
+            assertEquals(GameJournal.SNAPSHOT_INTERVAL, truncated.getTurns());
+            assertNull(truncated.getWinner());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void journal_stream_is_closed_when_the_game_ends() throws Exception {
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        Game game = new Game(new SplittableRandom(5));
+        game.setPlayer(Colour.GREEN, new ComputerPlayer());
+        game.setPlayer(Colour.BLUE, new ComputerPlayer());
+        game.startJournal(out);
+        Colour winner = game.play();
+        assertTrue(closed[0]);
+        assertEquals(winner, GameJournal.wrap(ByteBuffer.wrap(out.toByteArray())).getWinner());
+    }
+
+    @Test
+    public void dice_rolled_before_the_journal_started_are_kept() throws Exception {
+        Game game = new Game(new SplittableRandom(7));
+        game.loadPosition(new GameSnapshot(new PackedBoard(), Colour.GREEN, 3, 5, new String[2]));
+        game.setPlayer(Colour.GREEN, new ComputerPlayer());
+        game.setPlayer(Colour.BLUE, new ComputerPlayer());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        game.startJournal(out);
+        game.play();
+
+        GameJournal journal = GameJournal.wrap(ByteBuffer.wrap(out.toByteArray()));
+        for (GameSnapshot position : new GameSnapshot[]{journal.positionAfterTurns(0), journal.positionAfterMoves(1)}) {
+            assertEquals(Colour.GREEN, position.getCurrentColour());
+            assertEquals(3, position.getDieValue1());
+            assertEquals(5, position.getDieValue2());
+        }
+        assertEquals(0, journal.positionAfterTurns(1).getDieValue1());
+    }
+}
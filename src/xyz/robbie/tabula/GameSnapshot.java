@@ -0,0 +1,288 @@
+package xyz.robbie.tabula;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * GameSnapshot is the state of a game in a compact binary form: the pieces of each colour in each location, the die
+ * values, whose turn it is and the type of each player. It is an alternative to the Gson JSON saved by Game, which
+ * also holds every location name and mixed flag and is around 50 times bigger.
+ *
+ * Version 1 of the format is SIZE (41) bytes:
+ *
+ *   0-3   magic bytes "TABS"
+ *   4     version
+ *   5     number of locations, including START, FINISH and KNOCKED
+ *   6     ordinal of the current colour plus 1, or 0 if no game is being played
+ *   7     first die value in the high 4 bits and second in the low 4 bits, 0 for a die which has not been rolled
+ *   8-9   type of the player of each colour, as an index into PLAYER_TYPES plus 1, or 0 if there is none
+ *   10-36 number of pieces of each colour in each location, 4 bits each, in the order of PackedBoard's counts
+ *   37-40 CRC-32 of bytes 0-36
+ *
+ * Location names and mixed flags are always the defaults, so they are not stored.
+ */
+public final class GameSnapshot {
+
+    public static final int VERSION = 1;
+
+    /* The player types that can be stored, as used in saved games */
+    static final String[] PLAYER_TYPES = {"human", "computer", "expectiminimax", "montecarlo"};
+
+    private static final byte[] MAGIC = {'T', 'A', 'B', 'S'};
+    private static final int COUNTS_LENGTH = PackedBoard.LOCATION_COUNT * PackedBoard.COLOUR_COUNT;
+    private static final int HEADER_SIZE = MAGIC.length + 4 + PackedBoard.COLOUR_COUNT;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MAX_COUNT = 15;
+
+    public static final int SIZE = HEADER_SIZE + (COUNTS_LENGTH + 1) / 2 + CHECKSUM_SIZE;
+
+    private final byte[] counts;
+    private final int dieValue1;
+    private final int dieValue2;
+    private final Colour currentColour;
+    private final String[] playerTypes;
+
+    /**
+     * @param board the board
+     * @param currentColour the colour whose turn it is, or null if no game is being played
+     * @param dieValue1 the value of the first die, or 0 if it has not been rolled
+     * @param dieValue2 the value of the second die, or 0 if it has not been rolled
+     * @param playerTypes the type of the player of each colour, indexed by ordinal, with null for none
+     */
+    public GameSnapshot(BoardInterface board, Colour currentColour, int dieValue1, int dieValue2, String[] playerTypes) {
+        this.counts = new byte[COUNTS_LENGTH];
+        for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+            LocationInterface location = PackedBoard.locationOf(board, i);
+            for (Colour c : Colour.values()) {
+                counts[i * PackedBoard.COLOUR_COUNT + c.ordinal()] = (byte) location.numberOfPieces(c);
+            }
+        }
+        this.currentColour = currentColour;
+        this.dieValue1 = dieValue1;
+        this.dieValue2 = dieValue2;
+        this.playerTypes = Arrays.copyOf(playerTypes, PackedBoard.COLOUR_COUNT);
+    }
+
+    private GameSnapshot(byte[] counts, Colour currentColour, int dieValue1, int dieValue2, String[] playerTypes) {
+        this.counts = counts;
+        this.currentColour = currentColour;
+        this.dieValue1 = dieValue1;
+        this.dieValue2 = dieValue2;
+        this.playerTypes = playerTypes;
+    }
+
+    /**
+     * @param data the start of a file or buffer
+     * @return true if and only if the data starts with the magic bytes of a snapshot
+     */
+    public static boolean isSnapshot(byte[] data) {
+        if (data.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the snapshot as SIZE bytes
+     *
+     * @throws IOException if a location holds more pieces of one colour than the format can store
+     */
+    public byte[] toBytes() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        write(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Write the snapshot at the position of a buffer and advance it by SIZE
+     *
+     * @param buffer the buffer to write to, with at least SIZE bytes remaining
+     *
+     * @throws IOException if a location holds more pieces of one colour than the format can store
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) PackedBoard.LOCATION_COUNT);
+        buffer.put((byte) ((currentColour == null) ? 0 : currentColour.ordinal() + 1));
+        buffer.put((byte) (dieValue1 << 4 | dieValue2));
+        for (String type : playerTypes) {
+            buffer.put((byte) (indexOfType(type) + 1));
+        }
+        for (int i = 0; i < COUNTS_LENGTH; i += 2) {
+            int low = counts[i];
+            int high = (i + 1 < COUNTS_LENGTH) ? counts[i + 1] : 0;
+            if (low > MAX_COUNT || high > MAX_COUNT) {
+                throw new IOException("A location has more than " + MAX_COUNT + " pieces of one colour.");
+            }
+            buffer.put((byte) (high << 4 | low));
+        }
+        buffer.putInt((int) checksum(buffer, start, SIZE - CHECKSUM_SIZE));
+    }
+
+    /**
+     * @param data the bytes of a snapshot, as made by toBytes()
+     * @return the snapshot
+     *
+     * @throws IOException if the data is not a valid snapshot
+     */
+    public static GameSnapshot fromBytes(byte[] data) throws IOException {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Read a snapshot from the position of a buffer and advance it by SIZE
+     *
+     * @param buffer the buffer to read from
+     * @return the snapshot
+     *
+     * @throws IOException if the buffer does not hold a valid snapshot at its position
+     */
+    public static GameSnapshot read(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        if (buffer.remaining() < SIZE) {
+            throw new IOException("The snapshot is too short (need " + SIZE + " bytes but only found " + buffer.remaining() + ")");
+        }
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) {
+                throw new IOException("The data is not a game snapshot.");
+            }
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("The snapshot has version " + version + " but only version " + VERSION + " can be read.");
+        }
+        if (buffer.get() != PackedBoard.LOCATION_COUNT) {
+            throw new IOException("The snapshot has an invalid number of locations (need " + PackedBoard.LOCATION_COUNT + ")");
+        }
+
+        int colour = buffer.get();
+        int dice = buffer.get() & 0xFF;
+        String[] playerTypes = new String[PackedBoard.COLOUR_COUNT];
+        for (int i = 0; i < playerTypes.length; i++) {
+            int type = buffer.get();
+            if (type < 0 || type > PLAYER_TYPES.length) {
+                throw new IOException("The snapshot has an unknown player type.");
+            }
+            playerTypes[i] = (type == 0) ? null : PLAYER_TYPES[type - 1];
+        }
+        byte[] counts = new byte[COUNTS_LENGTH];
+        for (int i = 0; i < COUNTS_LENGTH; i += 2) {
+            int packed = buffer.get() & 0xFF;
+            counts[i] = (byte) (packed & 0xF);
+            if (i + 1 < COUNTS_LENGTH) {
+                counts[i + 1] = (byte) (packed >>> 4);
+            }
+        }
+        int expected = (int) checksum(buffer, start, SIZE - CHECKSUM_SIZE);
+        if (buffer.getInt() != expected) {
+            throw new IOException("The snapshot is corrupt (checksum does not match).");
+        }
+
+        if (colour < 0 || colour > PackedBoard.COLOUR_COUNT) {
+            throw new IOException("The snapshot has an invalid current colour.");
+        }
+        int dieValue1 = dice >>> 4;
+        int dieValue2 = dice & 0xF;
+        if (dieValue1 > DieInterface.NUMBER_OF_SIDES_ON_DIE || dieValue2 > DieInterface.NUMBER_OF_SIDES_ON_DIE) {
+            throw new IOException("The snapshot has invalid die values.");
+        }
+        return new GameSnapshot(counts, (colour == 0) ? null : Colour.values()[colour - 1], dieValue1, dieValue2, playerTypes);
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + start, length);
+        } else {
+            for (int i = start; i < start + length; i++) {
+                crc.update(buffer.get(i));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the index of the type in PLAYER_TYPES, or -1 if it is null or not there
+     */
+    static int indexOfType(String type) {
+        if (type != null) {
+            for (int i = 0; i < PLAYER_TYPES.length; i++) {
+                if (PLAYER_TYPES[i].equals(type)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a new board with the pieces of the snapshot
+     */
+    public PackedBoard toPackedBoard() {
+        return PackedBoard.withCounts(counts);
+    }
+
+    /**
+     * @return a new Board with the pieces of the snapshot
+     */
+    public Board toBoard() {
+        return toPackedBoard().toBoard();
+    }
+
+    /**
+     * @return the number of pieces of the colour in the location, from START_INDEX to KNOCKED_INDEX
+     */
+    public int numberOfPieces(int locationIndex, Colour colour) {
+        return counts[locationIndex * PackedBoard.COLOUR_COUNT + colour.ordinal()];
+    }
+
+    /**
+     * @return the colour whose turn it is, or null if no game was being played
+     */
+    public Colour getCurrentColour() {
+        return currentColour;
+    }
+
+    /**
+     * @return the value of the first die, or 0 if it had not been rolled
+     */
+    public int getDieValue1() {
+        return dieValue1;
+    }
+
+    /**
+     * @return the value of the second die, or 0 if it had not been rolled
+     */
+    public int getDieValue2() {
+        return dieValue2;
+    }
+
+    /**
+     * @return the type of the player of the colour, or null if there was none or it cannot be stored
+     */
+    public String getPlayerType(Colour colour) {
+        return playerTypes[colour.ordinal()];
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof GameSnapshot)) {
+            return false;
+        }
+        GameSnapshot other = (GameSnapshot) o;
+        return Arrays.equals(counts, other.counts) && currentColour == other.currentColour && dieValue1 == other.dieValue1
+                && dieValue2 == other.dieValue2 && Arrays.equals(playerTypes, other.playerTypes);
+    }
+
+    public int hashCode() {
+        return Arrays.hashCode(counts) * 31 + Arrays.hashCode(playerTypes) * 7 + (dieValue1 << 4 | dieValue2);
+    }
+}
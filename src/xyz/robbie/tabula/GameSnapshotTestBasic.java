@@ -0,0 +1,78 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameSnapshotTestBasic {
+
+    private static PackedBoard midGameBoard() throws Exception {
+        PackedBoard board = new PackedBoard();
+        board.takeTurn(Colour.GREEN, EncodedTurn.toTurn(EncodedTurn.withMove(EncodedTurn.withMove(EncodedTurn.EMPTY, 0, EncodedMove.of(0, 3)), 1, EncodedMove.of(0, 5))), DiceRoll.of(3, 5).getValues());
+        return board;
+    }
+
+    @Test
+    public void round_trips_through_bytes() throws Exception {
+        PackedBoard board = midGameBoard();
+        GameSnapshot snapshot = new GameSnapshot(board, Colour.BLUE, 6, 2, new String[]{"computer", "montecarlo"});
+        byte[] bytes = snapshot.toBytes();
+        assertEquals(GameSnapshot.SIZE, bytes.length);
+        assertTrue(GameSnapshot.isSnapshot(bytes));
+
+        GameSnapshot read = GameSnapshot.fromBytes(bytes);
+        assertEquals(snapshot, read);
+        assertEquals(Colour.BLUE, read.getCurrentColour());
+        assertEquals(6, read.getDieValue1());
+        assertEquals("montecarlo", read.getPlayerType(Colour.BLUE));
+        assertEquals(board.positionHash(), read.toPackedBoard().positionHash());
+    }
+
+    @Test
+    public void corrupt_snapshot_is_rejected() throws Exception {
+        byte[] bytes = new GameSnapshot(new PackedBoard(), null, 0, 0, new String[2]).toBytes();
+        bytes[20] ^= 1;
+        boolean rejected = false;
+        try {
+            GameSnapshot.fromBytes(bytes);
+        } catch (IOException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void game_loads_either_format() throws Exception {
+        GameSnapshot snapshot = new GameSnapshot(midGameBoard(), Colour.BLUE, 4, 4, new String[]{"computer", "expectiminimax"});
+        Path binary = Files.createTempFile("game", Game.BINARY_SAVE_EXTENSION);
+        Path json = Files.createTempFile("game", ".json");
+        try {
+            Files.write(binary, snapshot.toBytes());
+            Game game = new Game();
+            game.loadGame(binary.toString());
+            assertEquals(snapshot, game.toSnapshot());
+
+            game.saveGame(binary.toString());
+            game.saveGame(json.toString());
+            assertEquals(GameSnapshot.SIZE, Files.size(binary));
+            assertFalse(GameSnapshot.isSnapshot(Files.readAllBytes(json)));
+
+            Game fromBinary = new Game();
+            fromBinary.loadGame(binary.toString());
+            Game fromJson = new Game();
+            fromJson.loadGame(json.toString());
+            assertEquals(fromJson.toSnapshot(), fromBinary.toSnapshot());
+            assertEquals("expectiminimax", fromBinary.toSnapshot().getPlayerType(Colour.BLUE));
+            assertEquals(Colour.BLUE, fromJson.getCurrentPlayer());
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(json);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package xyz.robbie.tabula;
+
+/**
+ * HeuristicEvaluator values a position by how far each colour still has to move its pieces (the pip count), and by
+ * how many pips each colour can expect to lose from having its single pieces (blots) knocked off.
+ **/
+
+public class HeuristicEvaluator implements PositionEvaluator {
+
+    /* Number of the 36 rolls which hit a blot the given distance ahead of a piece (index 0 is unused) */
+    private static final int[] SHOTS = {0, 11, 12, 14, 15, 15, 17, 6, 6, 5, 3, 2, 3};
+
+    /* The colour to roll next gets the first chance to hit, so its own blots count for less */
+    private static final double OWN_BLOT_WEIGHT = 0.5;
+
+    /* Pip difference at which the position is valued at tanh(1), roughly a 3 to 1 favourite */
+    private static final double PIP_SCALE = 40.0;
+
+    /**
+     * @param board the position to evaluate
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @return the value of the position for the given colour, from -WIN (certain to lose) to WIN (certain to win)
+     **/
+    public double evaluate(SearchBoardInterface board, Colour colour) {
+        Colour winner = board.winner();
+        if (winner != null) {
+            return (winner == colour) ? WIN : -WIN;
+        }
+
+        Colour other = colour.otherColour();
+        double score = pipCount(board, other) - pipCount(board, colour)
+                + expectedPipsLost(board, other) - OWN_BLOT_WEIGHT * expectedPipsLost(board, colour);
+
+        return WIN * Math.tanh(score / PIP_SCALE);
+    }
+
+    /**
+     * @return the total distance the pieces of the given colour still have to move to reach the finish location
+     */
+    static int pipCount(SearchBoardInterface board, Colour colour) {
+        int pips = board.numberOfPieces(Board.KNOCKED_INDEX, colour) * Board.FINISH_INDEX;
+        for (int i = Board.START_INDEX; i <= BoardInterface.NUMBER_OF_LOCATIONS; i++) {
+            pips += board.numberOfPieces(i, colour) * (Board.FINISH_INDEX - i);
+        }
+        return pips;
+    }
+
+    /* Sum over the blots of the given colour of the chance of being hit times the pips lost by being sent back to the start */
+    private static double expectedPipsLost(SearchBoardInterface board, Colour colour) {
+        Colour other = colour.otherColour();
+        boolean otherWaiting = board.numberOfPieces(Board.START_INDEX, other) + board.numberOfPieces(Board.KNOCKED_INDEX, other) > 0;
+
+        double pipsLost = 0;
+        for (int blot = 1; blot <= BoardInterface.NUMBER_OF_LOCATIONS; blot++) {
+            if (board.numberOfPieces(blot, colour) != 1) {
+                continue;
+            }
+
+            /* Use the most dangerous single piece behind the blot, counting pieces off the board as being at the start */
+            int shots = 0;
+            for (int distance = 1; distance < SHOTS.length && distance <= blot; distance++) {
+                int shooter = blot - distance;
+                if (shooter == Board.START_INDEX ? otherWaiting : board.numberOfPieces(shooter, other) > 0) {
+                    shots = Math.max(shots, SHOTS[distance]);
+                }
+            }
+            pipsLost += shots / 36.0 * blot;
+        }
+        return pipsLost;
+    }
+}
@@ -18,6 +18,10 @@ public class Location implements LocationInterface {
     private boolean mixed;
     private HashMap<Colour, Integer> pieces;
 
+    /* The board this location belongs to, which is told whenever the number of pieces changes so that it can keep its position hash up to date */
+    private transient Board board;
+    private transient int locationIndex;
+
     public Location(String name) {
         setName(name);
         setMixed(false);
@@ -128,11 +132,31 @@ public class Location implements LocationInterface {
     }
 
     private void incrementColour(Colour c) {
-        pieces.put(c, numberOfPieces(c) + 1);
+        setNumberOfPieces(c, numberOfPieces(c) + 1);
     }
 
     private void decrementColour(Colour c) {
-        pieces.put(c, numberOfPieces(c) - 1);
+        setNumberOfPieces(c, numberOfPieces(c) - 1);
+    }
+
+    /**
+     * Set the number of pieces of a colour directly, for building a location from a saved game without adding the
+     * pieces one at a time. Does not check that the location is still valid.
+     */
+    void setNumberOfPieces(Colour c, int count) {
+        int oldCount = pieces.put(c, count);
+        if (board != null) {
+            board.pieceCountChanged(locationIndex, c, oldCount, count);
+        }
+    }
+
+    /**
+     * @param board the board this location belongs to, or null if it does not belong to one
+     * @param locationIndex the index of this location on that board
+     */
+    void setBoard(Board board, int locationIndex) {
+        this.board = board;
+        this.locationIndex = locationIndex;
     }
 
     /**
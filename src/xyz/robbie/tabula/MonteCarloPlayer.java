@@ -0,0 +1,410 @@
+package xyz.robbie.tabula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * MonteCarloPlayer is a computer player which ranks its candidate turns by playing fast games to the end (rollouts)
+ * from the position each turn leads to, and takes the turn which wins most often. It needs no evaluation function.
+ *
+ * Rollouts are played in rounds of a batch for every candidate still in the running. After each round any candidate
+ * whose win rate is confidently below the best candidate's is dropped, and the search stops early once only one is
+ * left. Otherwise it stops when the rollout budget or the time budget runs out. A round which would go over the
+ * rollout budget is cut down to fit it.
+ *
+ * The batches of a round run in parallel on a ForkJoinPool. Each candidate has its own scratch board, turn generator
+ * and SplittableRandom stream split from the player's, so the rollouts share nothing and do not create any objects.
+ * Players play rollouts on the calling thread unless given a parallelism, since the simulation harnesses already make
+ * a player for each of their threads. A player with its own pool should be closed when it is no longer needed.
+ *
+ * Each implementation requires a constructor with no parameters.
+ **/
+
+public class MonteCarloPlayer implements PlayerInterface, AutoCloseable {
+    private final String typeOfPlayer = "montecarlo"; // This is used for Gson so that we have a string representation of what type of player this is
+
+    /**
+     * How the turns in a rollout are chosen
+     */
+    public enum RolloutPolicy {
+        /* A random legal move for each die */
+        RANDOM,
+
+        /* For each die the move which leaves the biggest lead in pips, with ties broken at random, which favours knocking pieces */
+        GREEDY
+    }
+
+    public static final int DEFAULT_MAX_ROLLOUTS = 20000;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 2000;
+
+    /* Seed of the rollouts of a player which is not given a source of random numbers, so that its games can be replayed */
+    public static final long DEFAULT_SEED = 0;
+
+    /* Rollouts per candidate in each round */
+    public static final int BATCH_SIZE = 32;
+
+    /* Rollouts longer than this are scored by the pip counts, as pieces can be knocked back indefinitely */
+    public static final int MAX_ROLLOUT_TURNS = 1000;
+
+    /* Number of standard errors apart two win rates must be for the lower one to be dropped, about 99% confidence */
+    private static final double CONFIDENCE = 2.58;
+
+    private transient int maxRollouts;
+    private transient long timeBudgetMillis;
+    private transient RolloutPolicy policy;
+    private transient int parallelism;
+    private transient SplittableRandom random;
+    private transient ForkJoinPool pool;
+    private transient OpeningBook openingBook;
+
+    /* Rollouts played for the last turn chosen */
+    private transient int lastRollouts;
+
+    public MonteCarloPlayer() {
+        this(DEFAULT_MAX_ROLLOUTS, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param maxRollouts the most rollouts to play for one turn, across all candidates
+     * @param timeBudgetMillis the most time to spend on one turn in milliseconds
+     */
+    public MonteCarloPlayer(int maxRollouts, long timeBudgetMillis) {
+        this(maxRollouts, timeBudgetMillis, RolloutPolicy.GREEDY, 1, new SplittableRandom(DEFAULT_SEED));
+    }
+
+    /**
+     * @param maxRollouts the most rollouts to play for one turn, across all candidates
+     * @param timeBudgetMillis the most time to spend on one turn in milliseconds
+     * @param policy how turns are chosen in rollouts
+     * @param parallelism the number of threads to play rollouts on, where 1 plays them on the calling thread only
+     * @param random the source of random numbers, which each candidate's rollouts get a split of
+     */
+    public MonteCarloPlayer(int maxRollouts, long timeBudgetMillis, RolloutPolicy policy, int parallelism, SplittableRandom random) {
+        if (maxRollouts < 1 || timeBudgetMillis < 1) {
+            throw new IllegalArgumentException("The rollout and time budgets must be positive.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Rollouts need at least 1 thread.");
+        }
+        this.maxRollouts = maxRollouts;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.policy = policy;
+        this.parallelism = parallelism;
+        this.random = random;
+    }
+
+    /**
+     * Shut down the threads rollouts are played on, if any have been started. The player can still be used afterwards,
+     * and starts new threads if it needs them.
+     */
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return the opening book the player takes turns from instead of playing rollouts, or null if it has none
+     */
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    /**
+     * @param openingBook the opening book to take turns from instead of playing rollouts, or null to always play them
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public TurnInterface getTurn(Colour colour, BoardInterface board, List<Integer> diceValues) throws PauseException {
+        return EncodedTurn.toTurn(chooseTurn(PackedBoard.copyOf(board), colour, diceValues));
+    }
+
+    /**
+     * @param board the board to choose a turn on
+     * @param colour the colour to move
+     * @param diceValues the dice values available
+     * @return the encoded turn (see EncodedTurn) which won the most rollouts
+     */
+    int chooseTurn(PackedBoard board, Colour colour, List<Integer> diceValues) {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1000000;
+        lastRollouts = 0;
+        TurnGenerator generator = new TurnGenerator();
+        int numberOfTurns = generator.generateTurns(board, colour, diceValues);
+        if (numberOfTurns == 1) {
+            return generator.getTurn(0);
+        }
+        if (openingBook != null) {
+            int bookTurn = openingBook.legalTurn(board, colour, diceValues, generator, numberOfTurns);
+            if (bookTurn != EncodedTurn.EMPTY) {
+                return bookTurn;
+            }
+        }
+
+        Rollouts[] candidates = new Rollouts[numberOfTurns];
+        for (int i = 0; i < numberOfTurns; i++) {
+            PackedBoard position = board.clone();
+            try {
+                EncodedTurn.makeTurn(position, colour, generator.getTurn(i), new int[EncodedTurn.MAX_MOVES], 0);
+            } catch (IllegalMoveException e) {
+                // Should never happen as the turn generator only generates legal turns
+                e.printStackTrace();
+            }
+            candidates[i] = new Rollouts(generator.getTurn(i), position, colour, policy, random.split());
+        }
+
+        int rolloutsPlayed = 0;
+        int remaining = numberOfTurns;
+        List<Rollouts> round = new ArrayList<Rollouts>(numberOfTurns);
+        while (remaining > 1 && rolloutsPlayed < maxRollouts && System.nanoTime() < deadline) {
+            round.clear();
+            for (Rollouts candidate : candidates) {
+                if (candidate != null) {
+                    round.add(candidate);
+                }
+            }
+
+            /* Share out what is left of the budget if a full batch for every candidate would go over it */
+            int budget = maxRollouts - rolloutsPlayed;
+            for (int i = 0; i < round.size(); i++) {
+                round.get(i).batchSize = Math.min(BATCH_SIZE, budget / round.size() + ((i < budget % round.size()) ? 1 : 0));
+            }
+            playRound(round);
+            rolloutsPlayed += Math.min(BATCH_SIZE * round.size(), budget);
+            remaining -= dropDominated(candidates);
+        }
+
+        Rollouts best = null;
+        for (Rollouts candidate : candidates) {
+            if (candidate != null && (best == null || candidate.winRate() > best.winRate())) {
+                best = candidate;
+            }
+        }
+        lastRollouts = rolloutsPlayed;
+        return best.turn;
+    }
+
+    /**
+     * @return the number of rollouts played to choose the last turn, which is 0 if it was the only turn or a book turn
+     */
+    int getLastRollouts() {
+        return lastRollouts;
+    }
+
+    private void playRound(List<Rollouts> round) {
+        if (parallelism == 1) {
+            for (Rollouts rollouts : round) {
+                rollouts.call();
+            }
+            return;
+        }
+
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        for (Future<Void> future : pool.invokeAll(round)) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // Should never happen as rollouts do not throw and the pool is never shut down
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /* Drop every candidate whose win rate is confidently below the best one, returning the number dropped */
+    private static int dropDominated(Rollouts[] candidates) {
+        Rollouts best = null;
+        for (Rollouts candidate : candidates) {
+            if (candidate != null && (best == null || candidate.winRate() > best.winRate())) {
+                best = candidate;
+            }
+        }
+
+        int dropped = 0;
+        double bestLower = best.winRate() - CONFIDENCE * best.standardError();
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] != null && candidates[i].winRate() + CONFIDENCE * candidates[i].standardError() < bestLower) {
+                candidates[i] = null;
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Rollouts plays batches of rollouts from the position after one candidate turn, keeping count of the wins.
+     */
+    private static final class Rollouts implements Callable<Void> {
+        private final int turn;
+        private final PackedBoard start;
+        private final Colour colour;
+        private final RolloutPolicy policy;
+        private final SplittableRandom random;
+
+        /* Scratch space, so that playing a rollout does not create any objects */
+        private final PackedBoard board;
+        private final TurnGenerator generator = new TurnGenerator();
+        private final int[] dice = new int[EncodedTurn.MAX_MOVES];
+        private final int[] undos = new int[EncodedTurn.MAX_MOVES];
+        private final int[] moves = new int[EncodedMove.MAX_MOVES_PER_DIE];
+
+        private long wins;
+        private long played;
+
+        /* Rollouts to play in the next call */
+        private int batchSize = BATCH_SIZE;
+
+        Rollouts(int turn, PackedBoard start, Colour colour, RolloutPolicy policy, SplittableRandom random) {
+            this.turn = turn;
+            this.start = start;
+            this.colour = colour;
+            this.policy = policy;
+            this.random = random;
+            this.board = start.clone();
+        }
+
+        public Void call() {
+            for (int i = 0; i < batchSize; i++) {
+                if (playRollout()) {
+                    wins++;
+                }
+                played++;
+            }
+            return null;
+        }
+
+        double winRate() {
+            return (wins + 1.0) / (played + 2.0);
+        }
+
+        /* Standard error of the win rate, with the same one win and one loss added as winRate() to avoid 0 */
+        double standardError() {
+            double p = winRate();
+            return Math.sqrt(p * (1 - p) / (played + 2.0));
+        }
+
+        /* Play one game to the end, returning true if and only if colour wins */
+        private boolean playRollout() {
+            board.copyPiecesFrom(start);
+            Colour toMove = colour.otherColour();
+            for (int t = 0; t < MAX_ROLLOUT_TURNS; t++) {
+                playTurn(toMove, rollDice());
+                if (board.isWinner(toMove)) {
+                    return toMove == colour;
+                }
+                toMove = toMove.otherColour();
+            }
+            return HeuristicEvaluator.pipCount(board, colour) < HeuristicEvaluator.pipCount(board, colour.otherColour());
+        }
+
+        private int rollDice() {
+            dice[0] = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            dice[1] = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            if (dice[0] != dice[1]) {
+                return 2;
+            }
+            dice[2] = dice[0];
+            dice[3] = dice[0];
+            return 4;
+        }
+
+        /* Usually moving a piece chosen by the policy for each die in turn uses every die, and then it is a legal
+           turn. Only when it does not are all the turns generated, to find the ones which use as many dice as possible. */
+        private void playTurn(Colour toMove, int numberOfDice) {
+            if (numberOfDice == 2 && random.nextBoolean()) {
+                int die = dice[0];
+                dice[0] = dice[1];
+                dice[1] = die;
+            }
+
+            int numberOfMoves = 0;
+            try {
+                while (numberOfMoves < numberOfDice) {
+                    int numberOfCandidates = board.generateMoves(toMove, dice[numberOfMoves], moves, 0);
+                    if (numberOfCandidates == 0) {
+                        break;
+                    }
+                    int move = (policy == RolloutPolicy.GREEDY) ? greedyMove(toMove, numberOfCandidates) : moves[random.nextInt(numberOfCandidates)];
+                    undos[numberOfMoves] = board.makeUndoableMove(toMove, move);
+                    numberOfMoves++;
+                }
+            } catch (IllegalMoveException e) {
+                // Should never happen as only generated moves are made
+                e.printStackTrace();
+            }
+            if (numberOfMoves == numberOfDice) {
+                return;
+            }
+
+            EncodedTurn.unmakeTurn(board, undos, 0, numberOfMoves);
+            int numberOfTurns = generator.generateTurns(board, toMove, dice, numberOfDice);
+            makeTurn(toMove, (policy == RolloutPolicy.GREEDY) ? greedyTurn(toMove, numberOfTurns) : generator.getTurn(random.nextInt(numberOfTurns)));
+        }
+
+        /* The move in moves which leaves the biggest lead in pips, with ties broken at random */
+        private int greedyMove(Colour toMove, int numberOfCandidates) throws IllegalMoveException {
+            int best = moves[0];
+            int bestLead = Integer.MIN_VALUE;
+            int ties = 0;
+            for (int i = 0; i < numberOfCandidates; i++) {
+                int undo = board.makeUndoableMove(toMove, moves[i]);
+                int lead = lead(toMove);
+                board.unmakeMove(undo);
+                if (lead > bestLead) {
+                    best = moves[i];
+                    bestLead = lead;
+                    ties = 1;
+                } else if (lead == bestLead && random.nextInt(++ties) == 0) {
+                    best = moves[i];
+                }
+            }
+            return best;
+        }
+
+        /* The turn found by the generator which leaves the biggest lead in pips, with ties broken at random */
+        private int greedyTurn(Colour toMove, int numberOfTurns) {
+            int best = generator.getTurn(0);
+            int bestLead = Integer.MIN_VALUE;
+            int ties = 0;
+            for (int i = 0; i < numberOfTurns; i++) {
+                int numberOfMoves = makeTurn(toMove, generator.getTurn(i));
+                int lead = lead(toMove);
+                EncodedTurn.unmakeTurn(board, undos, 0, numberOfMoves);
+                if (lead > bestLead) {
+                    best = generator.getTurn(i);
+                    bestLead = lead;
+                    ties = 1;
+                } else if (lead == bestLead && random.nextInt(++ties) == 0) {
+                    best = generator.getTurn(i);
+                }
+            }
+            return best;
+        }
+
+        private int lead(Colour colour) {
+            return HeuristicEvaluator.pipCount(board, colour.otherColour()) - HeuristicEvaluator.pipCount(board, colour);
+        }
+
+        private int makeTurn(Colour toMove, int turn) {
+            try {
+                return EncodedTurn.makeTurn(board, toMove, turn, undos, 0);
+            } catch (IllegalMoveException e) {
+                // Should never happen as the turn generator only generates legal turns
+                e.printStackTrace();
+                return 0;
+            }
+        }
+    }
+
+    public String toString() {
+        return "montecarlo";
+    }
+}
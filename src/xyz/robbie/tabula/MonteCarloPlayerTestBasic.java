@@ -0,0 +1,43 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class MonteCarloPlayerTestBasic {
+
+    private static MonteCarloPlayer player(MonteCarloPlayer.RolloutPolicy policy, long seed) {
+        return new MonteCarloPlayer(500, 60000, policy, 1, new SplittableRandom(seed));
+    }
+
+    @Test
+    public void plays_legal_turns() throws Exception {
+        for (MonteCarloPlayer.RolloutPolicy policy : MonteCarloPlayer.RolloutPolicy.values()) {
+            Board board = new Board();
+            List<Integer> diceValues = Arrays.asList(4, 4, 4, 4);
+            board.takeTurn(Colour.GREEN, player(policy, 1).getTurn(Colour.GREEN, board, diceValues), diceValues);
+            assertEquals(Board.PIECES_PER_PLAYER * Board.FINISH_INDEX - 16, HeuristicEvaluator.pipCount(PackedBoard.copyOf(board), Colour.GREEN));
+        }
+    }
+
+    @Test
+    public void same_seed_gives_same_turn() throws Exception {
+        PackedBoard board = new PackedBoard();
+        List<Integer> diceValues = Arrays.asList(2, 5);
+        assertEquals(player(MonteCarloPlayer.RolloutPolicy.GREEDY, 42).chooseTurn(board, Colour.GREEN, diceValues),
+                player(MonteCarloPlayer.RolloutPolicy.GREEDY, 42).chooseTurn(board, Colour.GREEN, diceValues));
+    }
+
+    @Test
+    public void rollouts_stay_within_the_budget() throws Exception {
+        PackedBoard board = new PackedBoard();
+        List<Integer> diceValues = Arrays.asList(3, 3, 3, 3);
+        for (int maxRollouts : new int[]{1, 50, 100}) {
+            MonteCarloPlayer player = new MonteCarloPlayer(maxRollouts, 60000, MonteCarloPlayer.RolloutPolicy.GREEDY, 1, new SplittableRandom(3));
+            player.chooseTurn(board, Colour.GREEN, diceValues);
+            assertEquals(maxRollouts, player.getLastRollouts());
+        }
+    }
+}
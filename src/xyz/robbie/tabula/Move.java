@@ -1,5 +1,7 @@
 package xyz.robbie.tabula;
 
+import java.util.Objects;
+
 /**
  * Move represents the use of a single Die to move a single piece.
  *
@@ -54,6 +56,21 @@ public class Move implements MoveInterface {
         return dieValue;
     }
 
+    /**
+     * Two moves are equal if they move a piece from the same location using the same die value, so that sets of moves do not contain duplicates
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof Move)) {
+            return false;
+        }
+        Move other = (Move) o;
+        return Objects.equals(sourceLocation, other.sourceLocation) && dieValue == other.dieValue;
+    }
+
+    public int hashCode() {
+        return Objects.hash(sourceLocation, dieValue);
+    }
+
     /* For debugging */
     public String toString() {
         return "Move " + getDiceValue() + " spaces from location no. " + getSourceLocation();
@@ -0,0 +1,443 @@
+package xyz.robbie.tabula;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * NeuralEvaluator values a position with a small neural network (a multilayer perceptron with one hidden layer of
+ * sigmoid units and a single sigmoid output), which estimates the probability that the colour to roll next wins. The
+ * weights are learnt by self-play with TdTrainer.
+ *
+ * The inputs follow TD-Gammon. For the colour to roll and then the other colour, each of the NUMBER_OF_LOCATIONS
+ * points has four inputs: 1 if the colour has at least one piece there, 1 if at least two, 1 if at least three, and
+ * half the number of pieces over three. Then come the number of pieces on START, KNOCKED and FINISH, each divided by
+ * PIECES_PER_PLAYER. Both colours move the same way, so the board never needs to be mirrored.
+ *
+ * Most inputs are 0, so a position is encoded as the list of its non-zero inputs and the hidden layer only adds up the
+ * weights of those. The weights are flat float[] arrays with the weights from each input to every hidden unit next to
+ * each other (the hidden biases are the weights of a last input which is always 1), so each non-zero input adds one
+ * contiguous run of weights. Each thread keeps its own buffers, so evaluating a position creates no objects.
+ *
+ * A batch of positions (see BatchPositionEvaluator) is usually the positions after each turn for one roll, which differ
+ * in only a few locations. The weights of the inputs which are the same for every position in the batch are added up
+ * once, and only the non-zero inputs which differ are added for each position.
+ *
+ * The weights file is the magic bytes "TABN", a version byte, the number of inputs and hidden units (4 bytes each), the
+ * number of games trained (8 bytes) and then every weight as a float, the hidden weights first.
+ **/
+
+public class NeuralEvaluator implements BatchPositionEvaluator {
+
+    public static final int VERSION = 1;
+
+    public static final int INPUTS_PER_POINT = 4;
+
+    public static final int INPUTS_PER_COLOUR = BoardInterface.NUMBER_OF_LOCATIONS * INPUTS_PER_POINT + 3;
+
+    public static final int INPUTS = INPUTS_PER_COLOUR * PackedBoard.COLOUR_COUNT;
+
+    public static final int DEFAULT_HIDDEN_UNITS = 40;
+
+    /* Largest initial weight, either side of 0 */
+    private static final float INITIAL_WEIGHT = 0.1f;
+
+    /* The locations off the main track, in the order of their inputs */
+    private static final int[] OFF_BOARD_LOCATIONS = {Board.START_INDEX, Board.KNOCKED_INDEX, Board.FINISH_INDEX};
+
+    /* The sigmoid table covers -SIGMOID_RANGE to SIGMOID_RANGE with SIGMOID_STEPS entries for each unit */
+    private static final int SIGMOID_RANGE = 16;
+    private static final int SIGMOID_STEPS = 64;
+    private static final float[] SIGMOID_TABLE = new float[2 * SIGMOID_RANGE * SIGMOID_STEPS + 1];
+
+    static {
+        for (int i = 0; i < SIGMOID_TABLE.length; i++) {
+            double x = (double) i / SIGMOID_STEPS - SIGMOID_RANGE;
+            SIGMOID_TABLE[i] = (float) (1 / (1 + Math.exp(-x)));
+        }
+    }
+
+    private static final byte[] MAGIC = {'T', 'A', 'B', 'N'};
+
+    private final int hiddenUnits;
+
+    /* The weight from input i to hidden unit h is hiddenWeights[i * hiddenUnits + h], with the biases as input INPUTS */
+    final float[] hiddenWeights;
+
+    /* The weight from hidden unit h to the output is outputWeights[h], with the bias at index hiddenUnits */
+    final float[] outputWeights;
+
+    private volatile long gamesTrained;
+
+    private final ThreadLocal<Activations> buffers = new ThreadLocal<Activations>() {
+        protected Activations initialValue() {
+            return new Activations(hiddenUnits);
+        }
+    };
+
+    private final ThreadLocal<BatchActivations> batchBuffers = new ThreadLocal<BatchActivations>() {
+        protected BatchActivations initialValue() {
+            return new BatchActivations(hiddenUnits);
+        }
+    };
+
+    /**
+     * Activations holds one position's non-zero inputs and the outputs of each layer, so that they can be reused for
+     * every position evaluated on a thread and for working out the gradient when training
+     */
+    static final class Activations {
+        final int[] inputIndexes = new int[INPUTS + 1];
+        final float[] inputValues = new float[INPUTS + 1];
+        int numberOfInputs;
+        final float[] hidden;
+        float output;
+
+        Activations(int hiddenUnits) {
+            hidden = new float[hiddenUnits];
+        }
+    }
+
+    /**
+     * BatchActivations holds the sums of the inputs shared by a whole batch and the hidden activations of one position
+     */
+    private static final class BatchActivations {
+        final float[] shared;
+        final float[] hidden;
+        final int[] varyingInputs = new int[INPUTS];
+
+        BatchActivations(int hiddenUnits) {
+            shared = new float[hiddenUnits];
+            hidden = new float[hiddenUnits];
+        }
+    }
+
+    /**
+     * Make a network with small random weights, which plays little better than random until it is trained
+     *
+     * @param hiddenUnits the number of hidden units
+     * @param seed the seed for the initial weights
+     */
+    public NeuralEvaluator(int hiddenUnits, long seed) {
+        if (hiddenUnits < 1) {
+            throw new IllegalArgumentException("The network needs at least 1 hidden unit.");
+        }
+        this.hiddenUnits = hiddenUnits;
+        this.hiddenWeights = new float[(INPUTS + 1) * hiddenUnits];
+        this.outputWeights = new float[hiddenUnits + 1];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < hiddenWeights.length; i++) {
+            hiddenWeights[i] = (float) ((random.nextDouble() * 2 - 1) * INITIAL_WEIGHT);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (float) ((random.nextDouble() * 2 - 1) * INITIAL_WEIGHT);
+        }
+    }
+
+    public int getHiddenUnits() {
+        return hiddenUnits;
+    }
+
+    public long getGamesTrained() {
+        return gamesTrained;
+    }
+
+    void setGamesTrained(long gamesTrained) {
+        this.gamesTrained = gamesTrained;
+    }
+
+    /**
+     * @param board the position to evaluate
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @return the value of the position for the given colour, from -WIN (certain to lose) to WIN (certain to win)
+     **/
+    public double evaluate(SearchBoardInterface board, Colour colour) {
+        Colour winner = board.winner();
+        if (winner != null) {
+            return (winner == colour) ? WIN : -WIN;
+        }
+        return WIN * (2 * winProbability(board, colour) - 1);
+    }
+
+    /**
+     * @param board a position
+     * @param colour the colour to roll next
+     * @return the network's estimate of the probability that the colour wins
+     */
+    public double winProbability(SearchBoardInterface board, Colour colour) {
+        Activations activations = buffers.get();
+        encode(board, colour, activations);
+        return forward(activations);
+    }
+
+    public int getNumberOfInputs() {
+        return INPUTS;
+    }
+
+    /**
+     * Write the inputs for a position into one column of a batch, as encode(SearchBoardInterface, Colour, Activations)
+     * but including the inputs which are 0
+     *
+     * @param board a position which neither colour has won
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @param inputs the batch, with input i of the position in column p at inputs[i * stride + p]
+     *
+     * @param stride the length of each row of the batch, which is the most positions it can hold
+     *
+     * @param position the column to write the inputs into
+     **/
+    public void encode(SearchBoardInterface board, Colour colour, float[] inputs, int stride, int position) {
+        int k = position;
+        Colour c = colour;
+        for (int side = 0; side < PackedBoard.COLOUR_COUNT; side++) {
+            for (int point = 1; point <= BoardInterface.NUMBER_OF_LOCATIONS; point++) {
+                int count = board.numberOfPieces(point, c);
+                inputs[k] = (count >= 1) ? 1 : 0;
+                inputs[k + stride] = (count >= 2) ? 1 : 0;
+                inputs[k + 2 * stride] = (count >= 3) ? 1 : 0;
+                inputs[k + 3 * stride] = (count > 3) ? (count - 3) / 2.0f : 0;
+                k += INPUTS_PER_POINT * stride;
+            }
+            for (int location : OFF_BOARD_LOCATIONS) {
+                inputs[k] = board.numberOfPieces(location, c) / (float) BoardInterface.PIECES_PER_PLAYER;
+                k += stride;
+            }
+            c = c.otherColour();
+        }
+    }
+
+    /**
+     * Evaluate the positions in the first columns of a batch, without creating an object for each position
+     *
+     * @param inputs the batch, as filled in by encode()
+     *
+     * @param stride the length of each row of the batch
+     *
+     * @param numberOfPositions the number of columns to evaluate
+     *
+     * @param values the array to write the value of the position in each column to, from -WIN to WIN as in evaluate()
+     **/
+    public void evaluate(float[] inputs, int stride, int numberOfPositions, double[] values) {
+        if (numberOfPositions == 0) {
+            return;
+        }
+        BatchActivations activations = batchBuffers.get();
+        float[] shared = activations.shared;
+        int[] varyingInputs = activations.varyingInputs;
+
+        /* Add the biases and the inputs which are the same for every position once, and list the others */
+        System.arraycopy(hiddenWeights, INPUTS * hiddenUnits, shared, 0, hiddenUnits);
+        int numberOfVarying = 0;
+        for (int i = 0; i < INPUTS; i++) {
+            int row = i * stride;
+            float value = inputs[row];
+            if (!isUniform(inputs, row, numberOfPositions)) {
+                varyingInputs[numberOfVarying++] = i;
+            } else if (value != 0) {
+                int weights = i * hiddenUnits;
+                for (int h = 0; h < hiddenUnits; h++) {
+                    shared[h] += value * hiddenWeights[weights + h];
+                }
+            }
+        }
+
+        /* Then add the inputs which differ to each position in turn */
+        float[] hidden = activations.hidden;
+        for (int p = 0; p < numberOfPositions; p++) {
+            System.arraycopy(shared, 0, hidden, 0, hiddenUnits);
+            for (int k = 0; k < numberOfVarying; k++) {
+                int i = varyingInputs[k];
+                float value = inputs[i * stride + p];
+                if (value != 0) {
+                    int weights = i * hiddenUnits;
+                    for (int h = 0; h < hiddenUnits; h++) {
+                        hidden[h] += value * hiddenWeights[weights + h];
+                    }
+                }
+            }
+            float sum = outputWeights[hiddenUnits];
+            for (int h = 0; h < hiddenUnits; h++) {
+                sum += outputWeights[h] * sigmoid(hidden[h]);
+            }
+            values[p] = WIN * (2 * (double) sigmoid(sum) - 1);
+        }
+    }
+
+    /* True if and only if the n values from the given index are all the same */
+    private static boolean isUniform(float[] inputs, int from, int n) {
+        float first = inputs[from];
+        for (int p = 1; p < n; p++) {
+            if (inputs[from + p] != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Set the non-zero inputs for the position, with the colour to roll first */
+    static void encode(SearchBoardInterface board, Colour colour, Activations activations) {
+        int n = 0;
+        int[] indexes = activations.inputIndexes;
+        float[] values = activations.inputValues;
+        Colour c = colour;
+        for (int side = 0; side < PackedBoard.COLOUR_COUNT; side++) {
+            int base = side * INPUTS_PER_COLOUR;
+            for (int point = 1; point <= BoardInterface.NUMBER_OF_LOCATIONS; point++) {
+                int count = board.numberOfPieces(point, c);
+                int input = base + (point - 1) * INPUTS_PER_POINT;
+                for (int k = 0; k < 3 && k < count; k++) {
+                    indexes[n] = input + k;
+                    values[n++] = 1;
+                }
+                if (count > 3) {
+                    indexes[n] = input + 3;
+                    values[n++] = (count - 3) / 2.0f;
+                }
+            }
+            int rest = base + BoardInterface.NUMBER_OF_LOCATIONS * INPUTS_PER_POINT;
+            for (int k = 0; k < OFF_BOARD_LOCATIONS.length; k++) {
+                int count = board.numberOfPieces(OFF_BOARD_LOCATIONS[k], c);
+                if (count > 0) {
+                    indexes[n] = rest + k;
+                    values[n++] = count / (float) BoardInterface.PIECES_PER_PLAYER;
+                }
+            }
+            c = c.otherColour();
+        }
+
+        /* The bias input */
+        indexes[n] = INPUTS;
+        values[n++] = 1;
+        activations.numberOfInputs = n;
+    }
+
+    /* Work out the hidden and output activations for encoded inputs */
+    float forward(Activations activations) {
+        float[] hidden = activations.hidden;
+        Arrays.fill(hidden, 0);
+        for (int k = 0; k < activations.numberOfInputs; k++) {
+            int row = activations.inputIndexes[k] * hiddenUnits;
+            float value = activations.inputValues[k];
+            for (int h = 0; h < hiddenUnits; h++) {
+                hidden[h] += value * hiddenWeights[row + h];
+            }
+        }
+        float sum = outputWeights[hiddenUnits];
+        for (int h = 0; h < hiddenUnits; h++) {
+            hidden[h] = sigmoid(hidden[h]);
+            sum += outputWeights[h] * hidden[h];
+        }
+        activations.output = sigmoid(sum);
+        return activations.output;
+    }
+
+    /* The sigmoid function, from a table with linear interpolation which is within 1e-5 of 1 / (1 + e^-x) and several
+       times faster than Math.exp() */
+    static float sigmoid(float x) {
+        float t = (x + SIGMOID_RANGE) * SIGMOID_STEPS;
+        if (t <= 0) {
+            return SIGMOID_TABLE[0];
+        } else if (t >= SIGMOID_TABLE.length - 1) {
+            return SIGMOID_TABLE[SIGMOID_TABLE.length - 1];
+        }
+        int i = (int) t;
+        float fraction = t - i;
+        return SIGMOID_TABLE[i] + fraction * (SIGMOID_TABLE[i + 1] - SIGMOID_TABLE[i]);
+    }
+
+    /**
+     * Add scale times the gradient of the output of the last forward() with respect to every weight to the traces
+     *
+     * @param activations the activations of the last forward()
+     * @param scale the multiple of the gradient to add
+     * @param hiddenTrace a trace the same size as hiddenWeights
+     * @param outputTrace a trace the same size as outputWeights
+     */
+    void addGradient(Activations activations, float scale, float[] hiddenTrace, float[] outputTrace) {
+        float output = activations.output;
+        float outputDelta = scale * output * (1 - output);
+        float[] hidden = activations.hidden;
+        for (int h = 0; h < hiddenUnits; h++) {
+            outputTrace[h] += outputDelta * hidden[h];
+        }
+        outputTrace[hiddenUnits] += outputDelta;
+        for (int k = 0; k < activations.numberOfInputs; k++) {
+            int row = activations.inputIndexes[k] * hiddenUnits;
+            float value = activations.inputValues[k];
+            for (int h = 0; h < hiddenUnits; h++) {
+                hiddenTrace[row + h] += outputDelta * outputWeights[h] * hidden[h] * (1 - hidden[h]) * value;
+            }
+        }
+    }
+
+    /**
+     * Write the weights to a file, replacing it in one step so that a reader never sees half of them
+     *
+     * @param file the weights file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.writeInt(INPUTS);
+            out.writeInt(hiddenUnits);
+            out.writeLong(gamesTrained);
+            for (float weight : hiddenWeights) {
+                out.writeFloat(weight);
+            }
+            for (float weight : outputWeights) {
+                out.writeFloat(weight);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file a weights file written by save()
+     * @return the network
+     *
+     * @throws IOException if the file cannot be read or is not a weights file for the current rules
+     */
+    public static NeuralEvaluator load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (byte b : MAGIC) {
+                if (in.readByte() != b) {
+                    throw new IOException("The file is not a neural network weights file.");
+                }
+            }
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("The weights file has version " + version + " but only version " + VERSION + " can be read.");
+            }
+            if (in.readInt() != INPUTS) {
+                throw new IOException("The weights file was made for a different board.");
+            }
+            int hiddenUnits = in.readInt();
+            if (hiddenUnits < 1) {
+                throw new IOException("The weights file is not valid.");
+            }
+            NeuralEvaluator network = new NeuralEvaluator(hiddenUnits, 0);
+            network.gamesTrained = in.readLong();
+            for (int i = 0; i < network.hiddenWeights.length; i++) {
+                network.hiddenWeights[i] = in.readFloat();
+            }
+            for (int i = 0; i < network.outputWeights.length; i++) {
+                network.outputWeights[i] = in.readFloat();
+            }
+            return network;
+        }
+    }
+}
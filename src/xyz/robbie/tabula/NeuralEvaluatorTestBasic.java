@@ -0,0 +1,117 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NeuralEvaluatorTestBasic {
+
+    @Test
+    public void the_gradient_matches_a_finite_difference() {
+        NeuralEvaluator network = new NeuralEvaluator(5, 1);
+        PackedBoard board = new PackedBoard();
+        Colour colour = Colour.values()[0];
+        NeuralEvaluator.Activations activations = new NeuralEvaluator.Activations(network.getHiddenUnits());
+        NeuralEvaluator.encode(board, colour, activations);
+        network.forward(activations);
+        float[] hiddenGradient = new float[network.hiddenWeights.length];
+        float[] outputGradient = new float[network.outputWeights.length];
+        network.addGradient(activations, 1, hiddenGradient, outputGradient);
+
+        /* The bias of the first hidden unit, and the weight from the first hidden unit to the output */
+        int[] hiddenIndexes = {NeuralEvaluator.INPUTS * network.getHiddenUnits(), activations.inputIndexes[0] * network.getHiddenUnits()};
+        float h = 1e-2f;
+        for (int i : hiddenIndexes) {
+            float weight = network.hiddenWeights[i];
+            network.hiddenWeights[i] = weight + h;
+            double up = network.winProbability(board, colour);
+            network.hiddenWeights[i] = weight - h;
+            double down = network.winProbability(board, colour);
+            network.hiddenWeights[i] = weight;
+            assertEquals((up - down) / (2 * h), hiddenGradient[i], 1e-4);
+        }
+        float weight = network.outputWeights[0];
+        network.outputWeights[0] = weight + h;
+        double up = network.winProbability(board, colour);
+        network.outputWeights[0] = weight - h;
+        double down = network.winProbability(board, colour);
+        network.outputWeights[0] = weight;
+        assertEquals((up - down) / (2 * h), outputGradient[0], 1e-4);
+    }
+
+    @Test
+    public void weights_survive_saving_and_loading() throws Exception {
+        NeuralEvaluator network = new NeuralEvaluator(7, 2);
+        network.setGamesTrained(123);
+        Path file = Files.createTempFile("network", ".tabn");
+        try {
+            network.save(file);
+            NeuralEvaluator loaded = NeuralEvaluator.load(file);
+            assertEquals(7, loaded.getHiddenUnits());
+            assertEquals(123, loaded.getGamesTrained());
+            assertArrayEquals(network.hiddenWeights, loaded.hiddenWeights, 0);
+            assertArrayEquals(network.outputWeights, loaded.outputWeights, 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void training_changes_the_weights_and_saves_a_checkpoint() throws Exception {
+        NeuralEvaluator network = new NeuralEvaluator(10, 3);
+        float[] before = network.outputWeights.clone();
+        Path file = Files.createTempFile("network", ".tabn");
+        try {
+            new TdTrainer(network).train(4, 2, 4, file, 2);
+            assertEquals(4, network.getGamesTrained());
+            assertEquals(4, NeuralEvaluator.load(file).getGamesTrained());
+            boolean changed = false;
+            for (int i = 0; i < before.length; i++) {
+                changed |= before[i] != network.outputWeights[i];
+            }
+            assertTrue(changed);
+
+            double value = network.evaluate(new PackedBoard(), Colour.values()[0]);
+            assertTrue(value > -PositionEvaluator.WIN && value < PositionEvaluator.WIN);
+            assertFalse(Double.isNaN(value));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void a_batch_gives_the_same_values_as_single_positions() throws Exception {
+        NeuralEvaluator network = new NeuralEvaluator(9, 5);
+        Colour colour = Colour.values()[0];
+        PackedBoard board = new PackedBoard();
+        TurnGenerator generator = new TurnGenerator();
+        int numberOfTurns = generator.generateTurns(board, colour, DiceRoll.of(3, 5));
+        int stride = numberOfTurns + 3;
+        float[] inputs = new float[NeuralEvaluator.INPUTS * stride];
+        double[] expected = new double[numberOfTurns];
+        for (int i = 0; i < numberOfTurns; i++) {
+            PackedBoard child = board.clone();
+            EncodedTurn.makeTurn(child, colour, generator.getTurn(i), new int[EncodedTurn.MAX_MOVES], 0);
+            network.encode(child, colour.otherColour(), inputs, stride, i);
+            expected[i] = network.evaluate(child, colour.otherColour());
+        }
+        double[] values = new double[stride];
+        network.evaluate(inputs, stride, numberOfTurns, values);
+        for (int i = 0; i < numberOfTurns; i++) {
+            assertEquals(expected[i], values[i], 1e-6);
+        }
+    }
+
+    @Test
+    public void the_sigmoid_table_is_close_to_the_sigmoid_function() {
+        for (float x = -40; x <= 40; x += 0.001f) {
+            assertEquals(1 / (1 + Math.exp(-x)), NeuralEvaluator.sigmoid(x), 1e-5);
+        }
+    }
+}
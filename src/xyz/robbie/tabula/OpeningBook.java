@@ -0,0 +1,293 @@
+package xyz.robbie.tabula;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * OpeningBook holds the best turn for each roll in the first plies of a game, worked out in advance by a deeper search
+ * than a player can afford during a game. Every game starts from the same position, so the first turn of every game
+ * and the replies to it are always the same searches, and they are the widest ones since no piece has yet been knocked
+ * or borne off.
+ *
+ * The book is generated by searching, for each roll, every position the first plies can reach: the starting position,
+ * then the position after every turn the first colour could take (not only the best ones, so that the book still
+ * covers the reply to a player which does not use it), and so on. Turns are only stored for rolls with more than one
+ * turn to choose from.
+ *
+ * Each turn is found by the hash of the position with the colour to move (see PackedBoard.positionHash(Colour)) mixed
+ * with the key of the roll, as for the transposition table, in an open addressing table, so looking up a turn takes a
+ * constant time and creates no objects. Players should still check that the turn is legal before taking it.
+ *
+ * The book file is the magic bytes "TABB", a version byte, the hash of the starting position (8 bytes, which changes
+ * if the Zobrist keys change), the number of entries (4 bytes) and then for each entry the key (8 bytes) and the
+ * encoded turn (4 bytes), in order of key.
+ **/
+
+public final class OpeningBook {
+
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_DEPTH = 3;
+
+    public static final int DEFAULT_PLIES = 2;
+
+    private static final byte[] MAGIC = {'T', 'A', 'B', 'B'};
+
+    /* Open addressing table, where an entry with the turn EncodedTurn.EMPTY is unused */
+    private final long[] keys;
+    private final int[] turns;
+    private final int mask;
+    private final int size;
+
+    /* The first numberOfEntries keys and turns make up the book */
+    private OpeningBook(long[] entryKeys, int[] entryTurns, int numberOfEntries) {
+        int capacity = Integer.highestOneBit(Math.max(2 * numberOfEntries, 2) - 1) << 1;
+        keys = new long[capacity];
+        turns = new int[capacity];
+        mask = capacity - 1;
+        int entries = 0;
+        for (int i = 0; i < numberOfEntries; i++) {
+            int index = indexOf(entryKeys[i]);
+            if (turns[index] == EncodedTurn.EMPTY) {
+                entries++;
+            }
+            keys[index] = entryKeys[i];
+            turns[index] = entryTurns[i];
+        }
+        size = entries;
+    }
+
+    /* The index of the key in the table, or of the unused entry where it would go */
+    private int indexOf(long key) {
+        int index = (int) key & mask;
+        while (turns[index] != EncodedTurn.EMPTY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of positions and rolls in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param board a position
+     * @param colour the colour to move
+     * @param dieValue1 the value of one die
+     * @param dieValue2 the value of the other die
+     * @return the key of the position and roll in the book
+     */
+    public static long key(SearchBoardInterface board, Colour colour, int dieValue1, int dieValue2) {
+        return board.positionHash(colour) ^ ZobristKeys.rollKey(dieValue1, dieValue2);
+    }
+
+    /**
+     * @param key the key of a position and roll (see key())
+     * @return the encoded turn (see EncodedTurn) in the book, or EncodedTurn.EMPTY if the book does not have one
+     */
+    public int lookup(long key) {
+        return turns[indexOf(key)];
+    }
+
+    /**
+     * @param board a position
+     * @param colour the colour to move
+     * @param diceValues the dice values available
+     * @return the encoded turn (see EncodedTurn) in the book, or EncodedTurn.EMPTY if the book does not have one
+     */
+    public int lookup(SearchBoardInterface board, Colour colour, List<Integer> diceValues) {
+        if (diceValues.size() < 2) {
+            return EncodedTurn.EMPTY;
+        }
+        return lookup(key(board, colour, diceValues.get(0), diceValues.get(1)));
+    }
+
+    /**
+     * @param board a position
+     * @param colour the colour to move
+     * @param diceValues the dice values available
+     * @param generator a generator which has just generated the turns for the position, colour and dice values
+     * @param numberOfTurns the number of turns it generated
+     * @return the turn in the book if it is one of the generated turns, otherwise EncodedTurn.EMPTY
+     */
+    int legalTurn(SearchBoardInterface board, Colour colour, List<Integer> diceValues, TurnGenerator generator, int numberOfTurns) {
+        int turn = lookup(board, colour, diceValues);
+        for (int i = 0; i < numberOfTurns && turn != EncodedTurn.EMPTY; i++) {
+            if (generator.getTurn(i) == turn) {
+                return turn;
+            }
+        }
+        return EncodedTurn.EMPTY;
+    }
+
+    /**
+     * Work out the best turn for every roll in every position the first plies of a game can reach
+     *
+     * @param analyst the player to choose each turn
+     * @param plies the number of plies to cover, where 1 covers only the first turn of the game
+     * @return the book
+     */
+    public static OpeningBook generate(ExpectiminimaxPlayer analyst, int plies) {
+        if (plies < 1) {
+            throw new IllegalArgumentException("The book must cover at least 1 ply.");
+        }
+        TurnGenerator generator = new TurnGenerator();
+        int[] undos = new int[EncodedTurn.MAX_MOVES];
+        long[] entryKeys = new long[64];
+        int[] entryTurns = new int[64];
+        int numberOfEntries = 0;
+
+        List<PackedBoard> positions = new ArrayList<PackedBoard>();
+        positions.add(new PackedBoard(true));
+        Colour colour = Colour.values()[0];
+        for (int ply = 0; ply < plies; ply++) {
+            List<PackedBoard> nextPositions = new ArrayList<PackedBoard>();
+            Set<Long> seen = new HashSet<Long>();
+            for (PackedBoard board : positions) {
+                for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+                    DiceRoll roll = DiceRoll.get(r);
+                    int numberOfTurns = generator.generateTurns(board, colour, roll);
+                    if (numberOfTurns > 1) {
+                        if (numberOfEntries == entryKeys.length) {
+                            entryKeys = Arrays.copyOf(entryKeys, 2 * numberOfEntries);
+                            entryTurns = Arrays.copyOf(entryTurns, 2 * numberOfEntries);
+                        }
+                        entryKeys[numberOfEntries] = key(board, colour, roll.getSmallerValue(), roll.getLargerValue());
+                        entryTurns[numberOfEntries++] = analyst.chooseTurn(board, colour, roll.getValues());
+                    }
+                    if (ply + 1 == plies) {
+                        continue;
+                    }
+                    for (int i = 0; i < numberOfTurns; i++) {
+                        PackedBoard next = board.clone();
+                        try {
+                            EncodedTurn.makeTurn(next, colour, generator.getTurn(i), undos, 0);
+                        } catch (IllegalMoveException e) {
+                            // Should never happen as the turn generator only generates legal turns
+                            e.printStackTrace();
+                            continue;
+                        }
+                        if (next.winner() == null && seen.add(next.positionHash())) {
+                            nextPositions.add(next);
+                        }
+                    }
+                }
+            }
+            positions = nextPositions;
+            colour = colour.otherColour();
+        }
+        return new OpeningBook(entryKeys, entryTurns, numberOfEntries);
+    }
+
+    /**
+     * Write the book to a file, replacing it in one step so that a reader never sees half of it
+     *
+     * @param file the book file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        /* Write the entries in order of key, so that the same book always gives the same file */
+        long[] sortedKeys = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (turns[i] != EncodedTurn.EMPTY) {
+                sortedKeys[n++] = keys[i];
+            }
+        }
+        Arrays.sort(sortedKeys);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.writeLong(new PackedBoard(true).positionHash());
+            out.writeInt(size);
+            for (long key : sortedKeys) {
+                out.writeLong(key);
+                out.writeInt(lookup(key));
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file a book file written by save()
+     * @return the book
+     *
+     * @throws IOException if the file cannot be read or is not a book for the current rules and position hashes
+     */
+    public static OpeningBook load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (byte b : MAGIC) {
+                if (in.readByte() != b) {
+                    throw new IOException("The file is not an opening book.");
+                }
+            }
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("The opening book has version " + version + " but only version " + VERSION + " can be read.");
+            }
+            if (in.readLong() != new PackedBoard(true).positionHash()) {
+                throw new IOException("The opening book was made with different position hashes.");
+            }
+            int numberOfEntries = in.readInt();
+            if (numberOfEntries < 0) {
+                throw new IOException("The opening book is not valid.");
+            }
+            long[] entryKeys = new long[numberOfEntries];
+            int[] entryTurns = new int[numberOfEntries];
+            for (int i = 0; i < numberOfEntries; i++) {
+                entryKeys[i] = in.readLong();
+                entryTurns[i] = in.readInt();
+                if (entryTurns[i] == EncodedTurn.EMPTY) {
+                    throw new IOException("The opening book is not valid.");
+                }
+            }
+            return new OpeningBook(entryKeys, entryTurns, numberOfEntries);
+        }
+    }
+
+    /**
+     * Generate a book from the command line
+     *
+     * @param args the book file, and optionally the search depth, the number of plies and a NeuralEvaluator weights
+     *             file to search with instead of the HeuristicEvaluator
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: OpeningBook <book file> [depth] [plies] [weights file]");
+            return;
+        }
+        try {
+            int depth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+            int plies = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+            PositionEvaluator evaluator = (args.length > 3) ? NeuralEvaluator.load(Paths.get(args[3])) : new HeuristicEvaluator();
+            long start = System.nanoTime();
+            OpeningBook book = generate(new ExpectiminimaxPlayer(depth, evaluator), plies);
+            book.save(Paths.get(args[0]));
+            System.out.println("Searched " + book.size() + " positions and rolls to depth " + depth + " in "
+                    + String.format("%.1f", (System.nanoTime() - start) / 1e9) + " s ("
+                    + Files.size(Paths.get(args[0])) + " bytes)");
+        } catch (IOException e) {
+            System.out.println("There was an error reading or writing a file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpeningBookTestBasic {
+
+    @Test
+    public void the_book_has_the_analysts_turn_for_every_opening_roll() throws Exception {
+        ExpectiminimaxPlayer analyst = new ExpectiminimaxPlayer(1, new HeuristicEvaluator(), null, 1);
+        OpeningBook book = OpeningBook.generate(analyst, 2);
+        PackedBoard start = new PackedBoard();
+        Colour colour = Colour.values()[0];
+        TurnGenerator generator = new TurnGenerator();
+        int openingRolls = 0;
+        for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+            List<Integer> diceValues = DiceRoll.get(r).getValues();
+            if (generator.generateTurns(start, colour, diceValues) > 1) {
+                openingRolls++;
+                assertEquals(analyst.chooseTurn(start, colour, diceValues), book.lookup(start, colour, diceValues));
+            }
+        }
+        assertTrue(book.size() > openingRolls);
+
+        /* A reply to any first turn is in the book too */
+        PackedBoard board = start.clone();
+        generator.generateTurns(board, colour, DiceRoll.of(2, 5));
+        EncodedTurn.makeTurn(board, colour, generator.getTurn(generator.getNumberOfTurns() - 1), new int[EncodedTurn.MAX_MOVES], 0);
+        List<Integer> reply = DiceRoll.of(3, 3).getValues();
+        assertEquals(analyst.chooseTurn(board, colour.otherColour(), reply), book.lookup(board, colour.otherColour(), reply));
+        assertEquals(EncodedTurn.EMPTY, book.lookup(board, colour, reply));
+    }
+
+    @Test
+    public void a_saved_book_gives_the_same_turns() throws Exception {
+        OpeningBook book = OpeningBook.generate(new ExpectiminimaxPlayer(1, new HeuristicEvaluator(), null, 1), 1);
+        Path file = Files.createTempFile("book", ".tabb");
+        try {
+            book.save(file);
+            OpeningBook loaded = OpeningBook.load(file);
+            assertEquals(book.size(), loaded.size());
+            PackedBoard start = new PackedBoard();
+            for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+                List<Integer> diceValues = DiceRoll.get(r).getValues();
+                assertEquals(book.lookup(start, Colour.values()[0], diceValues), loaded.lookup(start, Colour.values()[0], diceValues));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void a_player_with_a_book_takes_the_book_turn() {
+        OpeningBook book = OpeningBook.generate(new ExpectiminimaxPlayer(1, new HeuristicEvaluator(), null, 1), 1);
+        ExpectiminimaxPlayer player = new ExpectiminimaxPlayer(2, new HeuristicEvaluator(), null, 1);
+        player.setOpeningBook(book);
+        PackedBoard start = new PackedBoard();
+        List<Integer> diceValues = DiceRoll.of(1, 1).getValues();
+        assertEquals(book.lookup(start, Colour.values()[0], diceValues), player.chooseTurn(start, Colour.values()[0], diceValues));
+    }
+}
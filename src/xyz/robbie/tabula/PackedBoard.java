@@ -0,0 +1,673 @@
+package xyz.robbie.tabula;
+
+import java.util.*;
+
+/**
+ * PackedBoard is an implementation of BoardInterface which keeps the whole board state in a single flat array of
+ * piece counts rather than a list of Location objects, so that it is cheap to query, copy and modify.
+ *
+ * It gives the same results as Board for every method in BoardInterface. The Locations returned by
+ * getStartLocation(), getEndLocation(), getKnockedLocation() and getBoardLocation() are views onto the array,
+ * so changes made to them are changes to the board.
+ *
+ * Requires a constructor with no parameters which creates and initialises all of the locations for the start of the game.
+ **/
+
+public class PackedBoard implements SearchBoardInterface {
+
+    /* Number of locations including START, FINISH and KNOCKED */
+    static final int LOCATION_COUNT = Board.KNOCKED_INDEX + 1;
+
+    static final int COLOUR_COUNT = Colour.values().length;
+
+    private String name;
+
+    /*
+    Number of pieces of each colour in each location, indexed by (locationIndex * COLOUR_COUNT + colour.ordinal())
+    Location indexes are the same as those used by Board, i.e. START_INDEX, 1 to NUMBER_OF_LOCATIONS, FINISH_INDEX, KNOCKED_INDEX
+    */
+    private byte[] counts;
+
+    /* Bit i is set if and only if location i is mixed */
+    private int mixedLocations;
+
+    /* ZobristKeys hash of counts, kept up to date by addPiece() and removePiece() */
+    private long positionHash;
+
+    /* Created when first asked for, so that copying a board does not need to create them */
+    private PackedLocation[] views;
+
+    public PackedBoard() {
+        this(true);
+    }
+
+    public PackedBoard(boolean prePopulateStart) {
+        counts = new byte[LOCATION_COUNT * COLOUR_COUNT];
+        mixedLocations = (1 << Board.START_INDEX) | (1 << Board.FINISH_INDEX) | (1 << Board.KNOCKED_INDEX);
+        setName("North-East Board");
+
+        if (prePopulateStart) {
+            for (Colour c : Colour.values()) {
+                counts[index(Board.START_INDEX, c)] = (byte) PIECES_PER_PLAYER;
+            }
+        }
+        positionHash = ZobristKeys.hash(this);
+    }
+
+    /**
+     * @param board the board to copy
+     * @return a PackedBoard with the same pieces, location names and mixed locations as the given board
+     */
+    public static PackedBoard copyOf(BoardInterface board) {
+        if (board instanceof PackedBoard) {
+            return ((PackedBoard) board).clone();
+        }
+
+        PackedBoard packed = new PackedBoard(false);
+        if (board instanceof Board) {
+            packed.setName(((Board) board).getName());
+        }
+
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            LocationInterface source = locationOf(board, i);
+            for (Colour c : Colour.values()) {
+                packed.counts[index(i, c)] = (byte) source.numberOfPieces(c);
+            }
+            packed.setMixed(i, source.isMixed());
+            if (!source.getName().equals(Board.defaultLocationName(i))) {
+                packed.getLocation(i).setName(source.getName());
+            }
+        }
+        packed.positionHash = ZobristKeys.hash(packed);
+
+        return packed;
+    }
+
+    /**
+     * @param counts the number of pieces of each colour in each location, in the same order as a PackedBoard keeps them
+     * @return a board with those pieces and the default names and mixed locations
+     */
+    static PackedBoard withCounts(byte[] counts) {
+        PackedBoard packed = new PackedBoard(false);
+        System.arraycopy(counts, 0, packed.counts, 0, packed.counts.length);
+        packed.positionHash = ZobristKeys.hash(packed);
+        return packed;
+    }
+
+    /**
+     * @return a Board with the same pieces, location names and mixed locations as this board
+     */
+    public Board toBoard() {
+        Board board = new Board(false);
+        board.setName(name);
+
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            Location location = new Location(getLocation(i).getName());
+            location.setMixed(isMixed(i));
+            for (Colour c : Colour.values()) {
+                location.setNumberOfPieces(c, numberOfPieces(i, c));
+            }
+            board.replaceLocation(i, location);
+        }
+
+        return board;
+    }
+
+    /**
+     * @return the location of the given board with the given index, from START_INDEX to KNOCKED_INDEX
+     */
+    static LocationInterface locationOf(BoardInterface board, int locationIndex) {
+        if (locationIndex == Board.START_INDEX) {
+            return board.getStartLocation();
+        } else if (locationIndex == Board.FINISH_INDEX) {
+            return board.getEndLocation();
+        } else if (locationIndex == Board.KNOCKED_INDEX) {
+            return board.getKnockedLocation();
+        } else {
+            try {
+                return board.getBoardLocation(locationIndex);
+            } catch (NoSuchLocationException e) {
+                // Should never happen as locationIndex is always in the range 1 to NUMBER_OF_LOCATIONS here
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static int index(int locationIndex, Colour colour) {
+        return locationIndex * COLOUR_COUNT + colour.ordinal();
+    }
+
+    /**
+     * @param locationIndex the index of the location, from START_INDEX to KNOCKED_INDEX
+     * @param colour the colour of pieces to count
+     * @return the number of pieces of that colour in that location
+     */
+    public int numberOfPieces(int locationIndex, Colour colour) {
+        return counts[index(locationIndex, colour)];
+    }
+
+    private boolean isMixed(int locationIndex) {
+        return (mixedLocations & (1 << locationIndex)) != 0;
+    }
+
+    private void setMixed(int locationIndex, boolean isMixed) {
+        if (isMixed) {
+            mixedLocations |= 1 << locationIndex;
+        } else {
+            mixedLocations &= ~(1 << locationIndex);
+        }
+    }
+
+    private boolean isEmpty(int locationIndex) {
+        for (int i = locationIndex * COLOUR_COUNT; i < (locationIndex + 1) * COLOUR_COUNT; i++) {
+            if (counts[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Same rules as Location.canAddPiece() */
+    private boolean canAddPiece(int locationIndex, Colour colour) {
+        return isEmpty(locationIndex) || isMixed(locationIndex) || numberOfPieces(locationIndex, colour.otherColour()) <= 1;
+    }
+
+    /* Same rules as Location.addPieceGetKnocked(), except that the caller must already have checked canAddPiece() */
+    private Colour addPieceGetKnocked(int locationIndex, Colour colour) {
+        addPiece(locationIndex, colour);
+        if (numberOfPieces(locationIndex, colour.otherColour()) == 1) {
+            return colour.otherColour();
+        }
+        return null;
+    }
+
+    private void addPiece(int locationIndex, Colour colour) {
+        int count = counts[index(locationIndex, colour)]++;
+        positionHash ^= ZobristKeys.key(locationIndex, colour, count) ^ ZobristKeys.key(locationIndex, colour, count + 1);
+    }
+
+    private void removePiece(int locationIndex, Colour colour) {
+        int count = counts[index(locationIndex, colour)]--;
+        positionHash ^= ZobristKeys.key(locationIndex, colour, count) ^ ZobristKeys.key(locationIndex, colour, count - 1);
+    }
+
+    /**
+     * Set the number of pieces of a colour in a location directly, for building a board from a saved game. Does not
+     * check that the board is still valid.
+     */
+    void setNumberOfPieces(int locationIndex, Colour colour, int count) {
+        int oldCount = counts[index(locationIndex, colour)];
+        counts[index(locationIndex, colour)] = (byte) count;
+        positionHash ^= ZobristKeys.key(locationIndex, colour, oldCount) ^ ZobristKeys.key(locationIndex, colour, count);
+    }
+
+    private int targetLocationIndex(int sourceLocationIndex, int dieValue) {
+        int targetLocIndex = sourceLocationIndex + dieValue;
+        if (targetLocIndex > NUMBER_OF_LOCATIONS) {     // if the move would take us off the board
+            targetLocIndex = Board.FINISH_INDEX;         // set the target location index to the finish location
+        }
+        return targetLocIndex;
+    }
+
+    private PackedLocation getLocation(int locationIndex) {
+        if (views == null) {
+            views = new PackedLocation[LOCATION_COUNT];
+        }
+        if (views[locationIndex] == null) {
+            views[locationIndex] = new PackedLocation(locationIndex);
+        }
+        return views[locationIndex];
+    }
+
+    public void setName(String name) {
+        this.name = (name != null) ? name : "";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the Location off the board where all pieces start the game. This will be a mixed location.
+     **/
+    public LocationInterface getStartLocation() {
+        return getLocation(Board.START_INDEX);
+    }
+
+    /**
+     * @return the Location off the board where pieces get to when they have gone all the way round the board. This will be a mixed location.
+     **/
+    public LocationInterface getEndLocation() {
+        return getLocation(Board.FINISH_INDEX);
+    }
+
+    /**
+     * @return the Location where pieces go to when they are knocked off the board by an opposing piece. This will be a mixed location.
+     **/
+    public LocationInterface getKnockedLocation() {
+        return getLocation(Board.KNOCKED_INDEX);
+    }
+
+    /**
+     * @return the Location corresponding to a numbered position on the board. This will not be a mixed location.
+     *
+     * @param locationNumber the number of the location going from 1-24
+     *
+     * @throws NoSuchLocationException when position is not in the range 1-24
+     **/
+    public LocationInterface getBoardLocation(int locationNumber) throws NoSuchLocationException {
+        if (locationNumber < 1 || locationNumber > BoardInterface.NUMBER_OF_LOCATIONS) {
+            throw new NoSuchLocationException("Requested location number was out of the given range (1 to " + NUMBER_OF_LOCATIONS + ").");
+        } else {
+            return getLocation(locationNumber);
+        }
+    }
+
+    /**
+     * @param colour the colour to move
+     *
+     * @param move the move to make
+     *
+     * @return true if and only if, from the current board state it would be legal for the given colour to make the given move.
+     **/
+    public boolean canMakeMove(Colour colour, MoveInterface move) {
+        return canMakeMove(colour, move.getSourceLocation(), move.getDiceValue());
+    }
+
+    /**
+     * @param colour the colour to move
+     *
+     * @param move the move to make, encoded as described in EncodedMove
+     *
+     * @return true if and only if, from the current board state it would be legal for the given colour to make the given move.
+     **/
+    public boolean canMakeMove(Colour colour, int move) {
+        return canMakeMove(colour, EncodedMove.sourceLocation(move), EncodedMove.dieValue(move));
+    }
+
+    private boolean canMakeMove(Colour colour, int sourceLocIndex, int dieValue) {
+
+        /* Knocked pieces must be moved back on from the start location first */
+        if (numberOfPieces(Board.KNOCKED_INDEX, colour) > 0 & sourceLocIndex != 0) {
+            return false;
+        }
+
+        /* Check current space has at least one of this colour */
+        if (sourceLocIndex < 0 || sourceLocIndex > NUMBER_OF_LOCATIONS || numberOfPieces(sourceLocIndex, colour) <= 0) {
+            return false;
+        }
+
+        return canAddPiece(targetLocationIndex(sourceLocIndex, dieValue), colour);
+    }
+
+    /**
+     * Update the Board state by making the given move for the given colour, including any knocking off.
+     *
+     * @param colour the colour to move
+     *
+     * @param move the move to make
+     *
+     * @throws IllegalMoveException if and only if the move is not legal.
+     **/
+    public void makeMove(Colour colour, MoveInterface move) throws IllegalMoveException {
+        makeUndoableMove(colour, move);
+    }
+
+    /**
+     * Update the Board state by making the given move for the given colour, including any knocking off, in a way that can be undone.
+     *
+     * @param colour the colour to move
+     *
+     * @param move the move to make
+     *
+     * @return an undo record (see UndoRecord) which can be passed to unmakeMove() to restore the board to its state before this move
+     *
+     * @throws IllegalMoveException if and only if the move is not legal. The board state is then unchanged.
+     **/
+    public int makeUndoableMove(Colour colour, MoveInterface move) throws IllegalMoveException {
+        return makeUndoableMove(colour, move.getSourceLocation(), move.getDiceValue());
+    }
+
+    /**
+     * As makeUndoableMove(Colour, MoveInterface), but for a move encoded as described in EncodedMove.
+     *
+     * @param colour the colour to move
+     *
+     * @param move the move to make, encoded as described in EncodedMove
+     *
+     * @return an undo record (see UndoRecord) which can be passed to unmakeMove() to restore the board to its state before this move
+     *
+     * @throws IllegalMoveException if and only if the move is not legal. The board state is then unchanged.
+     **/
+    public int makeUndoableMove(Colour colour, int move) throws IllegalMoveException {
+        return makeUndoableMove(colour, EncodedMove.sourceLocation(move), EncodedMove.dieValue(move));
+    }
+
+    private int makeUndoableMove(Colour colour, int sourceLocIndex, int dieValue) throws IllegalMoveException {
+
+        /* Move a knocked piece to the start location, if we have to */
+        boolean entered = false;
+        if (numberOfPieces(Board.KNOCKED_INDEX, colour) > 0) {
+            addPieceGetKnocked(Board.START_INDEX, colour);
+            removePiece(Board.KNOCKED_INDEX, colour);
+            entered = true;
+        }
+
+        if (!canMakeMove(colour, sourceLocIndex, dieValue)) {
+            if (entered) { // Put the knocked piece back so that the board state is unchanged
+                addPieceGetKnocked(Board.KNOCKED_INDEX, colour);
+                removePiece(Board.START_INDEX, colour);
+            }
+            throw new IllegalMoveException("That move is not allowed. Player forfeits.");
+        }
+
+        int targetLocIndex = targetLocationIndex(sourceLocIndex, dieValue);
+
+        Colour knockedColour = addPieceGetKnocked(targetLocIndex, colour);
+        if (knockedColour != null) {
+            addPieceGetKnocked(Board.KNOCKED_INDEX, knockedColour);
+            removePiece(targetLocIndex, knockedColour);
+        }
+
+        removePiece(sourceLocIndex, colour);
+
+        return UndoRecord.of(colour, sourceLocIndex, targetLocIndex, knockedColour != null, entered);
+    }
+
+    /**
+     * Restore the Board state to how it was before the move which returned the given undo record. Moves must be
+     * undone in the reverse order to that in which they were made.
+     *
+     * @param undo the undo record returned by makeUndoableMove()
+     **/
+    public void unmakeMove(int undo) {
+        Colour colour = UndoRecord.colour(undo);
+        int targetLocIndex = UndoRecord.targetLocation(undo);
+
+        removePiece(targetLocIndex, colour);
+        if (UndoRecord.knocked(undo)) {
+            addPiece(targetLocIndex, colour.otherColour());
+            removePiece(Board.KNOCKED_INDEX, colour.otherColour());
+        }
+        addPiece(UndoRecord.sourceLocation(undo), colour);
+        if (UndoRecord.entered(undo)) {
+            addPiece(Board.KNOCKED_INDEX, colour);
+            removePiece(Board.START_INDEX, colour);
+        }
+    }
+
+    /**
+     * Update the Board state by making the all of the moves in the given turn in order, including any knocking off, based on the given diceValues.
+     *
+     * @param colour the colour to move
+     *
+     * @param turn the turn to take
+     *
+     * @param diceValues the values of the dice available in no particular order. There will be repeated values in the list if a double is thrown
+     *
+     * @throws IllegalTurnException if and only if the turns in the move are not legal for the diceValues given. Each of the moves has to be legal, and the diceValues in the moves of the turn must match the diceValues parameter. The number of moves in the turn must be no less than the maximum possible number of legal moves: all available dice must be used. If IllegalTurnException is thrown then the board state remains unchanged.
+     **/
+    public void takeTurn(Colour colour, TurnInterface turn, List<Integer> diceValues) throws IllegalTurnException {
+
+        if (turn.getMoves().size() > diceValues.size()) {
+            throw new IllegalTurnException("Player submitted wrong number of moves in one turn. You forfeit.");
+        }
+
+        /* Keep the undo records so that the board can be restored if any move turns out to be illegal */
+        int[] undos = new int[turn.getMoves().size()];
+        int index = 0;
+        for (MoveInterface move : turn.getMoves()) {
+            if (!diceValues.contains(move.getDiceValue())) {
+                undoMoves(undos, index);
+                throw new IllegalTurnException("Die value (" + move.getDiceValue() + ") of move #" + (index + 1) + " does not match the given dice value (" + diceValues.get(index) + "). Player forfeits.");
+            }
+            try {
+                undos[index] = makeUndoableMove(colour, move);
+            } catch (IllegalMoveException e) {
+                /* Player submitted an illegal move */
+                undoMoves(undos, index);
+                throw new IllegalTurnException("One of your moves was invalid. You forfeit.");
+            }
+            index++;
+        }
+    }
+
+    private void undoMoves(int[] undos, int numberOfMoves) {
+        for (int i = numberOfMoves - 1; i >= 0; i--) {
+            unmakeMove(undos[i]);
+        }
+    }
+
+    /**
+     * @param colour the colour to check
+     *
+     * @return true if and only if the given colour has won
+     **/
+    public boolean isWinner(Colour colour) {
+        return numberOfPieces(Board.FINISH_INDEX, colour) == PIECES_PER_PLAYER && numberOfPieces(Board.FINISH_INDEX, colour.otherColour()) != PIECES_PER_PLAYER;
+    }
+
+    /**
+     * @return the colour of the winner if there is one, otherwise null
+     **/
+    public Colour winner() {
+        for (Colour c : Colour.values()) {
+            if (isWinner(c)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if and only if the Board is in a valid state (do not need to check whether or not it could be reached by a valid sequence of moves)
+     **/
+    public boolean isValid() {
+        int totalPieces = 0;
+        for (Colour c : Colour.values()) {
+            int colourPieces = 0;
+            for (int i = 0; i < LOCATION_COUNT; i++) {
+                colourPieces += numberOfPieces(i, c);
+            }
+            if (colourPieces > PIECES_PER_PLAYER) {
+                return false;
+            }
+            totalPieces += colourPieces;
+        }
+
+        if (totalPieces != COLOUR_COUNT * PIECES_PER_PLAYER) {
+            return false;
+        }
+
+        /* Only mixed locations may hold more than one colour */
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            if (!isMixed(i) && numberOfPieces(i, Colour.values()[0]) > 0 && numberOfPieces(i, Colour.values()[1]) > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the ZobristKeys hash of the pieces on the board, which is kept up to date as pieces are moved
+     **/
+    public long positionHash() {
+        return positionHash;
+    }
+
+    /**
+     * @param colourToMove the colour which is to move next
+     *
+     * @return the ZobristKeys hash of the pieces on the board together with the colour to move
+     **/
+    public long positionHash(Colour colourToMove) {
+        return positionHash ^ ZobristKeys.sideToMoveKey(colourToMove);
+    }
+
+    /**
+     * @param colour the colour to move next
+     *
+     * @param diceValues the dice values available to use
+     *
+     * @return a set of moves that the given colour can make from the current board state with (any one of) the given diceValues
+     **/
+    public Set<MoveInterface> possibleMoves(Colour colour, List<Integer> diceValues) {
+        Set<MoveInterface> moves = new HashSet<MoveInterface>();
+        int[] buffer = new int[EncodedMove.MAX_MOVES_PER_DIE];
+        if (diceValues.size() == 4) {
+            addPossibleMoves(moves, buffer, colour, diceValues.get(0));
+        } else {
+            for (int dieValue : diceValues) {
+                addPossibleMoves(moves, buffer, colour, dieValue);
+            }
+        }
+        return moves;
+    }
+
+    private void addPossibleMoves(Set<MoveInterface> moves, int[] buffer, Colour colour, int dieValue) {
+        int numberOfMoves = generateMoves(colour, dieValue, buffer, 0);
+        for (int i = 0; i < numberOfMoves; i++) {
+            moves.add(EncodedMove.toMove(buffer[i]));
+        }
+    }
+
+    /**
+     * Write every move that the given colour can make with the given die value into the given buffer, without
+     * creating any objects.
+     *
+     * @param colour the colour to move next
+     *
+     * @param dieValue the die value to use
+     *
+     * @param moves the buffer to write the encoded moves (see EncodedMove) into. It must have room for EncodedMove.MAX_MOVES_PER_DIE moves after offset
+     *
+     * @param offset the index in moves at which to write the first move
+     *
+     * @return the number of moves written
+     **/
+    public int generateMoves(Colour colour, int dieValue, int[] moves, int offset) {
+        int c = colour.ordinal();
+
+        /* Knocked pieces can only be moved back on from the start location */
+        int lastSourceLocIndex = counts[Board.KNOCKED_INDEX * COLOUR_COUNT + c] > 0 ? 0 : NUMBER_OF_LOCATIONS;
+
+        int numberOfMoves = 0;
+        for (int sourceLocIndex = 0; sourceLocIndex <= lastSourceLocIndex; sourceLocIndex++) {
+            if (counts[sourceLocIndex * COLOUR_COUNT + c] > 0 && canAddPiece(targetLocationIndex(sourceLocIndex, dieValue), colour)) {
+                moves[offset + numberOfMoves] = EncodedMove.of(sourceLocIndex, dieValue);
+                numberOfMoves++;
+            }
+        }
+        return numberOfMoves;
+    }
+
+    /**
+     * @return a copy of the board that can be passed to players to work with
+     */
+    public PackedBoard clone() {
+        PackedBoard cloneBoard = new PackedBoard(false);
+        cloneBoard.name = name;
+        cloneBoard.mixedLocations = mixedLocations;
+        cloneBoard.positionHash = positionHash;
+        System.arraycopy(counts, 0, cloneBoard.counts, 0, counts.length);
+
+        /* Only renamed locations need to be carried across */
+        if (views != null) {
+            for (int i = 0; i < LOCATION_COUNT; i++) {
+                if (views[i] != null && !views[i].getName().equals(Board.defaultLocationName(i))) {
+                    cloneBoard.getLocation(i).setName(views[i].getName());
+                }
+            }
+        }
+
+        return cloneBoard;
+    }
+
+    /**
+     * Set the pieces on this board to match another board without creating any objects, so that a scratch board can
+     * be reset cheaply. Location names are not copied.
+     *
+     * @param board the board to copy the pieces from
+     */
+    public void copyPiecesFrom(PackedBoard board) {
+        mixedLocations = board.mixedLocations;
+        positionHash = board.positionHash;
+        System.arraycopy(board.counts, 0, counts, 0, counts.length);
+    }
+
+    /**
+     * Overrides toString() from Object with a suitable String representation of the board state for displaying via the console to a human
+     **/
+    public String toString() {
+        return toBoard().toString();
+    }
+
+    /**
+     * A Location whose pieces are stored in the counts array of the enclosing PackedBoard
+     */
+    private class PackedLocation implements LocationInterface {
+
+        private final int locationIndex;
+        private String name;
+
+        private PackedLocation(int locationIndex) {
+            this.locationIndex = locationIndex;
+            setName(Board.defaultLocationName(locationIndex));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = (name != null) ? name : "";
+        }
+
+        public boolean isMixed() {
+            return PackedBoard.this.isMixed(locationIndex);
+        }
+
+        public void setMixed(boolean isMixed) {
+            PackedBoard.this.setMixed(locationIndex, isMixed);
+        }
+
+        public boolean isEmpty() {
+            return PackedBoard.this.isEmpty(locationIndex);
+        }
+
+        public int numberOfPieces(Colour colour) {
+            return PackedBoard.this.numberOfPieces(locationIndex, colour);
+        }
+
+        public boolean canAddPiece(Colour colour) {
+            return PackedBoard.this.canAddPiece(locationIndex, colour);
+        }
+
+        public Colour addPieceGetKnocked(Colour colour) throws IllegalMoveException {
+            if (colour == null) {
+                throw new IllegalMoveException("Null colour");
+            }
+            if (!canAddPiece(colour)) {
+                throw new IllegalMoveException("Cannot add piece");
+            }
+            return PackedBoard.this.addPieceGetKnocked(locationIndex, colour);
+        }
+
+        public boolean canRemovePiece(Colour colour) {
+            return numberOfPieces(colour) > 0;
+        }
+
+        public void removePiece(Colour colour) throws IllegalMoveException {
+            if (canRemovePiece(colour)) {
+                PackedBoard.this.removePiece(locationIndex, colour);
+            } else {
+                throw new IllegalMoveException("No pieces of that colour (" + colour + ") are in that location.");
+            }
+        }
+
+        public boolean isValid() {
+            return isEmpty() || isMixed() || numberOfPieces(Colour.values()[0]) == 0 || numberOfPieces(Colour.values()[1]) == 0;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package xyz.robbie.tabula;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackedBoardTestBasic {
+
+    private Board b;
+    private PackedBoard p;
+    private Random random;
+
+    @Before
+    public void setUp()
+    {
+        b = new Board();
+        p = new PackedBoard();
+        random = new Random(42);
+    }
+
+    private static Move move(int sourceLocation, int dieValue) throws Exception {
+        Move m = new Move();
+        m.setSourceLocation(sourceLocation);
+        m.setDiceValue(dieValue);
+        return m;
+    }
+
+    private void assertSameState(BoardInterface expected, BoardInterface actual) throws Exception {
+        for (Colour c : Colour.values()) {
+            assertEquals(expected.getStartLocation().numberOfPieces(c), actual.getStartLocation().numberOfPieces(c));
+            assertEquals(expected.getEndLocation().numberOfPieces(c), actual.getEndLocation().numberOfPieces(c));
+            assertEquals(expected.getKnockedLocation().numberOfPieces(c), actual.getKnockedLocation().numberOfPieces(c));
+            for (int i = 1; i <= BoardInterface.NUMBER_OF_LOCATIONS; i++) {
+                assertEquals(expected.getBoardLocation(i).numberOfPieces(c), actual.getBoardLocation(i).numberOfPieces(c));
+            }
+        }
+        assertEquals(expected.isValid(), actual.isValid());
+        assertEquals(expected.winner(), actual.winner());
+    }
+
+    @Test
+    public void new_board_matches_board() throws Exception {
+        assertSameState(b, p);
+        assertEquals(b.toString(), p.toString());
+    }
+
+    @Test
+    public void random_games_match_board() throws Exception {
+        for (int game = 0; game < 20; game++) {
+            b = new Board();
+            p = new PackedBoard();
+            Colour colour = Colour.values()[0];
+            for (int turn = 0; turn < 400 && b.winner() == null; turn++) {
+                int dieValue = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+                List<Integer> diceValues = Collections.singletonList(dieValue);
+
+                /* Every move must be judged the same way by both boards */
+                for (int source = 0; source <= BoardInterface.NUMBER_OF_LOCATIONS; source++) {
+                    assertEquals(b.canMakeMove(colour, move(source, dieValue)), p.canMakeMove(colour, move(source, dieValue)));
+                }
+                assertEquals(b.possibleMoves(colour, diceValues).size(), p.possibleMoves(colour, diceValues).size());
+
+                int source = random.nextInt(BoardInterface.NUMBER_OF_LOCATIONS + 1);
+                boolean boardThrew = false;
+                boolean packedThrew = false;
+                try {
+                    b.makeMove(colour, move(source, dieValue));
+                } catch (IllegalMoveException e) {
+                    boardThrew = true;
+                }
+                try {
+                    p.makeMove(colour, move(source, dieValue));
+                } catch (IllegalMoveException e) {
+                    packedThrew = true;
+                }
+                assertEquals(boardThrew, packedThrew);
+                assertSameState(b, p);
+                colour = colour.otherColour();
+            }
+        }
+    }
+
+    @Test
+    public void unmake_restores_every_move() throws Exception {
+        for (int turn = 0; turn < 300 && p.winner() == null; turn++) {
+            Colour colour = Colour.values()[turn % 2];
+            int dieValue = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            for (MoveInterface m : p.possibleMoves(colour, Collections.singletonList(dieValue))) {
+                PackedBoard before = p.clone();
+                p.unmakeMove(p.makeUndoableMove(colour, m));
+                assertSameState(before, p);
+            }
+            for (MoveInterface m : p.possibleMoves(colour, Collections.singletonList(dieValue))) {
+                p.makeMove(colour, m);
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void generated_moves_match_possible_moves() throws Exception {
+        int[] buffer = new int[EncodedMove.MAX_MOVES_PER_DIE];
+        for (int turn = 0; turn < 300 && p.winner() == null; turn++) {
+            Colour colour = Colour.values()[turn % 2];
+            int dieValue = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            Set<MoveInterface> expected = b.possibleMoves(colour, Collections.singletonList(dieValue));
+            int numberOfMoves = p.generateMoves(colour, dieValue, buffer, 0);
+            assertEquals(numberOfMoves, b.generateMoves(colour, dieValue, new int[EncodedMove.MAX_MOVES_PER_DIE], 0));
+            Set<MoveInterface> actual = new HashSet<MoveInterface>();
+            for (int i = 0; i < numberOfMoves; i++) {
+                assertEquals(true, p.canMakeMove(colour, buffer[i]));
+                actual.add(EncodedMove.toMove(buffer[i]));
+            }
+            assertEquals(expected, actual);
+            if (numberOfMoves > 0) {
+                int move = buffer[random.nextInt(numberOfMoves)];
+                p.makeUndoableMove(colour, move);
+                b.makeUndoableMove(colour, move);
+            }
+        }
+        assertSameState(b, p);
+    }
+
+    @Test
+    public void position_hashes_are_kept_up_to_date() throws Exception {
+        int[] buffer = new int[EncodedMove.MAX_MOVES_PER_DIE];
+        int[] undos = new int[400];
+        int numberOfUndos = 0;
+        for (int turn = 0; turn < 400 && p.winner() == null; turn++) {
+            Colour colour = Colour.values()[turn % 2];
+            int dieValue = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            int numberOfMoves = p.generateMoves(colour, dieValue, buffer, 0);
+            if (numberOfMoves > 0) {
+                int move = buffer[random.nextInt(numberOfMoves)];
+                undos[numberOfUndos++] = p.makeUndoableMove(colour, move);
+                b.makeUndoableMove(colour, move);
+                assertEquals(ZobristKeys.hash(p), p.positionHash());
+                assertEquals(p.positionHash(), b.positionHash());
+                assertEquals(p.positionHash(Colour.BLUE), b.clone().positionHash(Colour.BLUE));
+            }
+        }
+        while (numberOfUndos > 0) {
+            p.unmakeMove(undos[--numberOfUndos]);
+        }
+        assertEquals(new PackedBoard().positionHash(), p.positionHash());
+        assertEquals(false, p.positionHash(Colour.GREEN) == p.positionHash(Colour.BLUE));
+    }
+
+    @Test
+    public void board_hash_follows_location_changes() throws Exception {
+        b.getBoardLocation(7).addPieceGetKnocked(Colour.BLUE);
+        assertEquals(ZobristKeys.hash(b), b.positionHash());
+        b.replaceLocation(7, new Location("Saltburn"));
+        assertEquals(ZobristKeys.hash(b), b.positionHash());
+        assertEquals(new Board().positionHash(), b.positionHash());
+    }
+
+    @Test
+    public void locations_write_through_to_board() throws Exception {
+        p.getBoardLocation(3).addPieceGetKnocked(Colour.GREEN);
+        assertEquals(1, p.getBoardLocation(3).numberOfPieces(Colour.GREEN));
+        assertEquals(false, p.isValid());
+        p.getStartLocation().removePiece(Colour.GREEN);
+        assertEquals(true, p.isValid());
+    }
+
+    @Test
+    public void cloned_board_is_different() throws Exception {
+        PackedBoard clone = p.clone();
+        clone.getBoardLocation(1).addPieceGetKnocked(Colour.GREEN);
+        assertEquals(1, clone.getBoardLocation(1).numberOfPieces(Colour.GREEN));
+        assertEquals(0, p.getBoardLocation(1).numberOfPieces(Colour.GREEN));
+    }
+
+    @Test
+    public void copies_round_trip() throws Exception {
+        b.makeMove(Colour.GREEN, move(0, 5));
+        b.makeMove(Colour.BLUE, move(0, 5));
+        assertSameState(b, PackedBoard.copyOf(b));
+        assertSameState(b, PackedBoard.copyOf(b).toBoard());
+    }
+}
@@ -0,0 +1,23 @@
+package xyz.robbie.tabula;
+
+/**
+ * PositionEvaluator estimates how good a board position is for one of the colours, for use by the computer players
+ * at the positions where they stop searching.
+ **/
+
+public interface PositionEvaluator {
+
+    /**
+     * The value of a position which the colour has won. A lost position has the value -WIN.
+     */
+    static final double WIN = 1.0;
+
+    /**
+     * @param board the position to evaluate
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @return the value of the position for the given colour, from -WIN (certain to lose) to WIN (certain to win)
+     **/
+    double evaluate(SearchBoardInterface board, Colour colour);
+}
@@ -0,0 +1,256 @@
+package xyz.robbie.tabula;
+
+import java.util.Arrays;
+
+/**
+ * PositionId turns a board into a short URL-safe string and back, in the spirit of the position IDs used for
+ * backgammon, so positions can be logged, passed between programs and used as cache keys without serialising a Game.
+ *
+ * For each colour in turn, and for each location from START to KNOCKED, the number of pieces of that colour there is
+ * written as that many 1 bits followed by a 0 bit. Every colour has PIECES_PER_PLAYER pieces, so this always takes
+ * POSITION_BITS (84) bits, which are written six at a time, least significant first, as LENGTH (14) characters of the
+ * URL-safe base64 alphabet.
+ *
+ * The match ID holds the rest of a GameSnapshot in MATCH_ID_LENGTH (4) characters: the colour to play plus 1 (2 bits),
+ * the two die values (3 bits each, 0 if not rolled) and the type of each player as in GameSnapshot (3 bits each).
+ *
+ * Encoding and decoding work on two longs and never create objects, apart from the String returned by encode().
+ */
+public final class PositionId {
+
+    public static final int POSITION_BITS = PackedBoard.COLOUR_COUNT * (BoardInterface.PIECES_PER_PLAYER + PackedBoard.LOCATION_COUNT);
+
+    public static final int LENGTH = (POSITION_BITS + 5) / 6;
+
+    public static final int MATCH_ID_LENGTH = 4;
+
+    private static final int BITS_PER_CHARACTER = 6;
+    private static final int COLOUR_BITS = 2;
+    private static final int DIE_BITS = 3;
+    private static final int PLAYER_TYPE_BITS = 3;
+
+    /* Colour.values() makes a new array every time it is called */
+    private static final Colour[] COLOURS = Colour.values();
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    /* The value of each character, or -1 for characters not in the alphabet */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private PositionId() {
+    }
+
+    /**
+     * @param board a valid board, with PIECES_PER_PLAYER pieces of each colour
+     * @return the position ID of the board
+     */
+    public static String encode(BoardInterface board) {
+        char[] id = new char[LENGTH];
+        encode(board, id, 0);
+        return new String(id);
+    }
+
+    /**
+     * Write the position ID of a board into a buffer, without creating any objects if the board is a SearchBoardInterface
+     *
+     * @param board a valid board, with PIECES_PER_PLAYER pieces of each colour
+     * @param id the buffer to write LENGTH characters to
+     * @param offset where in the buffer to write them
+     */
+    public static void encode(BoardInterface board, char[] id, int offset) {
+        long low = 0;
+        long high = 0;
+        int bit = 0;
+        for (Colour c : COLOURS) {
+            for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+                int count = numberOfPieces(board, i, c);
+                for (int j = 0; j < count; j++) {
+                    if (bit >= POSITION_BITS) {
+                        throw new IllegalArgumentException("The board has more than " + BoardInterface.PIECES_PER_PLAYER + " pieces of one colour.");
+                    }
+                    if (bit < Long.SIZE) {
+                        low |= 1L << bit;
+                    } else {
+                        high |= 1L << (bit - Long.SIZE);
+                    }
+                    bit++;
+                }
+                bit++;
+            }
+        }
+        if (bit != POSITION_BITS) {
+            throw new IllegalArgumentException("The board does not have " + BoardInterface.PIECES_PER_PLAYER + " pieces of each colour.");
+        }
+
+        for (int k = 0; k < LENGTH; k++) {
+            id[offset + k] = ALPHABET[bits(low, high, k * BITS_PER_CHARACTER)];
+        }
+    }
+
+    private static int numberOfPieces(BoardInterface board, int locationIndex, Colour colour) {
+        if (board instanceof SearchBoardInterface) {
+            return ((SearchBoardInterface) board).numberOfPieces(locationIndex, colour);
+        }
+        return PackedBoard.locationOf(board, locationIndex).numberOfPieces(colour);
+    }
+
+    /* The six bits starting at the given bit of the 128-bit number (high, low) */
+    private static int bits(long low, long high, int start) {
+        long value;
+        if (start + BITS_PER_CHARACTER <= Long.SIZE) {
+            value = low >>> start;
+        } else if (start >= Long.SIZE) {
+            value = high >>> (start - Long.SIZE);
+        } else {
+            value = (low >>> start) | (high << (Long.SIZE - start));
+        }
+        return (int) (value & ((1 << BITS_PER_CHARACTER) - 1));
+    }
+
+    /**
+     * @param id a position ID
+     * @return a new board with the position
+     *
+     * @throws IllegalArgumentException if the ID is not a valid position ID
+     */
+    public static PackedBoard decode(CharSequence id) {
+        PackedBoard board = new PackedBoard(false);
+        decode(id, board);
+        return board;
+    }
+
+    /**
+     * Set the pieces of a board to a position, without creating any objects
+     *
+     * @param id a position ID
+     * @param board the board to change, which is left unchanged if the ID is not valid
+     *
+     * @throws IllegalArgumentException if the ID is not a valid position ID
+     */
+    public static void decode(CharSequence id, PackedBoard board) {
+        if (id.length() != LENGTH) {
+            throw new IllegalArgumentException("A position ID has " + LENGTH + " characters.");
+        }
+        long low = 0;
+        long high = 0;
+        for (int k = 0; k < LENGTH; k++) {
+            long value = valueOf(id.charAt(k));
+            int start = k * BITS_PER_CHARACTER;
+            if (start < Long.SIZE) {
+                low |= value << start;
+            }
+            if (start + BITS_PER_CHARACTER > Long.SIZE) {
+                high |= (start >= Long.SIZE) ? value << (start - Long.SIZE) : value >>> (Long.SIZE - start);
+            }
+        }
+
+        /* Check the whole ID before changing the board */
+        for (int bit = POSITION_BITS; bit < LENGTH * BITS_PER_CHARACTER; bit++) {
+            if (isSet(low, high, bit)) {
+                throw new IllegalArgumentException("The position ID has bits set after the position.");
+            }
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            int bit = 0;
+            for (Colour c : COLOURS) {
+                int pieces = 0;
+                for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+                    int count = 0;
+                    while (bit < POSITION_BITS && isSet(low, high, bit)) {
+                        count++;
+                        bit++;
+                    }
+                    bit++;
+                    pieces += count;
+                    if (pass == 1) {
+                        board.setNumberOfPieces(i, c, count);
+                    }
+                }
+                if (pieces != BoardInterface.PIECES_PER_PLAYER) {
+                    throw new IllegalArgumentException("The position ID does not have " + BoardInterface.PIECES_PER_PLAYER + " pieces of each colour.");
+                }
+            }
+        }
+    }
+
+    private static boolean isSet(long low, long high, int bit) {
+        return (bit < Long.SIZE) ? (low >>> bit & 1) != 0 : (high >>> (bit - Long.SIZE) & 1) != 0;
+    }
+
+    private static int valueOf(char c) {
+        int value = (c < VALUES.length) ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("'" + c + "' is not a position ID character.");
+        }
+        return value;
+    }
+
+    /**
+     * @param snapshot a game
+     * @return the match ID of the game, for everything except the pieces
+     */
+    public static String encodeMatchId(GameSnapshot snapshot) {
+        int bits = (snapshot.getCurrentColour() == null) ? 0 : snapshot.getCurrentColour().ordinal() + 1;
+        int shift = COLOUR_BITS;
+        bits |= snapshot.getDieValue1() << shift;
+        shift += DIE_BITS;
+        bits |= snapshot.getDieValue2() << shift;
+        shift += DIE_BITS;
+        for (Colour c : COLOURS) {
+            bits |= (GameSnapshot.indexOfType(snapshot.getPlayerType(c)) + 1) << shift;
+            shift += PLAYER_TYPE_BITS;
+        }
+
+        char[] id = new char[MATCH_ID_LENGTH];
+        for (int k = 0; k < MATCH_ID_LENGTH; k++) {
+            id[k] = ALPHABET[(bits >>> (k * BITS_PER_CHARACTER)) & ((1 << BITS_PER_CHARACTER) - 1)];
+        }
+        return new String(id);
+    }
+
+    /**
+     * @param positionId the position ID of the board
+     * @param matchId the match ID of the rest of the game
+     * @return the game
+     *
+     * @throws IllegalArgumentException if either ID is not valid
+     */
+    public static GameSnapshot decodeGame(CharSequence positionId, CharSequence matchId) {
+        if (matchId.length() != MATCH_ID_LENGTH) {
+            throw new IllegalArgumentException("A match ID has " + MATCH_ID_LENGTH + " characters.");
+        }
+        int bits = 0;
+        for (int k = 0; k < MATCH_ID_LENGTH; k++) {
+            bits |= valueOf(matchId.charAt(k)) << (k * BITS_PER_CHARACTER);
+        }
+
+        int colour = bits & ((1 << COLOUR_BITS) - 1);
+        int shift = COLOUR_BITS;
+        int dieValue1 = (bits >>> shift) & ((1 << DIE_BITS) - 1);
+        shift += DIE_BITS;
+        int dieValue2 = (bits >>> shift) & ((1 << DIE_BITS) - 1);
+        shift += DIE_BITS;
+        String[] playerTypes = new String[PackedBoard.COLOUR_COUNT];
+        for (int i = 0; i < playerTypes.length; i++) {
+            int type = (bits >>> shift) & ((1 << PLAYER_TYPE_BITS) - 1);
+            shift += PLAYER_TYPE_BITS;
+            if (type > GameSnapshot.PLAYER_TYPES.length) {
+                throw new IllegalArgumentException("The match ID has an unknown player type.");
+            }
+            playerTypes[i] = (type == 0) ? null : GameSnapshot.PLAYER_TYPES[type - 1];
+        }
+        if (colour > PackedBoard.COLOUR_COUNT || dieValue1 > DieInterface.NUMBER_OF_SIDES_ON_DIE
+                || dieValue2 > DieInterface.NUMBER_OF_SIDES_ON_DIE || (bits >>> shift) != 0) {
+            throw new IllegalArgumentException("The match ID is not valid.");
+        }
+
+        return new GameSnapshot(decode(positionId), (colour == 0) ? null : COLOURS[colour - 1], dieValue1, dieValue2, playerTypes);
+    }
+}
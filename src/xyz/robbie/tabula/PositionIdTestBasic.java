@@ -0,0 +1,53 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PositionIdTestBasic {
+
+    @Test
+    public void start_position_round_trips() {
+        String id = PositionId.encode(new Board());
+        assertEquals(PositionId.LENGTH, id.length());
+        assertEquals(14, id.length());
+        assertTrue(id.matches("[A-Za-z0-9_-]+"));
+        assertEquals(new PackedBoard().positionHash(), PositionId.decode(id).positionHash());
+    }
+
+    @Test
+    public void positions_of_a_game_round_trip() throws Exception {
+        PackedBoard board = new PackedBoard();
+        PackedBoard decoded = new PackedBoard(false);
+        TurnGenerator generator = new TurnGenerator();
+        SplittableRandom random = new SplittableRandom(9);
+        Colour colour = Colour.values()[0];
+        char[] id = new char[PositionId.LENGTH + 2];
+        while (board.winner() == null) {
+            generator.generateTurns(board, colour, DiceRoll.of(random.nextInt(6) + 1, random.nextInt(6) + 1));
+            EncodedTurn.makeTurn(board, colour, generator.getTurn(random.nextInt(generator.getNumberOfTurns())), new int[EncodedTurn.MAX_MOVES], 0);
+            PositionId.encode(board, id, 2);
+            PositionId.decode(new String(id, 2, PositionId.LENGTH), decoded);
+            assertEquals(board.positionHash(), decoded.positionHash());
+            assertEquals(board.toString(), decoded.toString());
+            colour = colour.otherColour();
+        }
+    }
+
+    @Test
+    public void match_id_round_trips() {
+        GameSnapshot snapshot = new GameSnapshot(new PackedBoard(), Colour.BLUE, 6, 1, new String[]{"montecarlo", null});
+        String matchId = PositionId.encodeMatchId(snapshot);
+        assertEquals(PositionId.MATCH_ID_LENGTH, matchId.length());
+        assertEquals(snapshot, PositionId.decodeGame(PositionId.encode(new PackedBoard()), matchId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrong_piece_count_is_rejected() {
+        String id = PositionId.encode(new PackedBoard());
+        PositionId.decode("B" + id.substring(1));
+    }
+}
@@ -0,0 +1,217 @@
+package xyz.robbie.tabula;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * RaceCalculator works out the probability that the colour to move wins a race in which neither colour can hit or
+ * block the other, for positions where the RaceDatabase covers both colours.
+ *
+ * When neither colour has more than the exact number of pieces left to bear off, the probability is exact: every roll
+ * is played to give the best chance of winning, found by a search over pairs of positions whose results are memoised
+ * in a fixed-size cache. Filling the cache is the slow part: with a span of 6 the first call for four pieces against four
+ * takes around a second, and each extra piece multiplies that by about four, after which a call takes well under a
+ * microsecond. Otherwise each colour's distribution of rolls to finish is taken from the database and the colour to
+ * move wins if it needs no more rolls than the other. This is on average within 0.1% of the exact figure (and at most
+ * about 1% from it), because the play that finishes soonest on average is almost always the one that wins most often.
+ *
+ * Both colours move the same way along one track in Tabula, so any two pieces not yet borne off can still meet, and
+ * hasContact() only becomes false once one colour has borne off every piece. Until then the race figures ignore
+ * hitting and blocking, and are an estimate of the late game rather than its exact value.
+ *
+ * The cache is a long[] of entries holding 32 bits of the hash of the pair of positions and the probability as a
+ * float, so an entry is written in one go and is safe to share between threads without locking.
+ */
+public class RaceCalculator {
+
+    public static final int DEFAULT_EXACT_PIECES = 4;
+
+    public static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;
+
+    /* The largest power of two number of entries that still fits in one Java array */
+    private static final int MAX_ENTRIES = 1 << 30;
+
+    private final RaceDatabase database;
+    private final int exactPieces;
+    private final long[] cache;
+    private final int cacheMask;
+
+    /**
+     * @param database the database of positions to calculate races between
+     */
+    public RaceCalculator(RaceDatabase database) {
+        this(database, DEFAULT_EXACT_PIECES, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param database the database of positions to calculate races between
+     * @param exactPieces the most pieces either colour may have left to bear off for the race to be calculated exactly
+     * @param cacheBytes the most memory the cache may use, which is rounded down to a power of two number of entries
+     */
+    public RaceCalculator(RaceDatabase database, int exactPieces, long cacheBytes) {
+        if (cacheBytes < Long.BYTES) {
+            throw new IllegalArgumentException("The cache needs at least " + Long.BYTES + " bytes.");
+        }
+        this.database = database;
+        this.exactPieces = exactPieces;
+        long entries = Long.highestOneBit(Math.min(cacheBytes / Long.BYTES, MAX_ENTRIES));
+        this.cache = new long[(int) entries];
+        this.cacheMask = (int) entries - 1;
+    }
+
+    public RaceDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * @param board a board
+     * @return true if and only if a piece of either colour could still land on a location held by the other colour
+     */
+    public static boolean hasContact(SearchBoardInterface board) {
+        /* Any two pieces not borne off can meet: the one behind can land on the one ahead, and two on START both enter */
+        for (Colour c : Colour.values()) {
+            if (board.numberOfPieces(Board.FINISH_INDEX, c) == BoardInterface.PIECES_PER_PLAYER) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if and only if the database covers both colours' pieces on the board
+     */
+    public boolean covers(SearchBoardInterface board) {
+        for (Colour c : Colour.values()) {
+            if (!database.covers(board, c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param board a board which the database covers for both colours
+     * @param colourToMove the colour which is to roll next
+     * @return the probability that the colour to move bears off all of its pieces first, ignoring contact
+     */
+    public double winProbability(SearchBoardInterface board, Colour colourToMove) {
+        if (!covers(board)) {
+            throw new IllegalArgumentException("The race database does not cover the board.");
+        }
+        return winProbability(database.positionIndex(board, colourToMove), database.positionIndex(board, colourToMove.otherColour()));
+    }
+
+    /**
+     * @param mover the number in the database of the position of the colour to move
+     * @param other the number in the database of the position of the other colour
+     * @return the probability that the colour to move bears off all of its pieces first
+     */
+    public double winProbability(int mover, int other) {
+        if (mover == 0) {
+            return 1;
+        } else if (other == 0) {
+            return 0;
+        }
+        int[] counts = new int[database.getSpan() + 1];
+        RaceDatabase.unrank(other, database.getSpan(), counts);
+        int otherPieces = BoardInterface.PIECES_PER_PLAYER - counts[0];
+        RaceDatabase.unrank(mover, database.getSpan(), counts);
+        int moverPieces = BoardInterface.PIECES_PER_PLAYER - counts[0];
+        if (moverPieces <= exactPieces && otherPieces <= exactPieces) {
+            return exactWinProbability(mover, other, counts);
+        }
+        return independentWinProbability(mover, other);
+    }
+
+    /* The colour to move wins if it needs no more rolls than the other colour */
+    private double independentWinProbability(int mover, int other) {
+        double otherNotFinished = 1;
+        double win = 0;
+        int maxRolls = database.maxRolls(mover);
+        for (int rolls = 1; rolls <= maxRolls; rolls++) {
+            otherNotFinished -= database.probabilityOfRolls(other, rolls - 1);
+            win += database.probabilityOfRolls(mover, rolls) * Math.max(otherNotFinished, 0);
+        }
+        return win;
+    }
+
+    /* counts holds the mover's position, and is left unchanged */
+    private double exactWinProbability(int mover, int other, int[] counts) {
+        long hash = mix((long) mover * database.getNumberOfPositions() + other);
+        int index = (int) hash & cacheMask;
+        int tag = (int) (hash >>> 32) | 1;
+        long entry = cache[index];
+        if ((int) (entry >>> 32) == tag) {
+            return Float.intBitsToFloat((int) entry);
+        }
+
+        int span = database.getSpan();
+        int[] successors = new int[RaceDatabase.maxSuccessors(span)];
+        int[] otherCounts = new int[span + 1];
+        RaceDatabase.unrank(other, span, otherCounts);
+        double win = 0;
+        for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+            DiceRoll roll = DiceRoll.get(r);
+            int numberOfSuccessors = RaceDatabase.successors(counts, span, roll, successors);
+            double best = 0;
+            for (int k = 0; k < numberOfSuccessors && best < 1; k++) {
+                double value = (successors[k] == 0) ? 1 : 1 - exactWinProbability(other, successors[k], otherCounts);
+                best = Math.max(best, value);
+            }
+            win += roll.getProbability() * best;
+        }
+
+        cache[index] = (long) tag << 32 | (Float.floatToIntBits((float) win) & 0xFFFFFFFFL);
+        return win;
+    }
+
+    /* Spread the bits of a key so that the index and the tag are independent */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Print the race figures for a position
+     *
+     * @param args the race database file, a position ID (see PositionId) and the colour to move
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: RaceCalculator <race database file> <position ID> <colour to move>");
+            return;
+        }
+        try {
+            RaceCalculator calculator = new RaceCalculator(RaceDatabase.open(Paths.get(args[0])));
+            PackedBoard board = PositionId.decode(args[1]);
+            Colour colour = null;
+            for (Colour c : Colour.values()) {
+                if (c.toString().equalsIgnoreCase(args[2])) {
+                    colour = c;
+                }
+            }
+            if (colour == null) {
+                System.out.println("Unknown colour '" + args[2] + "'.");
+                return;
+            }
+            System.out.println(board);
+            System.out.println("Contact: " + (hasContact(board) ? "yes, so the race figures ignore hitting and blocking" : "no"));
+            if (!calculator.covers(board)) {
+                System.out.println("The race database (span " + calculator.getDatabase().getSpan() + ") does not cover this position.");
+                return;
+            }
+            for (Colour c : Colour.values()) {
+                System.out.println(c + " needs " + String.format("%.3f", calculator.getDatabase().expectedRolls(board, c)) + " rolls on average");
+            }
+            long start = System.nanoTime();
+            double win = calculator.winProbability(board, colour);
+            System.out.println(colour + " to move wins the race with probability " + String.format("%.4f", win)
+                    + " (" + (System.nanoTime() - start) / 1000 + " us)");
+        } catch (IOException e) {
+            System.out.println("There was an error reading the race database: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
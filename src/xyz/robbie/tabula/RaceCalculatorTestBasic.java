@@ -0,0 +1,79 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RaceCalculatorTestBasic {
+
+    private static RaceDatabase database() throws Exception {
+        Path file = Files.createTempFile("race", ".tabr");
+        try {
+            RaceDatabase.generate(3, 1, file);
+            return RaceDatabase.open(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /* A board with every piece of each colour borne off except those given, as (distance from FINISH, count) pairs */
+    private static PackedBoard race(int[] first, int[] second) {
+        PackedBoard board = new PackedBoard();
+        int[][] pieces = {first, second};
+        for (Colour c : Colour.values()) {
+            int onBoard = 0;
+            for (int i = 0; i < pieces[c.ordinal()].length; i += 2) {
+                board.setNumberOfPieces(Board.FINISH_INDEX - pieces[c.ordinal()][i], c, pieces[c.ordinal()][i + 1]);
+                onBoard += pieces[c.ordinal()][i + 1];
+            }
+            board.setNumberOfPieces(Board.START_INDEX, c, 0);
+            board.setNumberOfPieces(Board.FINISH_INDEX, c, BoardInterface.PIECES_PER_PLAYER - onBoard);
+        }
+        return board;
+    }
+
+    @Test
+    public void small_races_are_exact() throws Exception {
+        RaceCalculator calculator = new RaceCalculator(database());
+        Colour first = Colour.values()[0];
+
+        /* Three pieces one point away each: only a double bears them all off at once */
+        PackedBoard board = race(new int[]{1, 3}, new int[]{1, 3});
+        assertEquals(1.0 / 6 + 5.0 / 6 * 5.0 / 6 * 1, calculator.winProbability(board, first), 1e-6);
+
+        /* Any roll bears off two pieces one point away, so the colour to move always wins */
+        assertEquals(1, calculator.winProbability(race(new int[]{1, 2}, new int[]{1, 1}), first), 1e-9);
+        assertTrue(RaceCalculator.hasContact(board));
+        assertTrue(calculator.covers(board));
+        assertFalse(calculator.covers(new PackedBoard()));
+    }
+
+    @Test
+    public void large_races_are_close_to_exact() throws Exception {
+        RaceDatabase database = database();
+        RaceCalculator exact = new RaceCalculator(database, BoardInterface.PIECES_PER_PLAYER, 1 << 24);
+        RaceCalculator estimate = new RaceCalculator(database, 0, 1 << 10);
+        PackedBoard board = race(new int[]{1, 2, 2, 3, 3, 3}, new int[]{1, 1, 2, 3, 3, 4});
+        Colour first = Colour.values()[0];
+        double win = exact.winProbability(board, first);
+        assertEquals(win, estimate.winProbability(board, first), 0.01);
+        /* The second time comes from the cache, which stores floats */
+        assertEquals(win, exact.winProbability(board, first), 1e-6);
+        assertEquals(1 - win, 1 - exact.winProbability(board, first), 1e-6);
+    }
+
+    @Test
+    public void contact_lasts_until_a_colour_has_borne_off_every_piece() {
+        PackedBoard board = new PackedBoard();
+        assertTrue(RaceCalculator.hasContact(board));
+        Colour first = Colour.values()[0];
+        board.setNumberOfPieces(Board.START_INDEX, first, 0);
+        board.setNumberOfPieces(Board.FINISH_INDEX, first, BoardInterface.PIECES_PER_PLAYER);
+        assertFalse(RaceCalculator.hasContact(board));
+    }
+}
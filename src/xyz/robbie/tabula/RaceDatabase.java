@@ -0,0 +1,540 @@
+package xyz.robbie.tabula;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * RaceDatabase holds, for every way of placing one colour's pieces within a span of points before FINISH, the exact
+ * expected number of rolls that colour needs to bear all of its pieces off and the probability of needing each number
+ * of rolls, playing each roll to make the expected number of rolls as small as possible. The other colour is ignored,
+ * so the figures are exact for as long as no piece of the colour is hit or blocked.
+ *
+ * The database is built by generate(), which works through the positions in order of pip count (every move lowers it,
+ * so every position a roll can lead to has already been solved) and solves the positions with the same pip count in
+ * parallel. open() memory-maps the file, and every lookup is O(1).
+ *
+ * A position is numbered by writing, for each distance from FINISH from 1 to the span, that many 1 bits for its pieces
+ * followed by a 0 bit, and taking the rank of the positions of the 0 bits among all such combinations. Position 0 has
+ * every piece borne off.
+ *
+ * The file is the magic bytes "TABR", a version byte, the number of pieces per player, the span and the number of
+ * sides on a die (a byte each), the number of positions (4 bytes), the offset of each position's record (4 bytes each)
+ * and then the records. A record is the expected number of rolls (a float), the first number of rolls with a non-zero
+ * probability and the number of probabilities stored (a byte each), and then each probability as a fraction of
+ * PROBABILITY_SCALE (2 bytes each).
+ */
+public class RaceDatabase {
+
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_SPAN = 6;
+
+    public static final int PROBABILITY_SCALE = 0xFFFF;
+
+    private static final byte[] MAGIC = {'T', 'A', 'B', 'R'};
+    private static final int HEADER_SIZE = MAGIC.length + 4 + 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 1;
+
+    private static final int PIECES = BoardInterface.PIECES_PER_PLAYER;
+
+    /* Chunks per thread for each pip count, so that threads which finish early can pick up more work */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /* Binomial coefficients, CHOOSE[n][k] for n up to PIECES + NUMBER_OF_LOCATIONS */
+    private static final long[][] CHOOSE = new long[PIECES + BoardInterface.NUMBER_OF_LOCATIONS + 1][];
+
+    static {
+        for (int n = 0; n < CHOOSE.length; n++) {
+            CHOOSE[n] = new long[n + 1];
+            CHOOSE[n][0] = 1;
+            CHOOSE[n][n] = 1;
+            for (int k = 1; k < n; k++) {
+                CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+            }
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int span;
+    private final int numberOfPositions;
+
+    private RaceDatabase(ByteBuffer data, int span, int numberOfPositions) {
+        this.data = data;
+        this.span = span;
+        this.numberOfPositions = numberOfPositions;
+    }
+
+    /**
+     * @param span the largest distance from FINISH of any piece
+     * @return the number of positions of one colour's pieces within the span
+     */
+    public static long numberOfPositions(int span) {
+        return choose(PIECES + span, span);
+    }
+
+    private static long choose(int n, int k) {
+        return (k < 0 || k > n) ? 0 : CHOOSE[n][k];
+    }
+
+    /**
+     * Open a database for reading. The file is memory-mapped, so opening is quick however large it is.
+     *
+     * @param file the database file, as written by generate()
+     * @return the database
+     *
+     * @throws IOException if the file cannot be read or is not a database for the current rules
+     */
+    public static RaceDatabase open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE) {
+            throw new IOException("The file is too short to be a race database.");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(i) != MAGIC[i]) {
+                throw new IOException("The file is not a race database.");
+            }
+        }
+        if (data.get(MAGIC.length) != VERSION) {
+            throw new IOException("The race database has version " + data.get(MAGIC.length) + " but only version " + VERSION + " can be read.");
+        }
+        int pieces = data.get(MAGIC.length + 1);
+        int span = data.get(MAGIC.length + 2);
+        int sides = data.get(MAGIC.length + 3);
+        if (pieces != PIECES || sides != DieInterface.NUMBER_OF_SIDES_ON_DIE || span < 1 || span > BoardInterface.NUMBER_OF_LOCATIONS) {
+            throw new IOException("The race database was made for different rules.");
+        }
+        int positions = data.getInt(MAGIC.length + 4);
+        if (positions != numberOfPositions(span) || data.limit() < HEADER_SIZE + 4L * positions) {
+            throw new IOException("The race database is not valid.");
+        }
+        return new RaceDatabase(data, span, positions);
+    }
+
+    /**
+     * @return the largest distance from FINISH of any piece in the positions held
+     */
+    public int getSpan() {
+        return span;
+    }
+
+    public int getNumberOfPositions() {
+        return numberOfPositions;
+    }
+
+    /**
+     * @return true if and only if every piece of the colour not yet borne off is within the span of FINISH
+     */
+    public boolean covers(SearchBoardInterface board, Colour colour) {
+        if (board.numberOfPieces(Board.START_INDEX, colour) > 0 || board.numberOfPieces(Board.KNOCKED_INDEX, colour) > 0) {
+            return false;
+        }
+        for (int i = 1; i < Board.FINISH_INDEX - span; i++) {
+            if (board.numberOfPieces(i, colour) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param board a board which the database covers for the colour
+     * @param colour the colour
+     * @return the number of the colour's position in the database
+     */
+    public int positionIndex(SearchBoardInterface board, Colour colour) {
+        /* The same as rank(), reading the counts straight from the board */
+        long rank = 0;
+        int zero = -1;
+        for (int distance = 1; distance <= span; distance++) {
+            zero += board.numberOfPieces(Board.FINISH_INDEX - distance, colour) + 1;
+            rank += choose(zero, distance);
+        }
+        return (int) rank;
+    }
+
+    /**
+     * @param index the number of a position
+     * @return the expected number of rolls to bear off every piece
+     */
+    public double expectedRolls(int index) {
+        return data.getFloat(recordOffset(index));
+    }
+
+    /**
+     * @param board a board which the database covers for the colour
+     * @param colour the colour
+     * @return the expected number of rolls the colour needs to bear off every piece
+     */
+    public double expectedRolls(SearchBoardInterface board, Colour colour) {
+        return expectedRolls(positionIndex(board, colour));
+    }
+
+    /**
+     * @param index the number of a position
+     * @param rolls a number of rolls
+     * @return the probability of bearing off the last piece with exactly that many rolls
+     */
+    public double probabilityOfRolls(int index, int rolls) {
+        int offset = recordOffset(index);
+        int first = data.get(offset + 4) & 0xFF;
+        int length = data.get(offset + 5) & 0xFF;
+        if (rolls < first || rolls >= first + length) {
+            return 0;
+        }
+        return (data.getShort(offset + RECORD_HEADER_SIZE + 2 * (rolls - first)) & 0xFFFF) / (double) PROBABILITY_SCALE;
+    }
+
+    /**
+     * @param index the number of a position
+     * @return the largest number of rolls with a non-zero probability of being needed
+     */
+    public int maxRolls(int index) {
+        int offset = recordOffset(index);
+        return (data.get(offset + 4) & 0xFF) + (data.get(offset + 5) & 0xFF) - 1;
+    }
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= numberOfPositions) {
+            throw new IllegalArgumentException("The race database has " + numberOfPositions + " positions.");
+        }
+        return data.getInt(HEADER_SIZE + 4 * index);
+    }
+
+    /* The number of a position, from the number of pieces at each distance from 1 to the span (counts[0] is ignored) */
+    static long rank(int[] counts, int span) {
+        long rank = 0;
+        int zero = -1;
+        for (int distance = 1; distance <= span; distance++) {
+            zero += counts[distance] + 1;
+            rank += choose(zero, distance);
+        }
+        return rank;
+    }
+
+    /* Set counts[1..span] to the position with the number, and counts[0] to the number of pieces borne off */
+    static void unrank(long rank, int span, int[] counts) {
+        /* Find the 0 bits from the last, each the furthest along whose binomial coefficient still fits in the rank */
+        int above = PIECES + span;
+        for (int distance = span; distance >= 1; distance--) {
+            int zero = distance - 1;
+            while (zero + 1 < above && choose(zero + 1, distance) <= rank) {
+                zero++;
+            }
+            rank -= choose(zero, distance);
+            counts[(distance == span) ? 0 : distance + 1] = above - zero - 1;
+            above = zero;
+        }
+        counts[1] = above;
+    }
+
+    /**
+     * @return the most positions successors() can write for a span
+     */
+    static int maxSuccessors(int span) {
+        return 2 * span * span + (int) choose(span + 4, 4);
+    }
+
+    /**
+     * Find the positions one roll can lead to from a position with pieces still to bear off. The same position may be
+     * written more than once.
+     *
+     * @param counts the number of pieces at each distance from 1 to the span, which is left unchanged
+     * @param span the span of the positions
+     * @param roll the roll
+     * @param successors the buffer to write the numbers of the positions to, with room for maxSuccessors(span)
+     * @return the number of positions written
+     */
+    static int successors(int[] counts, int span, DiceRoll roll, int[] successors) {
+        if (roll.isDouble()) {
+            return successorsOfDouble(counts, span, roll.getDieValue(0), roll.getNumberOfDice(), span, successors, 0);
+        }
+        int found = successorsOfPair(counts, span, roll.getDieValue(0), roll.getDieValue(1), successors, 0);
+        return successorsOfPair(counts, span, roll.getDieValue(1), roll.getDieValue(0), successors, found);
+    }
+
+    /* Every way of playing one die and then the other */
+    private static int successorsOfPair(int[] counts, int span, int firstDie, int secondDie, int[] successors, int found) {
+        for (int d1 = 1; d1 <= span; d1++) {
+            if (counts[d1] == 0) {
+                continue;
+            }
+            int t1 = Math.max(d1 - firstDie, 0);
+            counts[d1]--;
+            counts[t1]++;
+            boolean moved = false;
+            for (int d2 = 1; d2 <= span; d2++) {
+                if (counts[d2] == 0) {
+                    continue;
+                }
+                int t2 = Math.max(d2 - secondDie, 0);
+                counts[d2]--;
+                counts[t2]++;
+                successors[found++] = (int) rank(counts, span);
+                counts[t2]--;
+                counts[d2]++;
+                moved = true;
+            }
+            if (!moved) {
+                /* The first die bore off the last piece */
+                successors[found++] = (int) rank(counts, span);
+            }
+            counts[t1]--;
+            counts[d1]++;
+        }
+        return found;
+    }
+
+    /* Every way of playing the dice of a double, moving pieces in order of decreasing distance so each is found once */
+    private static int successorsOfDouble(int[] counts, int span, int die, int movesLeft, int maxDistance, int[] successors, int found) {
+        boolean moved = false;
+        if (movesLeft > 0) {
+            for (int d = maxDistance; d >= 1; d--) {
+                if (counts[d] == 0) {
+                    continue;
+                }
+                int t = Math.max(d - die, 0);
+                counts[d]--;
+                counts[t]++;
+                found = successorsOfDouble(counts, span, die, movesLeft - 1, d, successors, found);
+                counts[t]--;
+                counts[d]++;
+                moved = true;
+            }
+        }
+        if (!moved && (movesLeft == 0 || counts[0] == PIECES)) {
+            successors[found++] = (int) rank(counts, span);
+        }
+        return found;
+    }
+
+    /**
+     * Solve every position within a span and write the database to a file
+     *
+     * @param span the largest distance from FINISH of any piece, from 1 to NUMBER_OF_LOCATIONS
+     * @param threads the number of threads to solve positions on
+     * @param file the file to write, which is replaced if it exists
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void generate(int span, int threads, Path file) throws IOException {
+        if (span < 1 || span > BoardInterface.NUMBER_OF_LOCATIONS
+                || numberOfPositions(span) * Solver.rollsLength(span) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The span must be at least 1 and small enough for the distributions to fit in an array.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Generating needs at least 1 thread.");
+        }
+        final Solver solver = new Solver(span);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int pips = 1; pips <= solver.maxPips; pips++) {
+                final int first = solver.levelStarts[pips];
+                int last = solver.levelStarts[pips + 1];
+                int numberOfChunks = Math.max(1, Math.min(last - first, threads * CHUNKS_PER_THREAD));
+                List<Callable<Void>> chunks = new ArrayList<Callable<Void>>(numberOfChunks);
+                for (int i = 0; i < numberOfChunks; i++) {
+                    final int from = first + (int) ((long) (last - first) * i / numberOfChunks);
+                    final int to = first + (int) ((long) (last - first) * (i + 1) / numberOfChunks);
+                    chunks.add(new Callable<Void>() {
+                        public Void call() {
+                            solver.solve(from, to);
+                            return null;
+                        }
+                    });
+                }
+                for (Future<Void> chunk : executor.invokeAll(chunks)) {
+                    chunk.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generating the race database was interrupted.");
+        } catch (ExecutionException e) {
+            // Should never happen as solving does not throw
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+
+        solver.write(file);
+    }
+
+    /**
+     * Solver holds the expected rolls and distribution of every position while the database is generated
+     */
+    private static final class Solver {
+        private final int span;
+        private final int numberOfPositions;
+        private final int maxPips;
+
+        private final int rollsLength;
+
+        /* Position numbers sorted by pip count, with the index in it of the first position with each pip count */
+        private final int[] order;
+        private final int[] levelStarts;
+
+        private final double[] expected;
+        private final float[] distributions;
+
+        Solver(int span) {
+            this.span = span;
+            this.numberOfPositions = (int) numberOfPositions(span);
+            this.maxPips = PIECES * span;
+            this.rollsLength = rollsLength(span);
+            this.expected = new double[numberOfPositions];
+            this.distributions = new float[numberOfPositions * rollsLength];
+
+            /* Counting sort of the positions by pip count */
+            int[] pipsOf = new int[numberOfPositions];
+            levelStarts = new int[maxPips + 2];
+            int[] counts = new int[span + 1];
+            for (int position = 0; position < numberOfPositions; position++) {
+                unrank(position, span, counts);
+                int pips = 0;
+                for (int distance = 1; distance <= span; distance++) {
+                    pips += distance * counts[distance];
+                }
+                pipsOf[position] = pips;
+                levelStarts[pips + 1]++;
+            }
+            for (int pips = 1; pips < levelStarts.length; pips++) {
+                levelStarts[pips] += levelStarts[pips - 1];
+            }
+            order = new int[numberOfPositions];
+            int[] next = levelStarts.clone();
+            for (int position = 0; position < numberOfPositions; position++) {
+                order[next[pipsOf[position]]++] = position;
+            }
+
+            /* Position 0 has every piece borne off, and needs no rolls */
+            distributions[0] = 1;
+        }
+
+        /* The most rolls ever needed plus one, as every roll but the last lowers the pip count by at least 2 */
+        static int rollsLength(int span) {
+            return (PIECES * span + 1) / 2 + 2;
+        }
+
+        /* Solve the positions at order[from] up to order[to], all of which have the same pip count */
+        void solve(int from, int to) {
+            int[] counts = new int[span + 1];
+            int[] successors = new int[maxSuccessors(span)];
+            for (int i = from; i < to; i++) {
+                int position = order[i];
+                double mean = 1;
+                int base = position * rollsLength;
+                unrank(position, span, counts);
+                for (int r = 0; r < DiceRoll.NUMBER_OF_ROLLS; r++) {
+                    DiceRoll roll = DiceRoll.get(r);
+                    int numberOfSuccessors = successors(counts, span, roll, successors);
+                    int best = successors[0];
+                    for (int k = 1; k < numberOfSuccessors; k++) {
+                        if (expected[successors[k]] < expected[best]) {
+                            best = successors[k];
+                        }
+                    }
+                    double probability = roll.getProbability();
+                    mean += probability * expected[best];
+                    int successor = best * rollsLength;
+                    for (int n = 0; n + 1 < rollsLength; n++) {
+                        distributions[base + n + 1] += (float) (probability * distributions[successor + n]);
+                    }
+                }
+                expected[position] = mean;
+            }
+        }
+
+        void write(Path file) throws IOException {
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            int[] firsts = new int[numberOfPositions];
+            int[] lengths = new int[numberOfPositions];
+            int offset = HEADER_SIZE + 4 * numberOfPositions;
+            int[] offsets = new int[numberOfPositions];
+            for (int position = 0; position < numberOfPositions; position++) {
+                int base = position * rollsLength;
+                int first = 0;
+                while (first < rollsLength - 1 && scaled(distributions[base + first]) == 0) {
+                    first++;
+                }
+                int last = rollsLength - 1;
+                while (last > first && scaled(distributions[base + last]) == 0) {
+                    last--;
+                }
+                firsts[position] = first;
+                lengths[position] = last - first + 1;
+                offsets[position] = offset;
+                offset += RECORD_HEADER_SIZE + 2 * lengths[position];
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 20))) {
+                out.write(MAGIC);
+                out.write(VERSION);
+                out.write(PIECES);
+                out.write(span);
+                out.write(DieInterface.NUMBER_OF_SIDES_ON_DIE);
+                out.writeInt(numberOfPositions);
+                for (int position = 0; position < numberOfPositions; position++) {
+                    out.writeInt(offsets[position]);
+                }
+                for (int position = 0; position < numberOfPositions; position++) {
+                    out.writeFloat((float) expected[position]);
+                    out.write(firsts[position]);
+                    out.write(lengths[position]);
+                    for (int n = firsts[position]; n < firsts[position] + lengths[position]; n++) {
+                        out.writeShort(scaled(distributions[position * rollsLength + n]));
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static int scaled(float probability) {
+            return Math.round(probability * PROBABILITY_SCALE);
+        }
+    }
+
+    /**
+     * Generate a race database
+     *
+     * @param args the file to write, then optionally the span (DEFAULT_SPAN if not given) and the number of threads
+     *             (the number of processors if not given)
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: RaceDatabase <file to write> [span] [threads]");
+            return;
+        }
+        try {
+            int span = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SPAN;
+            int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            long start = System.nanoTime();
+            generate(span, threads, Paths.get(args[0]));
+            System.out.println("Solved " + numberOfPositions(span) + " positions with span " + span + " in "
+                    + String.format("%.2f", (System.nanoTime() - start) / 1e9) + " s ("
+                    + Files.size(Paths.get(args[0])) + " bytes)");
+        } catch (IOException e) {
+            System.out.println("There was an error writing the race database: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
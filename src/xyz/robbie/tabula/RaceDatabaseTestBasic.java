@@ -0,0 +1,79 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RaceDatabaseTestBasic {
+
+    @Test
+    public void positions_are_numbered_without_gaps() {
+        int span = 4;
+        int[] counts = new int[span + 1];
+        for (int position = 0; position < RaceDatabase.numberOfPositions(span); position++) {
+            RaceDatabase.unrank(position, span, counts);
+            int pieces = 0;
+            for (int count : counts) {
+                pieces += count;
+            }
+            assertEquals(BoardInterface.PIECES_PER_PLAYER, pieces);
+            assertEquals(position, RaceDatabase.rank(counts, span));
+        }
+    }
+
+    @Test
+    public void pieces_one_point_from_finish_match_a_simple_count() throws Exception {
+        Path file = Files.createTempFile("race", ".tabr");
+        try {
+            RaceDatabase.generate(1, 2, file);
+            RaceDatabase database = RaceDatabase.open(file);
+
+            /* With every piece one point away, each roll bears off two pieces, or four for a double */
+            double[] expected = new double[BoardInterface.PIECES_PER_PLAYER + 1];
+            for (int pieces = 1; pieces < expected.length; pieces++) {
+                expected[pieces] = 1 + 5.0 / 6 * expected[Math.max(pieces - 2, 0)] + 1.0 / 6 * expected[Math.max(pieces - 4, 0)];
+                assertEquals(expected[pieces], database.expectedRolls(pieces), 1e-5);
+            }
+            assertEquals(0, database.expectedRolls(0), 0);
+            assertEquals(1, database.probabilityOfRolls(1, 1), 1e-9);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void distributions_match_the_expected_rolls() throws Exception {
+        Path file = Files.createTempFile("race", ".tabr");
+        try {
+            RaceDatabase.generate(3, 2, file);
+            RaceDatabase database = RaceDatabase.open(file);
+            for (int position = 0; position < database.getNumberOfPositions(); position++) {
+                double total = 0;
+                double mean = 0;
+                for (int rolls = 0; rolls <= database.maxRolls(position); rolls++) {
+                    total += database.probabilityOfRolls(position, rolls);
+                    mean += rolls * database.probabilityOfRolls(position, rolls);
+                }
+                assertEquals(1, total, 1e-3);
+                assertEquals(database.expectedRolls(position), mean, 1e-2);
+            }
+
+            PackedBoard board = new PackedBoard();
+            Colour colour = Colour.values()[0];
+            assertFalse(database.covers(board, colour));
+            board.setNumberOfPieces(Board.START_INDEX, colour, 0);
+            board.setNumberOfPieces(Board.FINISH_INDEX, colour, BoardInterface.PIECES_PER_PLAYER - 1);
+            board.setNumberOfPieces(Board.FINISH_INDEX - 3, colour, 1);
+            assertTrue(database.covers(board, colour));
+            /* The smallest roll moves three pips, so one piece three points away is always borne off by one roll */
+            assertEquals(1, database.expectedRolls(board, colour), 1e-6);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
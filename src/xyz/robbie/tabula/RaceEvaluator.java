@@ -0,0 +1,43 @@
+package xyz.robbie.tabula;
+
+/**
+ * RaceEvaluator values positions which a RaceCalculator covers (every piece of both colours within the span of its
+ * database) by the probability of winning the race, and passes every other position to another evaluator.
+ *
+ * The race figure ignores hitting and blocking (see RaceCalculator), so it is an estimate whenever hasContact() is true.
+ * It should be shared between the threads of a search so that they share the calculator's cache.
+ **/
+
+public class RaceEvaluator implements PositionEvaluator {
+
+    private final RaceCalculator calculator;
+    private final PositionEvaluator otherPositions;
+
+    /**
+     * @param calculator the calculator to value races with
+     *
+     * @param otherPositions the evaluator for positions the calculator does not cover
+     **/
+    public RaceEvaluator(RaceCalculator calculator, PositionEvaluator otherPositions) {
+        this.calculator = calculator;
+        this.otherPositions = otherPositions;
+    }
+
+    /**
+     * @param board the position to evaluate
+     *
+     * @param colour the colour to evaluate the position for, which is the colour to roll next
+     *
+     * @return the value of the position for the given colour, from -WIN (certain to lose) to WIN (certain to win)
+     **/
+    public double evaluate(SearchBoardInterface board, Colour colour) {
+        Colour winner = board.winner();
+        if (winner != null) {
+            return (winner == colour) ? WIN : -WIN;
+        }
+        if (calculator.covers(board)) {
+            return WIN * (2 * calculator.winProbability(board, colour) - 1);
+        }
+        return otherPositions.evaluate(board, colour);
+    }
+}
@@ -0,0 +1,64 @@
+package xyz.robbie.tabula;
+
+import java.util.SplittableRandom;
+
+/**
+ * RandomStreams derives independent SplittableRandom streams from one root seed, so that a whole batch of games can
+ * be reproduced from a single number while every game and every worker thread still has a random source of its own.
+ *
+ * The stream for a given purpose and index is always the same for the same root seed, whatever order the streams
+ * are asked for in and whichever thread asks, so results do not depend on how work is scheduled.
+ */
+public final class RandomStreams {
+
+    /* Purposes, mixed into the seed so that game 3 and worker 3 do not get the same stream */
+    public static final long GAME = 1;
+    public static final long WORKER = 2;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long rootSeed;
+
+    /**
+     * @param rootSeed the seed every stream is derived from
+     */
+    public RandomStreams(long rootSeed) {
+        this.rootSeed = rootSeed;
+    }
+
+    public long getRootSeed() {
+        return rootSeed;
+    }
+
+    /**
+     * @param game the index of the game
+     * @return a new stream for the dice of that game
+     */
+    public SplittableRandom forGame(long game) {
+        return stream(GAME, game);
+    }
+
+    /**
+     * @param worker the index of the worker
+     * @return a new stream for that worker, for example for its rollouts
+     */
+    public SplittableRandom forWorker(long worker) {
+        return stream(WORKER, worker);
+    }
+
+    /**
+     * @param purpose what the stream is for, such as GAME or WORKER
+     * @param index the index of the stream among those with the same purpose
+     * @return a new stream for that purpose and index
+     */
+    public SplittableRandom stream(long purpose, long index) {
+        return new SplittableRandom(mix64(mix64(rootSeed + purpose * GOLDEN_GAMMA) + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    /* The finaliser from SplitMix64, which spreads every bit of the input across the output */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,63 @@
+package xyz.robbie.tabula;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SaveBatchResult holds the outcome of reading a directory of save files with SaveFileReader.readDirectory(): the
+ * game read from each file that could be read, and the reason each other file failed.
+ */
+public class SaveBatchResult {
+
+    private final Map<Path, GameSnapshot> games = new LinkedHashMap<Path, GameSnapshot>();
+    private final Map<Path, String> failures = new LinkedHashMap<Path, String>();
+    private final long elapsedNanos;
+
+    /**
+     * @param files the files read, in order
+     * @param snapshots the game read from each file, or null where it failed
+     * @param errors the reason each file failed, or null where it was read
+     * @param elapsedNanos how long reading took
+     */
+    SaveBatchResult(List<Path> files, GameSnapshot[] snapshots, String[] errors, long elapsedNanos) {
+        for (int i = 0; i < files.size(); i++) {
+            if (snapshots[i] != null) {
+                games.put(files.get(i), snapshots[i]);
+            } else {
+                failures.put(files.get(i), errors[i]);
+            }
+        }
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the games read, keyed by file in order of file name
+     */
+    public Map<Path, GameSnapshot> getGames() {
+        return Collections.unmodifiableMap(games);
+    }
+
+    /**
+     * @return the reason each file which could not be read failed, keyed by file in order of file name
+     */
+    public Map<Path, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append("Read ").append(games.size()).append(" of ").append(games.size() + failures.size()).append(" files in ")
+                .append(String.format("%.2f", elapsedNanos / 1e9)).append(" s");
+        for (Map.Entry<Path, String> failure : failures.entrySet()) {
+            s.append('\n').append(failure.getKey()).append(": ").append(failure.getValue());
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,338 @@
+package xyz.robbie.tabula;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SaveFileReader reads the files written by Game.saveGame(), in either format. JSON is read as a stream with Gson's
+ * JsonReader straight into the piece counts of a PackedBoard, without reading the whole file into a string, building
+ * a tree of JSON objects or adding the pieces one at a time.
+ *
+ * readDirectory() reads every save file in a directory on a pool of threads, for analysing large numbers of saved
+ * games. Files which cannot be read or hold an invalid game are listed in the result rather than stopping the batch.
+ */
+public class SaveFileReader {
+
+    /* Chunks per thread, so that threads which finish early can pick up more work */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * SavedGame is everything read from a save file, before it is checked and put into a Game
+     */
+    static final class SavedGame {
+        final PackedBoard board = new PackedBoard(false);
+        Colour currentColour;
+        int dieValue1;
+        int dieValue2;
+
+        /* Indexed by ordinal, null for a colour with no player in the file */
+        final String[] playerTypes = new String[Colour.values().length];
+
+        GameSnapshot toSnapshot() {
+            return new GameSnapshot(board, currentColour, dieValue1, dieValue2, playerTypes);
+        }
+    }
+
+    /**
+     * @param file a save file in either format
+     * @return the game in the file
+     *
+     * @throws IOException if the file cannot be read or is not in either format
+     */
+    static SavedGame readSavedGame(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[] start = new byte[GameSnapshot.SIZE];
+            in.mark(start.length);
+            int length = readFully(in, start);
+            if (length == 0) {
+                throw new IOException("The file '" + file + "' is empty.");
+            }
+            if (GameSnapshot.isSnapshot(start)) {
+                return fromSnapshot(GameSnapshot.read(ByteBuffer.wrap(start, 0, length)));
+            }
+            in.reset();
+            return readJson(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            throw new IOException("The file '" + file + "' was not found.");
+        }
+    }
+
+    /**
+     * @param file a save file in either format
+     * @return the game in the file as a snapshot
+     *
+     * @throws IOException if the file cannot be read, is not in either format or holds an invalid board
+     */
+    public static GameSnapshot read(Path file) throws IOException {
+        SavedGame saved = readSavedGame(file);
+        if (!saved.board.isValid()) {
+            throw new IOException("The loaded board state is not valid.");
+        }
+        return saved.toSnapshot();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private static SavedGame fromSnapshot(GameSnapshot snapshot) {
+        SavedGame saved = new SavedGame();
+        saved.board.copyPiecesFrom(snapshot.toPackedBoard());
+        saved.currentColour = snapshot.getCurrentColour();
+        saved.dieValue1 = snapshot.getDieValue1();
+        saved.dieValue2 = snapshot.getDieValue2();
+        for (Colour c : Colour.values()) {
+            saved.playerTypes[c.ordinal()] = snapshot.getPlayerType(c);
+        }
+        return saved;
+    }
+
+    /**
+     * @param in the JSON written by Game.saveGame()
+     * @return the game it holds
+     *
+     * @throws IOException if the JSON cannot be read or is not in the format written by saveGame()
+     */
+    static SavedGame readJson(Reader in) throws IOException {
+        SavedGame saved = new SavedGame();
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "players":
+                        readPlayers(reader, saved);
+                        break;
+                    case "currentColour":
+                        saved.currentColour = (reader.peek() == JsonToken.NULL) ? nextNull(reader) : colourNamed(reader.nextString());
+                        break;
+                    case "board":
+                        readBoard(reader, saved.board);
+                        break;
+                    case "d":
+                        readDice(reader, saved);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            /* JsonReader throws IllegalStateException when a value is not of the expected type */
+            throw new IOException("The saved game state is not in the correct format: " + e.getMessage());
+        }
+        return saved;
+    }
+
+    private static Colour nextNull(JsonReader reader) throws IOException {
+        reader.nextNull();
+        return null;
+    }
+
+    private static Colour colourNamed(String name) throws IOException {
+        for (Colour c : Colour.values()) {
+            if (c.toString().equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        throw new IOException("The saved game state has an unknown colour '" + name + "'.");
+    }
+
+    private static void readPlayers(JsonReader reader, SavedGame saved) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Colour colour = colourNamed(reader.nextName());
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("typeOfPlayer") && reader.peek() == JsonToken.STRING) {
+                    saved.playerTypes[colour.ordinal()] = reader.nextString().toLowerCase();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    private static void readBoard(JsonReader reader, PackedBoard board) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("name")) {
+                board.setName(reader.nextString());
+            } else if (name.equals("locations")) {
+                int locationIndex = 0;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (locationIndex >= PackedBoard.LOCATION_COUNT) {
+                        throw new IOException("The saved game state has too many locations (need " + PackedBoard.LOCATION_COUNT + ")");
+                    }
+                    readLocation(reader, board, locationIndex++);
+                }
+                reader.endArray();
+                if (locationIndex != PackedBoard.LOCATION_COUNT) {
+                    throw new IOException("The saved game state has an invalid number of locations (need " + PackedBoard.LOCATION_COUNT + " but only found " + locationIndex + ")");
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readLocation(JsonReader reader, PackedBoard board, int locationIndex) throws IOException {
+        LocationInterface location = PackedBoard.locationOf(board, locationIndex);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("name")) {
+                String locationName = reader.nextString();
+                if (!locationName.equals(location.getName())) {
+                    location.setName(locationName);
+                }
+            } else if (name.equals("mixed")) {
+                location.setMixed(reader.nextBoolean());
+            } else if (name.equals("pieces")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    Colour colour = colourNamed(reader.nextName());
+                    int count = reader.nextInt();
+                    if (count < 0 || count > BoardInterface.PIECES_PER_PLAYER) {
+                        throw new IOException("The saved game state is not valid");
+                    }
+                    board.setNumberOfPieces(locationIndex, colour, count);
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readDice(JsonReader reader, SavedGame saved) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("d1")) {
+                saved.dieValue1 = readDieValue(reader);
+            } else if (name.equals("d2")) {
+                saved.dieValue2 = readDieValue(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /* The value of a die, or 0 if it had not been rolled */
+    private static int readDieValue(JsonReader reader) throws IOException {
+        int value = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("value") && reader.peek() == JsonToken.NUMBER) {
+                value = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return (value >= 1 && value <= DieInterface.NUMBER_OF_SIDES_ON_DIE) ? value : 0;
+    }
+
+    /**
+     * Read every file in a directory (but not its subdirectories) as a save file, in parallel
+     *
+     * @param directory the directory to read
+     * @param threads the number of threads to read on
+     * @return the games read, in order of file name, and the files which failed with the reason for each
+     *
+     * @throws IOException if the directory itself cannot be listed
+     */
+    public static SaveBatchResult readDirectory(Path directory, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Reading needs at least 1 thread.");
+        }
+        long start = System.nanoTime();
+        final List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+
+        /* Each chunk fills in its own part of the arrays, so they need no locking */
+        final GameSnapshot[] snapshots = new GameSnapshot[files.size()];
+        final String[] errors = new String[files.size()];
+        int numberOfChunks = Math.max(1, Math.min(files.size(), threads * CHUNKS_PER_THREAD));
+        List<Callable<Void>> chunks = new ArrayList<Callable<Void>>(numberOfChunks);
+        for (int i = 0; i < numberOfChunks; i++) {
+            final int first = (int) ((long) files.size() * i / numberOfChunks);
+            final int last = (int) ((long) files.size() * (i + 1) / numberOfChunks);
+            chunks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int file = first; file < last; file++) {
+                        try {
+                            snapshots[file] = read(files.get(file));
+                        } catch (IOException | RuntimeException e) {
+                            errors[file] = (e.getMessage() == null) ? e.toString() : e.getMessage();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> chunk : executor.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Should never happen as every chunk catches its own exceptions
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+
+        return new SaveBatchResult(files, snapshots, errors, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,66 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SaveFileReaderTestBasic {
+
+    @Test
+    public void reads_a_directory_and_reports_failures() throws Exception {
+        Path directory = Files.createTempDirectory("saves");
+        GameSnapshot snapshot = new GameSnapshot(new PackedBoard(), Colour.GREEN, 2, 5, new String[]{"computer", "human"});
+        Path binary = directory.resolve("a" + Game.BINARY_SAVE_EXTENSION);
+        Path json = directory.resolve("b.json");
+        Path broken = directory.resolve("c.json");
+        Path invalid = directory.resolve("d.json");
+        try {
+            Files.write(binary, snapshot.toBytes());
+            Game game = new Game();
+            game.loadGame(binary.toString());
+            game.saveGame(json.toString());
+            Files.write(broken, "{\"board\": [".getBytes());
+            Files.write(invalid, new String(Files.readAllBytes(json)).replaceFirst("\"BLUE\": 15", "\"BLUE\": 14").getBytes());
+
+            SaveBatchResult result = SaveFileReader.readDirectory(directory, 2);
+            assertEquals(2, result.getGames().size());
+            assertEquals(snapshot, result.getGames().get(binary));
+            assertEquals(snapshot, result.getGames().get(json));
+            assertEquals(2, result.getFailures().size());
+            assertTrue(result.getFailures().containsKey(broken));
+            assertTrue(result.getFailures().get(invalid).contains("not valid"));
+        } finally {
+            for (Path file : new Path[]{binary, json, broken, invalid}) {
+                Files.deleteIfExists(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void keeps_board_and_location_names() throws Exception {
+        String json = "{\"extra\": [1, {\"x\": null}], \"players\": {\"GREEN\": {\"typeOfPlayer\": \"Computer\", \"depth\": 3}, \"BLUE\": null},"
+                + " \"currentColour\": \"BLUE\", \"d\": {\"d1\": {\"value\": 6}, \"d2\": {\"value\": null}}, \"board\": {\"name\": \"Test Board\", \"locations\": [";
+        for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+            json += (i > 0 ? "," : "") + "{\"name\": \"" + (i == 3 ? "Somewhere" : Board.defaultLocationName(i)) + "\", \"mixed\": " + (i == 0 || i >= 25)
+                    + ", \"pieces\": {\"GREEN\": " + (i == 0 ? 14 : i == 3 ? 1 : 0) + ", \"BLUE\": " + (i == 0 ? 15 : 0) + "}}";
+        }
+        json += "]}}";
+
+        SaveFileReader.SavedGame saved = SaveFileReader.readJson(new StringReader(json));
+        assertEquals("Test Board", saved.board.getName());
+        assertEquals("Somewhere", saved.board.getBoardLocation(3).getName());
+        assertEquals(1, saved.board.numberOfPieces(3, Colour.GREEN));
+        assertEquals("computer", saved.playerTypes[Colour.GREEN.ordinal()]);
+        assertEquals(null, saved.playerTypes[Colour.BLUE.ordinal()]);
+        assertEquals(Colour.BLUE, saved.currentColour);
+        assertEquals(6, saved.dieValue1);
+        assertEquals(0, saved.dieValue2);
+        assertEquals(ZobristKeys.hash(saved.board), saved.board.positionHash());
+    }
+}
@@ -0,0 +1,94 @@
+package xyz.robbie.tabula;
+
+/**
+ * SearchBoardInterface is a BoardInterface whose moves can be taken back again, so that a player can try out
+ * whole sequences of moves on a single board instead of cloning it before each one.
+ **/
+
+public interface SearchBoardInterface extends BoardInterface {
+
+    /**
+     * @param locationIndex the index of the location, from Board.START_INDEX to Board.KNOCKED_INDEX
+     *
+     * @param colour the colour of pieces to count
+     *
+     * @return the number of pieces of that colour in that location
+     **/
+    int numberOfPieces(int locationIndex, Colour colour);
+
+    /**
+     * Update the Board state by making the given move for the given colour, including any knocking off, in a way that can be undone.
+     *
+     * @param colour the colour to move
+     *
+     * @param move the move to make
+     *
+     * @return an undo record (see UndoRecord) which can be passed to unmakeMove() to restore the board to its state before this move
+     *
+     * @throws IllegalMoveException if and only if the move is not legal. The board state is then unchanged.
+     **/
+    int makeUndoableMove(Colour colour, MoveInterface move) throws IllegalMoveException;
+
+    /**
+     * Restore the Board state to how it was before the move which returned the given undo record. Moves must be
+     * undone in the reverse order to that in which they were made.
+     *
+     * @param undo the undo record returned by makeUndoableMove()
+     **/
+    void unmakeMove(int undo);
+
+    /**
+     * @param colour the colour to move
+     *
+     * @param move the move to make, encoded as described in EncodedMove
+     *
+     * @return true if and only if, from the current board state it would be legal for the given colour to make the given move.
+     **/
+    boolean canMakeMove(Colour colour, int move);
+
+    /**
+     * As makeUndoableMove(Colour, MoveInterface), but for a move encoded as described in EncodedMove.
+     *
+     * @param colour the colour to move
+     *
+     * @param move the move to make, encoded as described in EncodedMove
+     *
+     * @return an undo record (see UndoRecord) which can be passed to unmakeMove() to restore the board to its state before this move
+     *
+     * @throws IllegalMoveException if and only if the move is not legal. The board state is then unchanged.
+     **/
+    int makeUndoableMove(Colour colour, int move) throws IllegalMoveException;
+
+    /**
+     * Write every move that the given colour can make with the given die value into the given buffer, without
+     * creating any objects.
+     *
+     * @param colour the colour to move next
+     *
+     * @param dieValue the die value to use
+     *
+     * @param moves the buffer to write the encoded moves (see EncodedMove) into. It must have room for EncodedMove.MAX_MOVES_PER_DIE moves after offset
+     *
+     * @param offset the index in moves at which to write the first move
+     *
+     * @return the number of moves written
+     **/
+    int generateMoves(Colour colour, int dieValue, int[] moves, int offset);
+
+    /**
+     * @return the ZobristKeys hash of the pieces on the board. This is kept up to date as the board changes rather than being recalculated.
+     **/
+    long positionHash();
+
+    /**
+     * @param colourToMove the colour which is to move next
+     *
+     * @return the ZobristKeys hash of the pieces on the board together with the colour to move
+     **/
+    long positionHash(Colour colourToMove);
+
+    /**
+     * @return a copy of the board that can be passed to players to work with
+     */
+    SearchBoardInterface clone();
+}
@@ -0,0 +1,261 @@
+package xyz.robbie.tabula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Simulation plays batches of computer versus computer games without any console input or output, for measuring how
+ * strong players are. Unlike Game it has no shared state, so several simulations can run in one program.
+ *
+ * The games are split into chunks which run on a fixed pool of threads. Each chunk makes its own pair of players
+ * from the factories, so players do not need to be thread-safe, but they should not ask for console input.
+ *
+ * The dice for each game use the stream from RandomStreams for the seed and the index of the game, so the
+ * results for a seed are the same whatever the number of threads, as long as the players themselves are repeatable.
+ * In paired mode (see runPaired()) each dice sequence is played twice with the colours swapped.
+ */
+public class Simulation {
+
+    /* Games still going after this many turns are stopped without a winner */
+    public static final int MAX_TURNS = 10000;
+
+    /* Chunks per thread, so that threads which finish early can pick up more work */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Supplier<PlayerInterface> firstPlayerFactory;
+    private final Supplier<PlayerInterface> secondPlayerFactory;
+
+    /**
+     * @param firstPlayerFactory makes the first player, for example ExpectiminimaxPlayer::new
+     * @param secondPlayerFactory makes the second player
+     */
+    public Simulation(Supplier<PlayerInterface> firstPlayerFactory, Supplier<PlayerInterface> secondPlayerFactory) {
+        this.firstPlayerFactory = firstPlayerFactory;
+        this.secondPlayerFactory = secondPlayerFactory;
+    }
+
+    /**
+     * Play a batch of games, with the players swapping colours every game
+     *
+     * @param numberOfGames the number of games to play
+     * @param threads the number of threads to play them on
+     * @param seed the seed for the dice
+     * @return the results of the games
+     */
+    public SimulationResult run(int numberOfGames, int threads, long seed) {
+        return run(numberOfGames, threads, seed, null);
+    }
+
+    /**
+     * Play each dice sequence twice, with the players swapping colours, so that both players get exactly the same
+     * dice and differences in the results come from the players rather than from luck (common random numbers)
+     *
+     * @param sequences the dice sequences, one for each pair of games
+     * @param threads the number of threads to play them on
+     * @return the results of the games, including how each pair of games went
+     */
+    public SimulationResult runPaired(DiceSequences sequences, int threads) {
+        return run(sequences.getNumberOfSequences(), threads, sequences.getSeed(), sequences);
+    }
+
+    /* Play a number of games, or of pairs of games if there are sequences to replay */
+    private SimulationResult run(int numberOfUnits, int threads, final long seed, final DiceSequences sequences) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A simulation needs at least 1 thread.");
+        }
+        long start = System.nanoTime();
+        SimulationResult result = new SimulationResult();
+
+        int numberOfChunks = Math.max(1, Math.min(numberOfUnits, threads * CHUNKS_PER_THREAD));
+        List<Callable<SimulationResult>> chunks = new ArrayList<Callable<SimulationResult>>(numberOfChunks);
+        for (int i = 0; i < numberOfChunks; i++) {
+            final int first = (int) ((long) numberOfUnits * i / numberOfChunks);
+            final int last = (int) ((long) numberOfUnits * (i + 1) / numberOfChunks);
+            chunks.add(new Callable<SimulationResult>() {
+                public SimulationResult call() {
+                    return (sequences == null) ? playGames(first, last, seed) : playPairs(first, last, sequences);
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<SimulationResult> chunk : executor.invokeAll(chunks)) {
+                result.merge(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A simulated game failed.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /* Play the games with indices from firstGame up to (but not including) lastGame with one pair of players */
+    private SimulationResult playGames(int firstGame, int lastGame, long seed) {
+        RandomStreams streams = new RandomStreams(seed);
+        PlayerInterface[] players = {firstPlayerFactory.get(), secondPlayerFactory.get()};
+        SimulationResult result = new SimulationResult();
+        try {
+            for (int game = firstGame; game < lastGame; game++) {
+                Colour firstPlayerColour = Colour.values()[game % 2];
+                PlayerInterface green = (firstPlayerColour == Colour.values()[0]) ? players[0] : players[1];
+                PlayerInterface blue = (green == players[0]) ? players[1] : players[0];
+                playGame(green, blue, new Dice(streams.forGame(game)), firstPlayerColour, result);
+            }
+        } finally {
+            closePlayers(players);
+        }
+        return result;
+    }
+
+    /* Play the pairs of games for the sequences from firstPair up to (but not including) lastPair */
+    private SimulationResult playPairs(int firstPair, int lastPair, DiceSequences sequences) {
+        PlayerInterface[] players = {firstPlayerFactory.get(), secondPlayerFactory.get()};
+        Colour firstColour = Colour.values()[0];
+        SimulationResult result = new SimulationResult();
+        try {
+            for (int pair = firstPair; pair < lastPair; pair++) {
+                Colour firstWinner = playGame(players[0], players[1], sequences.dice(pair), firstColour, result);
+                Colour secondWinner = playGame(players[1], players[0], sequences.dice(pair), firstColour.otherColour(), result);
+                result.recordPair(((firstWinner == firstColour) ? 1 : 0) + ((secondWinner == firstColour.otherColour()) ? 1 : 0));
+            }
+        } finally {
+            closePlayers(players);
+        }
+        return result;
+    }
+
+    /**
+     * Close the players which hold resources of their own, such as the threads of a parallel search
+     *
+     * @param players the players a worker made and has finished with
+     */
+    static void closePlayers(PlayerInterface... players) {
+        for (PlayerInterface player : players) {
+            if (player instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) player).close();
+                } catch (Exception e) {
+                    // Should never happen as the players only shut down their own threads
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Play one game to the end and record it
+     *
+     * @param firstColourPlayer the player of the colour which moves first
+     * @param secondColourPlayer the player of the other colour
+     * @param dice the dice for the game
+     * @param firstPlayerColour the colour played by the first player, for the result
+     * @param result the result to record the game in
+     * @return the colour of the winner, or null if the game did not finish
+     */
+    static Colour playGame(PlayerInterface firstColourPlayer, PlayerInterface secondColourPlayer, DiceInterface dice, Colour firstPlayerColour, SimulationResult result) {
+        return playGame(firstColourPlayer, secondColourPlayer, dice, firstPlayerColour, result, null);
+    }
+
+    /**
+     * Play one game to the end and record it, unless it is cancelled first
+     *
+     * @param firstColourPlayer the player of the colour which moves first
+     * @param secondColourPlayer the player of the other colour
+     * @param dice the dice for the game
+     * @param firstPlayerColour the colour played by the first player, for the result
+     * @param result the result to record the game in
+     * @param cancelled checked before every turn, and once it is true the game stops without being recorded; or null
+     * @return the colour of the winner, or null if the game did not finish or was cancelled
+     */
+    static Colour playGame(PlayerInterface firstColourPlayer, PlayerInterface secondColourPlayer, DiceInterface dice, Colour firstPlayerColour, SimulationResult result, AtomicBoolean cancelled) {
+        PackedBoard board = new PackedBoard();
+        Colour colour = Colour.values()[0];
+        int turns = 0;
+        while (turns < MAX_TURNS) {
+            if (cancelled != null && cancelled.get()) {
+                return null;
+            }
+            List<Integer> diceValues;
+            dice.roll();
+            try {
+                diceValues = dice.getRoll().getValues();
+            } catch (NotRolledYetException e) {
+                // Should never happen as the dice have just been rolled
+                e.printStackTrace();
+                break;
+            }
+
+            PlayerInterface player = (colour == Colour.values()[0]) ? firstColourPlayer : secondColourPlayer;
+            turns++;
+            try {
+                board.takeTurn(colour, player.getTurn(colour, board.clone(), diceValues), diceValues);
+            } catch (IllegalTurnException e) {
+                /* The player forfeits the game */
+                result.recordGame(colour.otherColour(), firstPlayerColour, turns, true);
+                return colour.otherColour();
+            } catch (PauseException e) {
+                break;
+            }
+
+            if (board.winner() != null) {
+                result.recordGame(board.winner(), firstPlayerColour, turns, false);
+                return board.winner();
+            }
+            colour = colour.otherColour();
+        }
+        result.recordGame(null, firstPlayerColour, turns, false);
+        return null;
+    }
+
+    /**
+     * Play a batch of games from the command line and print the results
+     *
+     * @param args the two player types (as in saved games, such as "computer"), the number of games, and optionally
+     *             the number of threads, the seed and "paired" to replay each dice sequence with the colours swapped
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: Simulation <first player type> <second player type> <number of games> [threads] [seed] [paired]");
+            return;
+        }
+        final String firstType = args[0];
+        final String secondType = args[1];
+        if (!Game.isComputerType(firstType) || !Game.isComputerType(secondType)) {
+            System.out.println("Unknown player type. Try computer, expectiminimax or montecarlo.");
+            return;
+        }
+        int numberOfGames = Integer.parseInt(args[2]);
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : System.nanoTime();
+
+        Simulation simulation = new Simulation(new Supplier<PlayerInterface>() {
+            public PlayerInterface get() {
+                return Game.playerOfType(firstType);
+            }
+        }, new Supplier<PlayerInterface>() {
+            public PlayerInterface get() {
+                return Game.playerOfType(secondType);
+            }
+        });
+        System.out.println(firstType + " against " + secondType + ", seed " + seed);
+        if (args.length > 5 && args[5].equals("paired")) {
+            DiceSequences sequences = DiceSequences.generate(seed, (numberOfGames + 1) / 2, DiceSequences.DEFAULT_ROLLS_PER_SEQUENCE);
+            System.out.println(simulation.runPaired(sequences, threads));
+        } else {
+            System.out.println(simulation.run(numberOfGames, threads, seed));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package xyz.robbie.tabula;
+
+import java.util.Arrays;
+
+/**
+ * SimulationResult collects the outcomes of a batch of headless games played by Simulation: the wins for each colour
+ * and each player, how long the games were and how quickly they were played.
+ *
+ * The first player is the one made by the first factory given to Simulation. It plays the first colour in games with
+ * an even index and the second colour in games with an odd index, so that neither player always moves first.
+ */
+public class SimulationResult {
+
+    /* Games at least this many turns long share the last bucket of the length histogram */
+    public static final int MAX_RECORDED_LENGTH = 1000;
+
+    private int games;
+    private final int[] winsByColour = new int[Colour.values().length];
+    private final int[] winsByPlayer = new int[2];
+    private int forfeits;
+    private int unfinished;
+
+    /* For paired games, the number of pairs in which the first player won 0, 1 or 2 of the games */
+    private final int[] pairsByFirstPlayerWins = new int[3];
+
+    private final int[] lengthCounts = new int[MAX_RECORDED_LENGTH + 1];
+    private long totalTurns;
+    private int longestGame;
+
+    private long elapsedNanos;
+
+    /**
+     * @param winner the colour which won, or null if the game did not finish
+     * @param firstPlayerColour the colour the first player played
+     * @param turns the number of turns taken by both players together
+     * @param forfeit true if and only if the game ended because a player took an illegal turn
+     */
+    void recordGame(Colour winner, Colour firstPlayerColour, int turns, boolean forfeit) {
+        games++;
+        if (winner == null) {
+            unfinished++;
+        } else {
+            winsByColour[winner.ordinal()]++;
+            winsByPlayer[(winner == firstPlayerColour) ? 0 : 1]++;
+        }
+        if (forfeit) {
+            forfeits++;
+        }
+        lengthCounts[Math.min(turns, MAX_RECORDED_LENGTH)]++;
+        totalTurns += turns;
+        longestGame = Math.max(longestGame, turns);
+    }
+
+    /**
+     * @param firstPlayerWins the number of games of a pair with the same dice which the first player won
+     */
+    void recordPair(int firstPlayerWins) {
+        pairsByFirstPlayerWins[firstPlayerWins]++;
+    }
+
+    /**
+     * Add the games recorded in another result to this one
+     */
+    void merge(SimulationResult other) {
+        games += other.games;
+        for (int i = 0; i < winsByColour.length; i++) {
+            winsByColour[i] += other.winsByColour[i];
+        }
+        for (int i = 0; i < winsByPlayer.length; i++) {
+            winsByPlayer[i] += other.winsByPlayer[i];
+        }
+        forfeits += other.forfeits;
+        unfinished += other.unfinished;
+        for (int i = 0; i < pairsByFirstPlayerWins.length; i++) {
+            pairsByFirstPlayerWins[i] += other.pairsByFirstPlayerWins[i];
+        }
+        for (int i = 0; i < lengthCounts.length; i++) {
+            lengthCounts[i] += other.lengthCounts[i];
+        }
+        totalTurns += other.totalTurns;
+        longestGame = Math.max(longestGame, other.longestGame);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * @return the number of games won by the given colour
+     */
+    public int getWins(Colour colour) {
+        return winsByColour[colour.ordinal()];
+    }
+
+    /**
+     * @param player 0 for the first player or 1 for the second player
+     * @return the number of games won by that player
+     */
+    public int getWinsForPlayer(int player) {
+        return winsByPlayer[player];
+    }
+
+    /**
+     * @return the number of games lost by a player taking an illegal turn
+     */
+    public int getForfeits() {
+        return forfeits;
+    }
+
+    /**
+     * @return the number of games stopped without a winner, because they ran too long or a player paused
+     */
+    public int getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * @param firstPlayerWins 0, 1 or 2
+     * @return the number of pairs of games with the same dice in which the first player won that many games
+     */
+    public int getPairs(int firstPlayerWins) {
+        return pairsByFirstPlayerWins[firstPlayerWins];
+    }
+
+    /**
+     * @return a copy of the game length histogram, where element i is the number of games which took i turns
+     */
+    public int[] getLengthCounts() {
+        return Arrays.copyOf(lengthCounts, lengthCounts.length);
+    }
+
+    public double getMeanLength() {
+        return (games == 0) ? 0 : (double) totalTurns / games;
+    }
+
+    /**
+     * @param fraction the fraction of games, between 0 and 1
+     * @return the smallest number of turns which at least that fraction of games took no more than
+     */
+    public int getLengthPercentile(double fraction) {
+        long needed = (long) Math.ceil(fraction * games);
+        long seen = 0;
+        for (int i = 0; i < lengthCounts.length; i++) {
+            seen += lengthCounts[i];
+            if (seen >= needed && seen > 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public int getLongestGame() {
+        return longestGame;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getGamesPerSecond() {
+        return (elapsedNanos == 0) ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(games).append(" games in ").append(String.format("%.2f", elapsedNanos / 1e9)).append(" s (")
+                .append(String.format("%.1f", getGamesPerSecond())).append(" games/s)\n");
+        s.append("First player won ").append(winsByPlayer[0]).append(", second player won ").append(winsByPlayer[1]);
+        s.append(", unfinished ").append(unfinished).append(", forfeits ").append(forfeits).append('\n');
+        for (Colour c : Colour.values()) {
+            s.append(c).append(" won ").append(winsByColour[c.ordinal()]).append('\n');
+        }
+        int pairs = pairsByFirstPlayerWins[0] + pairsByFirstPlayerWins[1] + pairsByFirstPlayerWins[2];
+        if (pairs > 0) {
+            s.append("Pairs with the same dice: first player won both ").append(pairsByFirstPlayerWins[2])
+                    .append(", split ").append(pairsByFirstPlayerWins[1])
+                    .append(", second player won both ").append(pairsByFirstPlayerWins[0]).append('\n');
+        }
+        s.append("Game length: mean ").append(String.format("%.1f", getMeanLength()))
+                .append(", median ").append(getLengthPercentile(0.5))
+                .append(", 90th percentile ").append(getLengthPercentile(0.9))
+                .append(", longest ").append(longestGame);
+        return s.toString();
+    }
+}
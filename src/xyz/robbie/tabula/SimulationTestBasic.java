@@ -0,0 +1,66 @@
+package xyz.robbie.tabula;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class SimulationTestBasic {
+
+    private Simulation simulation;
+
+    @Before
+    public void setUp()
+    {
+        Supplier<PlayerInterface> computer = new Supplier<PlayerInterface>() {
+            public PlayerInterface get() {
+                return new ComputerPlayer();
+            }
+        };
+        simulation = new Simulation(computer, computer);
+    }
+
+    @Test
+    public void every_game_is_recorded() {
+        SimulationResult result = simulation.run(50, 3, 1);
+        assertEquals(50, result.getGames());
+        assertEquals(50, result.getWinsForPlayer(0) + result.getWinsForPlayer(1) + result.getUnfinished());
+        assertEquals(result.getWinsForPlayer(0) + result.getWinsForPlayer(1), result.getWins(Colour.GREEN) + result.getWins(Colour.BLUE));
+        int lengths = 0;
+        for (int count : result.getLengthCounts()) {
+            lengths += count;
+        }
+        assertEquals(50, lengths);
+    }
+
+    @Test
+    public void results_do_not_depend_on_threads() {
+        SimulationResult single = simulation.run(40, 1, 99);
+        SimulationResult several = simulation.run(40, 4, 99);
+        assertEquals(single.getWins(Colour.GREEN), several.getWins(Colour.GREEN));
+        assertEquals(single.getWinsForPlayer(0), several.getWinsForPlayer(0));
+        assertEquals(single.getMeanLength(), several.getMeanLength(), 0);
+    }
+
+    @Test
+    public void identical_players_split_every_pair() {
+        SimulationResult result = simulation.runPaired(DiceSequences.generate(5, 20, DiceSequences.DEFAULT_ROLLS_PER_SEQUENCE), 2);
+        assertEquals(40, result.getGames());
+        assertEquals(20, result.getPairs(1));
+        assertEquals(20, result.getWinsForPlayer(0));
+    }
+
+    @Test
+    public void replayed_dice_match_game_dice() throws Exception {
+        DiceSequences sequences = DiceSequences.generate(11, 3, 5);
+        DiceInterface replayed = sequences.dice(2);
+        DiceInterface original = new Dice(new RandomStreams(11).forGame(2));
+        for (int i = 0; i < 12; i++) {
+            replayed.roll();
+            original.roll();
+            assertEquals(original.getRoll(), replayed.getRoll());
+        }
+    }
+}
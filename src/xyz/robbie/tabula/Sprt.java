@@ -0,0 +1,191 @@
+package xyz.robbie.tabula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sprt plays a candidate player against a baseline until a sequential probability ratio test decides whether the
+ * candidate is an improvement, instead of playing a fixed number of games. A clear improvement or regression is
+ * usually decided in a small fraction of the games a fixed match would need.
+ *
+ * The test is between H0, that the candidate is elo0 stronger than the baseline, and H1, that it is elo1 stronger,
+ * with error rates alpha and beta. The games are played in pairs with the same dice and the colours swapped, as in
+ * Simulation.runPaired(), and the ratio is updated as the second game of each pair finishes (see SprtResult).
+ *
+ * Each worker thread has its own pair of players and takes the next pair of games to play until the test decides.
+ * Then the other workers are told to stop, and the games they are playing end before their next turn and are not
+ * counted. The pairs are counted in the order they finish, so with more than one thread the exact point at which
+ * the test decides can vary from run to run.
+ */
+public class Sprt {
+
+    private final Supplier<PlayerInterface> candidateFactory;
+    private final Supplier<PlayerInterface> baselineFactory;
+    private final double elo0;
+    private final double elo1;
+    private final double alpha;
+    private final double beta;
+
+    /**
+     * @param candidateFactory makes the player being tested
+     * @param baselineFactory makes the player it is tested against
+     * @param elo0 the Elo difference of the null hypothesis, typically 0
+     * @param elo1 the Elo difference of the alternative hypothesis, greater than elo0
+     * @param alpha the chance of deciding the candidate is better when it is only elo0 stronger, such as 0.05
+     * @param beta the chance of deciding it is not better when it is elo1 stronger, such as 0.05
+     */
+    public Sprt(Supplier<PlayerInterface> candidateFactory, Supplier<PlayerInterface> baselineFactory, double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) {
+            throw new IllegalArgumentException("elo1 must be greater than elo0.");
+        }
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("alpha and beta must be between 0 and 1.");
+        }
+        this.candidateFactory = candidateFactory;
+        this.baselineFactory = baselineFactory;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Play pairs of games until the test decides or maxPairs pairs have been played
+     *
+     * @param maxPairs the most pairs of games to play
+     * @param threads the number of threads to play on
+     * @param seed the seed for the dice
+     * @param listener told about the result after each pair, on the worker thread which played it, or null
+     * @return the result, whose decision is UNDECIDED if the pairs ran out first
+     */
+    public SprtResult run(final int maxPairs, int threads, final long seed, final Consumer<SprtResult> listener) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A test needs at least 1 thread.");
+        }
+        long start = System.nanoTime();
+        final SprtResult result = new SprtResult(elo0, elo1, alpha, beta);
+        final AtomicBoolean decided = new AtomicBoolean();
+        final AtomicInteger nextPair = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Callable<Void>() {
+                public Void call() {
+                    playPairs(maxPairs, seed, nextPair, decided, result, listener);
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> worker : executor.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            decided.set(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A game in the test failed.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        synchronized (result) {
+            result.setElapsedNanos(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /* Play pairs of games with one candidate and one baseline until the pairs run out or the test has decided */
+    private void playPairs(int maxPairs, long seed, AtomicInteger nextPair, AtomicBoolean decided, SprtResult result, Consumer<SprtResult> listener) {
+        RandomStreams streams = new RandomStreams(seed);
+        PlayerInterface candidate = candidateFactory.get();
+        PlayerInterface baseline = baselineFactory.get();
+        Colour firstColour = Colour.values()[0];
+
+        try {
+            while (!decided.get()) {
+                int pair = nextPair.getAndIncrement();
+                if (pair >= maxPairs) {
+                    return;
+                }
+                SimulationResult pairGames = new SimulationResult();
+                Colour firstWinner = Simulation.playGame(candidate, baseline, new Dice(streams.forGame(pair)), firstColour, pairGames, decided);
+                Colour secondWinner = Simulation.playGame(baseline, candidate, new Dice(streams.forGame(pair)), firstColour.otherColour(), pairGames, decided);
+                if (pairGames.getGames() < 2) {
+                    /* Cancelled part way through */
+                    return;
+                }
+
+                int candidateWins = ((firstWinner == firstColour) ? 1 : 0) + ((secondWinner == firstColour.otherColour()) ? 1 : 0);
+                synchronized (result) {
+                    if (decided.get()) {
+                        return;
+                    }
+                    if (result.recordPair(pairGames, candidateWins) != SprtResult.Decision.UNDECIDED) {
+                        decided.set(true);
+                    }
+                    if (listener != null) {
+                        listener.accept(result);
+                    }
+                }
+            }
+        } finally {
+            Simulation.closePlayers(candidate, baseline);
+        }
+    }
+
+    /**
+     * Run a test from the command line and print the result
+     *
+     * @param args the candidate and baseline player types, then optionally elo0, elo1, alpha, beta, the most pairs,
+     *             the number of threads and the seed
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: Sprt <candidate type> <baseline type> [elo0 elo1 alpha beta] [max pairs] [threads] [seed]");
+            return;
+        }
+        final String candidateType = args[0];
+        final String baselineType = args[1];
+        if (!Game.isComputerType(candidateType) || !Game.isComputerType(baselineType)) {
+            System.out.println("Unknown player type. Try computer, expectiminimax or montecarlo.");
+            return;
+        }
+        double elo0 = (args.length > 5) ? Double.parseDouble(args[2]) : 0;
+        double elo1 = (args.length > 5) ? Double.parseDouble(args[3]) : 10;
+        double alpha = (args.length > 5) ? Double.parseDouble(args[4]) : 0.05;
+        double beta = (args.length > 5) ? Double.parseDouble(args[5]) : 0.05;
+        int maxPairs = (args.length > 6) ? Integer.parseInt(args[6]) : 100000;
+        int threads = (args.length > 7) ? Integer.parseInt(args[7]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 8) ? Long.parseLong(args[8]) : System.nanoTime();
+
+        Sprt sprt = new Sprt(new Supplier<PlayerInterface>() {
+            public PlayerInterface get() {
+                return Game.playerOfType(candidateType);
+            }
+        }, new Supplier<PlayerInterface>() {
+            public PlayerInterface get() {
+                return Game.playerOfType(baselineType);
+            }
+        }, elo0, elo1, alpha, beta);
+        System.out.println(candidateType + " against " + baselineType + ", H0 " + elo0 + " Elo, H1 " + elo1 + " Elo, seed " + seed);
+        System.out.println(sprt.run(maxPairs, threads, seed, new Consumer<SprtResult>() {
+            public void accept(SprtResult progress) {
+                if (progress.getPairs() % 100 == 0) {
+                    System.out.println(String.format("%d pairs, LLR %.3f", progress.getPairs(), progress.getLogLikelihoodRatio()));
+                }
+            }
+        }));
+    }
+}
@@ -0,0 +1,146 @@
+package xyz.robbie.tabula;
+
+/**
+ * SprtResult holds the state of a sequential probability ratio test run by Sprt: the pairs of games played so far,
+ * the log-likelihood ratio they give and, once it crosses one of the bounds, the decision.
+ *
+ * Each pair of games with the same dice is one observation, scored as the fraction of the two games the candidate
+ * won (unfinished games count as half). The log-likelihood ratio is the generalised SPRT approximation, which assumes
+ * the mean pair score is normally distributed with the variance seen so far, so it allows for however the two games
+ * of a pair are correlated without needing a model of the outcomes. The variance includes a lost and a won pair as
+ * prior pseudo-observations, so that a run of identical pair scores still gives a finite ratio.
+ */
+public class SprtResult {
+
+    /**
+     * What the test has decided
+     */
+    public enum Decision {
+        /* The candidate is at least elo1 stronger (H1 accepted) */
+        BETTER,
+
+        /* The candidate is no more than elo0 stronger (H0 accepted) */
+        NOT_BETTER,
+
+        /* Neither bound has been reached, either yet or before the pairs ran out */
+        UNDECIDED
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    private final SimulationResult games = new SimulationResult();
+    private int pairs;
+    private double scoreSum;
+    private double scoreSquaresSum;
+    private double llr;
+    private Decision decision = Decision.UNDECIDED;
+
+    /**
+     * @param elo0 the Elo difference of the null hypothesis
+     * @param elo1 the Elo difference of the alternative hypothesis, greater than elo0
+     * @param alpha the chance of deciding BETTER when the difference is elo0
+     * @param beta the chance of deciding NOT_BETTER when the difference is elo1
+     */
+    SprtResult(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * @param elo an Elo difference
+     * @return the expected score of a player that much stronger
+     */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Record a pair of games between the candidate and the baseline, and update the ratio and the decision
+     *
+     * @param pairGames the two games, recorded with the candidate as the first player
+     * @param firstPlayerWins the number of the games the candidate won
+     * @return the decision after this pair
+     */
+    Decision recordPair(SimulationResult pairGames, int firstPlayerWins) {
+        games.merge(pairGames);
+        games.recordPair(firstPlayerWins);
+        double score = (firstPlayerWins + pairGames.getUnfinished() / 2.0) / 2;
+        pairs++;
+        scoreSum += score;
+        scoreSquaresSum += score * score;
+
+        double mean = scoreSum / pairs;
+        /* Estimate the variance as if a lost and a won pair had been played as well, so that it is never 0 when
+           every pair has had the same score, which is when the test should stop soonest */
+        double priorMean = (scoreSum + 1) / (pairs + 2);
+        double variance = (scoreSquaresSum + 1) / (pairs + 2) - priorMean * priorMean;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        llr = pairs * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+
+        if (decision == Decision.UNDECIDED) {
+            if (llr >= upperBound) {
+                decision = Decision.BETTER;
+            } else if (llr <= lowerBound) {
+                decision = Decision.NOT_BETTER;
+            }
+        }
+        return decision;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        games.setElapsedNanos(elapsedNanos);
+    }
+
+    /**
+     * @return the games played, with the candidate as the first player
+     */
+    public SimulationResult getGames() {
+        return games;
+    }
+
+    public int getPairs() {
+        return pairs;
+    }
+
+    public double getLogLikelihoodRatio() {
+        return llr;
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return the candidate's mean score per game, counting unfinished games as half
+     */
+    public double getScore() {
+        return (pairs == 0) ? 0.5 : scoreSum / pairs;
+    }
+
+    /**
+     * @return the Elo difference the score so far suggests, which is infinite if one player has won every game
+     */
+    public double getEloEstimate() {
+        double score = getScore();
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    public String toString() {
+        return String.format("%s after %d pairs: LLR %.3f in (%.3f, %.3f), score %.1f%%, Elo %+.1f", decision, pairs,
+                llr, lowerBound, upperBound, 100 * getScore(), getEloEstimate()) + "\n" + games;
+    }
+}
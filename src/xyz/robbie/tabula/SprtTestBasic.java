@@ -0,0 +1,72 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SprtTestBasic {
+
+    private static final Supplier<PlayerInterface> COMPUTER = new Supplier<PlayerInterface>() {
+        public PlayerInterface get() {
+            return new ComputerPlayer();
+        }
+    };
+
+    private static final Supplier<PlayerInterface> SEARCH = new Supplier<PlayerInterface>() {
+        public PlayerInterface get() {
+            return new ExpectiminimaxPlayer(1);
+        }
+    };
+
+    @Test
+    public void stronger_player_is_accepted_early() {
+        SprtResult result = new Sprt(SEARCH, COMPUTER, 0, 50, 0.05, 0.05).run(1000, 2, 7, null);
+        assertEquals(SprtResult.Decision.BETTER, result.getDecision());
+        assertTrue(result.getPairs() < 100);
+        assertTrue(result.getLogLikelihoodRatio() >= result.getUpperBound());
+    }
+
+    @Test
+    public void weaker_player_is_rejected_early() {
+        SprtResult result = new Sprt(COMPUTER, SEARCH, 0, 50, 0.05, 0.05).run(1000, 2, 7, null);
+        assertEquals(SprtResult.Decision.NOT_BETTER, result.getDecision());
+        assertTrue(result.getPairs() < 100);
+    }
+
+    @Test
+    public void identical_players_run_out_of_pairs() {
+        SprtResult result = new Sprt(COMPUTER, COMPUTER, 0, 50, 0.05, 0.05).run(5, 3, 7, null);
+        assertEquals(SprtResult.Decision.UNDECIDED, result.getDecision());
+        assertEquals(5, result.getPairs());
+        assertEquals(10, result.getGames().getGames());
+    }
+
+    @Test
+    public void identical_players_are_not_accepted() {
+        SprtResult result = new Sprt(COMPUTER, COMPUTER, 0, 50, 0.05, 0.05).run(1000, 3, 7, null);
+        assertEquals(SprtResult.Decision.NOT_BETTER, result.getDecision());
+        assertEquals(2 * result.getPairs(), result.getGames().getGames());
+    }
+
+    @Test
+    public void a_candidate_winning_every_game_is_accepted_early() {
+        SprtResult result = new SprtResult(0, 50, 0.05, 0.05);
+        while (result.getDecision() == SprtResult.Decision.UNDECIDED && result.getPairs() < 1000) {
+            result.recordPair(new SimulationResult(), 2);
+        }
+        assertEquals(SprtResult.Decision.BETTER, result.getDecision());
+        assertTrue(result.getPairs() < 20);
+    }
+
+    @Test
+    public void drawn_pairs_do_not_accept_the_candidate() {
+        SprtResult result = new SprtResult(0, 50, 0.05, 0.05);
+        while (result.getDecision() == SprtResult.Decision.UNDECIDED && result.getPairs() < 1000) {
+            result.recordPair(new SimulationResult(), 1);
+        }
+        assertEquals(SprtResult.Decision.NOT_BETTER, result.getDecision());
+    }
+}
@@ -0,0 +1,322 @@
+package xyz.robbie.tabula;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TdTrainer trains a NeuralEvaluator by playing it against itself and learning with TD(lambda) (Sutton, 1988), as in
+ * TD-Gammon (Tesauro, 1995).
+ *
+ * Each turn the colour to move plays the turn that leaves the other colour the lowest chance of winning according to
+ * the network. After every turn the network's estimate that the first colour wins is moved towards its estimate for the
+ * next position, and at the end of the game towards the result, with each step also applied to earlier positions in
+ * proportion to lambda to the power of how many turns ago they were (the eligibility traces).
+ *
+ * Games are played on several threads at once which all update the same weights without locking (as in Hogwild!,
+ * Recht et al., 2011). A game only updates the hidden weights of the inputs which have been active at some point in
+ * it, since the traces of the others are 0, but these soon include most of the common inputs, and every turn of every
+ * game updates all of the output weights. So the threads do race on the same weights, and some updates are lost when
+ * two threads write one weight at once. Each update is a small step, so the lost ones make little difference, and in
+ * exchange the threads never wait for each other. Each thread has its own traces, board and random numbers.
+ *
+ * The weights are saved to a checkpoint file every so many games, and once more at the end. A checkpoint is taken while
+ * the other threads carry on training, so it may mix weights from either side of a few updates.
+ */
+public class TdTrainer {
+
+    public static final double DEFAULT_ALPHA = 0.1;
+
+    public static final double DEFAULT_LAMBDA = 0.7;
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private final NeuralEvaluator network;
+    private final float alpha;
+    private final float lambda;
+
+    /* The number of games trained, including those in earlier runs */
+    private final AtomicLong gamesTrained;
+
+    private final Object checkpointLock = new Object();
+
+    /* The number of games trained when the weights were last saved, so the last checkpoint is not saved twice */
+    private long gamesSaved = -1;
+
+    /**
+     * @param network the network to train
+     */
+    public TdTrainer(NeuralEvaluator network) {
+        this(network, DEFAULT_ALPHA, DEFAULT_LAMBDA);
+    }
+
+    /**
+     * @param network the network to train
+     * @param alpha the learning rate
+     * @param lambda how much of each update is passed back to earlier positions, from 0 (none) to 1 (all)
+     */
+    public TdTrainer(NeuralEvaluator network, double alpha, double lambda) {
+        if (alpha <= 0) {
+            throw new IllegalArgumentException("The learning rate must be more than 0.");
+        }
+        if (lambda < 0 || lambda > 1) {
+            throw new IllegalArgumentException("Lambda must be from 0 to 1.");
+        }
+        this.network = network;
+        this.alpha = (float) alpha;
+        this.lambda = (float) lambda;
+        this.gamesTrained = new AtomicLong(network.getGamesTrained());
+    }
+
+    public NeuralEvaluator getNetwork() {
+        return network;
+    }
+
+    /**
+     * Train the network for a number of games
+     *
+     * @param numberOfGames the number of games to play
+     * @param threads the number of threads to play them on
+     * @param seed the seed for the dice
+     * @param checkpoint the file to save the weights to, or null not to save them
+     * @param checkpointInterval the number of games between checkpoints
+     *
+     * @throws IOException if a checkpoint cannot be saved, in which case training stops
+     */
+    public void train(int numberOfGames, int threads, long seed, final Path checkpoint, final int checkpointInterval) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Training needs at least 1 thread.");
+        }
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("The checkpoint interval must be at least 1 game.");
+        }
+        final RandomStreams streams = new RandomStreams(seed);
+        final long firstGame = gamesTrained.get();
+        final long lastGame = firstGame + numberOfGames;
+        final AtomicLong nextGame = new AtomicLong(firstGame);
+
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Callable<Void>() {
+                public Void call() throws IOException {
+                    SelfPlay selfPlay = new SelfPlay();
+                    for (long game = nextGame.getAndIncrement(); game < lastGame; game = nextGame.getAndIncrement()) {
+                        selfPlay.playGame(streams.forGame(game));
+                        long trained = gamesTrained.incrementAndGet();
+                        if (checkpoint != null && trained % checkpointInterval == 0) {
+                            save(checkpoint);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> worker : executor.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("A training game failed.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        network.setGamesTrained(gamesTrained.get());
+        if (checkpoint != null) {
+            save(checkpoint);
+        }
+    }
+
+    private void save(Path checkpoint) throws IOException {
+        synchronized (checkpointLock) {
+            long games = gamesTrained.get();
+            if (games == gamesSaved) {
+                return;
+            }
+            network.setGamesTrained(games);
+            network.save(checkpoint);
+            gamesSaved = games;
+        }
+    }
+
+    /**
+     * SelfPlay plays training games on one thread, reusing its board, buffers and traces for every game
+     */
+    private final class SelfPlay {
+        private final PackedBoard board = new PackedBoard(false);
+        private final PackedBoard start = new PackedBoard(true);
+        private final TurnGenerator generator = new TurnGenerator();
+        private final int[] undos = new int[EncodedTurn.MAX_MOVES];
+        private final NeuralEvaluator.Activations activations = new NeuralEvaluator.Activations(network.getHiddenUnits());
+        private final float[] hiddenTrace = new float[network.hiddenWeights.length];
+        private final float[] outputTrace = new float[network.outputWeights.length];
+        private final Colour firstColour = Colour.values()[0];
+
+        /* The inputs (including the bias) which have been active in this game, whose rows of hiddenTrace are the only
+           ones which are not 0 */
+        private final boolean[] active = new boolean[NeuralEvaluator.INPUTS + 1];
+        private final int[] activeInputs = new int[NeuralEvaluator.INPUTS + 1];
+        private int numberOfActiveInputs;
+
+        void playGame(SplittableRandom random) {
+            board.copyPiecesFrom(start);
+            int hiddenUnits = network.getHiddenUnits();
+            for (int k = 0; k < numberOfActiveInputs; k++) {
+                int row = activeInputs[k] * hiddenUnits;
+                Arrays.fill(hiddenTrace, row, row + hiddenUnits, 0);
+                active[activeInputs[k]] = false;
+            }
+            numberOfActiveInputs = 0;
+            Arrays.fill(outputTrace, 0);
+            Colour toMove = firstColour;
+            float estimate = evaluate(toMove);
+            addToTraces(toMove);
+
+            for (int turns = 0; turns < Simulation.MAX_TURNS; turns++) {
+                DiceRoll roll = DiceRoll.of(random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1, random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1);
+                makeTurn(toMove, bestTurn(toMove, roll));
+                if (board.isWinner(toMove)) {
+                    update(((toMove == firstColour) ? 1 : 0) - estimate);
+                    return;
+                }
+                toMove = toMove.otherColour();
+                float next = evaluate(toMove);
+                update(next - estimate);
+                addToTraces(toMove);
+                estimate = next;
+            }
+        }
+
+        /* The network's estimate that the first colour wins, leaving the activations for addToTraces() */
+        private float evaluate(Colour toMove) {
+            NeuralEvaluator.encode(board, toMove, activations);
+            float output = network.forward(activations);
+            return (toMove == firstColour) ? output : 1 - output;
+        }
+
+        /* Decay the traces and add the gradient of the estimate from the last evaluate() */
+        private void addToTraces(Colour toMove) {
+            int hiddenUnits = network.getHiddenUnits();
+            for (int k = 0; k < numberOfActiveInputs; k++) {
+                int row = activeInputs[k] * hiddenUnits;
+                for (int h = row; h < row + hiddenUnits; h++) {
+                    hiddenTrace[h] *= lambda;
+                }
+            }
+            for (int i = 0; i < outputTrace.length; i++) {
+                outputTrace[i] *= lambda;
+            }
+            network.addGradient(activations, (toMove == firstColour) ? 1 : -1, hiddenTrace, outputTrace);
+            for (int k = 0; k < activations.numberOfInputs; k++) {
+                int input = activations.inputIndexes[k];
+                if (!active[input]) {
+                    active[input] = true;
+                    activeInputs[numberOfActiveInputs++] = input;
+                }
+            }
+        }
+
+        /* Step the weights of the active inputs and the output weights along their traces */
+        private void update(float error) {
+            float step = alpha * error;
+            int hiddenUnits = network.getHiddenUnits();
+            float[] hiddenWeights = network.hiddenWeights;
+            for (int k = 0; k < numberOfActiveInputs; k++) {
+                int row = activeInputs[k] * hiddenUnits;
+                for (int h = row; h < row + hiddenUnits; h++) {
+                    hiddenWeights[h] += step * hiddenTrace[h];
+                }
+            }
+            float[] outputWeights = network.outputWeights;
+            for (int i = 0; i < outputWeights.length; i++) {
+                outputWeights[i] += step * outputTrace[i];
+            }
+        }
+
+        /* The turn which leaves the other colour the lowest chance of winning, or which wins outright */
+        private int bestTurn(Colour toMove, DiceRoll roll) {
+            int numberOfTurns = generator.generateTurns(board, toMove, roll);
+            int best = generator.getTurn(0);
+            if (numberOfTurns == 1) {
+                return best;
+            }
+            double bestValue = Double.MAX_VALUE;
+            for (int i = 0; i < numberOfTurns; i++) {
+                int numberOfMoves = makeTurn(toMove, generator.getTurn(i));
+                double value = board.isWinner(toMove) ? -1 : network.winProbability(board, toMove.otherColour());
+                EncodedTurn.unmakeTurn(board, undos, 0, numberOfMoves);
+                if (value < bestValue) {
+                    best = generator.getTurn(i);
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        private int makeTurn(Colour toMove, int turn) {
+            try {
+                return EncodedTurn.makeTurn(board, toMove, turn, undos, 0);
+            } catch (IllegalMoveException e) {
+                // Should never happen as the turn generator only generates legal turns
+                e.printStackTrace();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Train a network from the command line, carrying on from the weights file if it exists
+     *
+     * @param args the weights file, the number of games, and optionally the number of threads and of hidden units
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: TdTrainer <weights file> <games> [threads] [hidden units]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int games = Integer.parseInt(args[1]);
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int hiddenUnits = (args.length > 3) ? Integer.parseInt(args[3]) : NeuralEvaluator.DEFAULT_HIDDEN_UNITS;
+        try {
+            NeuralEvaluator network;
+            if (Files.exists(file)) {
+                network = NeuralEvaluator.load(file);
+                System.out.println("Carrying on from " + network.getGamesTrained() + " games with " + network.getHiddenUnits() + " hidden units.");
+            } else {
+                network = new NeuralEvaluator(hiddenUnits, System.nanoTime());
+            }
+            TdTrainer trainer = new TdTrainer(network);
+            int interval = DEFAULT_CHECKPOINT_INTERVAL;
+            for (int done = 0; done < games; done += interval) {
+                long start = System.nanoTime();
+                int batch = Math.min(interval, games - done);
+                trainer.train(batch, threads, System.nanoTime(), file, interval);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(network.getGamesTrained() + " games trained (" + String.format("%.1f", batch / seconds) + " games/s)");
+            }
+        } catch (IOException e) {
+            System.out.println("There was an error reading or writing the weights file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package xyz.robbie.tabula;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tournament plays a round robin between a number of players, every player against every other, and rates them with
+ * Elo ratings (see TournamentResult). It replaces running each pairing by hand through the Game menu.
+ *
+ * The games of each pairing are split into blocks which are played on a fixed pool of threads, the blocks of all the
+ * pairings interleaved so that early ratings cover every player. Each block makes its own players, so players do not
+ * need to be thread-safe. Within a block the players swap colours every game, and each pair of games uses the same
+ * dice, as in Simulation.runPaired(), so the luck of the dice mostly cancels out.
+ *
+ * As each block finishes the listener is told and the result is saved to the checkpoint file, if there is one. Running
+ * a tournament again with the same checkpoint carries on from the blocks already played, so a long tournament can be
+ * stopped and restarted. The dice of every game depend only on the seed, so a resumed tournament plays the same
+ * games as one which was never stopped.
+ */
+public class Tournament {
+
+    /* Games in each block, which is even so that every pair of games with the same dice is in one block */
+    public static final int BLOCK_SIZE = 10;
+
+    private final String[] names;
+    private final List<Supplier<PlayerInterface>> factories;
+
+    /**
+     * @param players the name of each player and a factory which makes it, in the order they should be listed
+     */
+    public Tournament(LinkedHashMap<String, Supplier<PlayerInterface>> players) {
+        if (players.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least 2 players.");
+        }
+        this.names = players.keySet().toArray(new String[0]);
+        this.factories = new ArrayList<Supplier<PlayerInterface>>(players.values());
+    }
+
+    /**
+     * @param typesOfPlayer computer player types as used in saved games, such as "computer" or "expectiminimax"
+     * @return a tournament between those types, with a number added to the names of types given more than once
+     */
+    public static Tournament ofTypes(String... typesOfPlayer) {
+        LinkedHashMap<String, Supplier<PlayerInterface>> players = new LinkedHashMap<String, Supplier<PlayerInterface>>();
+        for (final String type : typesOfPlayer) {
+            if (!Game.isComputerType(type)) {
+                throw new IllegalArgumentException("Unknown or non-computer player type '" + type + "'.");
+            }
+            String name = type;
+            for (int copy = 2; players.containsKey(name); copy++) {
+                name = type + "#" + copy;
+            }
+            players.put(name, new Supplier<PlayerInterface>() {
+                public PlayerInterface get() {
+                    return Game.playerOfType(type);
+                }
+            });
+        }
+        return new Tournament(players);
+    }
+
+    /**
+     * Play the tournament, or the part of it not already recorded in the checkpoint
+     *
+     * @param gamesPerPairing the number of games between each pair of players
+     * @param threads the number of threads to play on
+     * @param seed the seed for the dice
+     * @param checkpoint the file to save progress to and resume from, or null for none
+     * @param listener told about the result after each block finishes, on the thread which called run(), or null
+     * @return the results
+     *
+     * @throws IOException when the checkpoint cannot be read or written, or is for a different tournament
+     */
+    public TournamentResult run(int gamesPerPairing, int threads, long seed, Path checkpoint, Consumer<TournamentResult> listener) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A tournament needs at least 1 thread.");
+        }
+        int blocksPerPairing = (gamesPerPairing + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        TournamentResult result = new TournamentResult(names, seed, gamesPerPairing, blocksPerPairing);
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            TournamentResult saved = load(checkpoint);
+            if (!saved.sameTournamentAs(result)) {
+                throw new IOException("The checkpoint '" + checkpoint + "' is for a different tournament.");
+            }
+            result = saved;
+        }
+
+        long start = System.nanoTime();
+        int[][] pairings = pairings(names.length);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<int[]> completed = new ExecutorCompletionService<int[]>(executor);
+        int submitted = 0;
+        try {
+            /* Block b of every pairing before block b + 1 of any */
+            for (int block = 0; block < blocksPerPairing; block++) {
+                for (int pairing = 0; pairing < pairings.length; pairing++) {
+                    final int index = pairing * blocksPerPairing + block;
+                    if (!result.isBlockCompleted(index)) {
+                        final int first = pairings[pairing][0];
+                        final int second = pairings[pairing][1];
+                        final int firstGame = block * BLOCK_SIZE;
+                        final int lastGame = Math.min(gamesPerPairing, (block + 1) * BLOCK_SIZE);
+                        final long firstSequence = (long) pairing * ((gamesPerPairing + 1) / 2);
+                        final long blockSeed = seed;
+                        completed.submit(new Callable<int[]>() {
+                            public int[] call() {
+                                return playBlock(index, first, second, firstGame, lastGame, firstSequence, blockSeed);
+                            }
+                        });
+                        submitted++;
+                    }
+                }
+            }
+
+            for (int i = 0; i < submitted; i++) {
+                int[] block = completed.take().get();
+                result.recordBlock(block[0], block[1], block[2], block[3], block[4], block[5]);
+                result.setElapsedNanos(System.nanoTime() - start);
+                if (checkpoint != null) {
+                    save(result, checkpoint);
+                }
+                if (listener != null) {
+                    listener.accept(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A tournament game failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /* Every pair of players, each as {first, second} with first < second */
+    private static int[][] pairings(int numberOfPlayers) {
+        int[][] pairings = new int[TournamentResult.numberOfPairings(numberOfPlayers)][];
+        int pairing = 0;
+        for (int i = 0; i < numberOfPlayers; i++) {
+            for (int j = i + 1; j < numberOfPlayers; j++) {
+                pairings[pairing++] = new int[]{i, j};
+            }
+        }
+        return pairings;
+    }
+
+    /**
+     * Play one block of games between two players. Games 2k and 2k + 1 of the pairing both use the dice stream for
+     * firstSequence + k, with the players on opposite colours.
+     *
+     * @return {block, first, second, games first won, games second won, games unfinished}
+     */
+    private int[] playBlock(int block, int first, int second, int firstGame, int lastGame, long firstSequence, long seed) {
+        RandomStreams streams = new RandomStreams(seed);
+        PlayerInterface[] players = {factories.get(first).get(), factories.get(second).get()};
+        SimulationResult games = new SimulationResult();
+        try {
+            for (int game = firstGame; game < lastGame; game++) {
+                Colour firstPlayerColour = Colour.values()[game % 2];
+                PlayerInterface green = (firstPlayerColour == Colour.values()[0]) ? players[0] : players[1];
+                PlayerInterface blue = (green == players[0]) ? players[1] : players[0];
+                Simulation.playGame(green, blue, new Dice(streams.forGame(firstSequence + game / 2)), firstPlayerColour, games);
+            }
+        } finally {
+            Simulation.closePlayers(players);
+        }
+        return new int[]{block, first, second, games.getWinsForPlayer(0), games.getWinsForPlayer(1), games.getUnfinished()};
+    }
+
+    /* Write the result to a temporary file and move it over the checkpoint, so a crash never leaves half a checkpoint */
+    private static void save(TournamentResult result, Path checkpoint) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.write(temporary, gson.toJson(result).getBytes());
+        try {
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static TournamentResult load(Path checkpoint) throws IOException {
+        try {
+            TournamentResult result = new Gson().fromJson(new String(Files.readAllBytes(checkpoint)), TournamentResult.class);
+            if (result == null) {
+                throw new IOException("The checkpoint '" + checkpoint + "' is empty.");
+            }
+            return result;
+        } catch (JsonParseException e) {
+            throw new IOException("The checkpoint '" + checkpoint + "' is not in the correct format.");
+        }
+    }
+
+    /**
+     * Play a tournament from the command line, printing progress and the final table
+     *
+     * @param args the checkpoint file (or "-" for none), the games per pairing, the number of threads, the seed and
+     *             then two or more player types
+     */
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.out.println("Usage: Tournament <checkpoint file or -> <games per pairing> <threads> <seed> <player type> <player type> [more player types]");
+            return;
+        }
+        Path checkpoint = args[0].equals("-") ? null : Paths.get(args[0]);
+        int gamesPerPairing = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        String[] types = new String[args.length - 4];
+        System.arraycopy(args, 4, types, 0, types.length);
+
+        Tournament tournament;
+        try {
+            tournament = ofTypes(types);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + " Try computer, expectiminimax or montecarlo.");
+            return;
+        }
+
+        try {
+            TournamentResult result = tournament.run(gamesPerPairing, threads, seed, checkpoint, new Consumer<TournamentResult>() {
+                public void accept(TournamentResult progress) {
+                    /* A line for each block, and the whole table about every tenth of the way */
+                    int completed = progress.getCompletedBlocks();
+                    System.out.println("Played " + completed + " of " + progress.getTotalBlocks() + " blocks");
+                    if (!progress.isFinished() && completed % Math.max(1, progress.getTotalBlocks() / 10) == 0) {
+                        System.out.println(progress);
+                    }
+                }
+            });
+            System.out.println(result);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
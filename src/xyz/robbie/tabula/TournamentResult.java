@@ -0,0 +1,337 @@
+package xyz.robbie.tabula;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * TournamentResult holds the results of a round-robin Tournament so far: for every pair of players, how many games
+ * each won and how many did not finish, and which blocks of games have been played. It is also what Tournament saves
+ * as its checkpoint, so everything except the timing is kept in plain arrays which Gson can write and read back.
+ *
+ * Ratings are Elo ratings fitted to all the games at once with the Bradley-Terry model, rather than updated game by
+ * game, so they do not depend on the order in which games finished. Unfinished games count as half a win for each.
+ */
+public class TournamentResult {
+
+    /* Virtual drawn games added to every pairing, which keeps ratings finite when one player wins every game */
+    public static final double PRIOR_DRAWS = 1.0;
+
+    /* Elo points for a factor of e in Bradley-Terry strength */
+    private static final double ELO_PER_NATURAL_UNIT = 400 / Math.log(10);
+
+    /* Standard normal quantile for a 95% confidence interval */
+    private static final double Z_95 = 1.96;
+
+    private static final int MAX_ITERATIONS = 10000;
+    private static final double TOLERANCE = 1e-10;
+
+    private final String[] players;
+    private final long seed;
+    private final int gamesPerPairing;
+    private final int blocksPerPairing;
+
+    /* wins[i][j] is the number of games player i won against player j */
+    private final int[][] wins;
+
+    /* unfinished[i][j] and unfinished[j][i] are both the number of games between i and j without a winner */
+    private final int[][] unfinished;
+
+    private final boolean[] completedBlocks;
+
+    private transient long elapsedNanos;
+
+    TournamentResult(String[] players, long seed, int gamesPerPairing, int blocksPerPairing) {
+        this.players = Arrays.copyOf(players, players.length);
+        this.seed = seed;
+        this.gamesPerPairing = gamesPerPairing;
+        this.blocksPerPairing = blocksPerPairing;
+        this.wins = new int[players.length][players.length];
+        this.unfinished = new int[players.length][players.length];
+        this.completedBlocks = new boolean[numberOfPairings(players.length) * blocksPerPairing];
+    }
+
+    /**
+     * @param numberOfPlayers the number of players in a round robin
+     * @return the number of pairs of players
+     */
+    static int numberOfPairings(int numberOfPlayers) {
+        return numberOfPlayers * (numberOfPlayers - 1) / 2;
+    }
+
+    /**
+     * @return true if and only if this result is for the same players, seed and games as another, so one can carry on from the other
+     */
+    boolean sameTournamentAs(TournamentResult other) {
+        return Arrays.equals(players, other.players) && seed == other.seed && gamesPerPairing == other.gamesPerPairing
+                && blocksPerPairing == other.blocksPerPairing && completedBlocks != null
+                && completedBlocks.length == other.completedBlocks.length;
+    }
+
+    /**
+     * Record a finished block of games between two players
+     */
+    void recordBlock(int block, int first, int second, int firstWins, int secondWins, int gamesUnfinished) {
+        wins[first][second] += firstWins;
+        wins[second][first] += secondWins;
+        unfinished[first][second] += gamesUnfinished;
+        unfinished[second][first] += gamesUnfinished;
+        completedBlocks[block] = true;
+    }
+
+    boolean isBlockCompleted(int block) {
+        return completedBlocks[block];
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getNumberOfPlayers() {
+        return players.length;
+    }
+
+    public String getPlayer(int player) {
+        return players[player];
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getGamesPerPairing() {
+        return gamesPerPairing;
+    }
+
+    /**
+     * @return the number of blocks of games which have been played
+     */
+    public int getCompletedBlocks() {
+        int count = 0;
+        for (boolean completed : completedBlocks) {
+            if (completed) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getTotalBlocks() {
+        return completedBlocks.length;
+    }
+
+    public boolean isFinished() {
+        return getCompletedBlocks() == getTotalBlocks();
+    }
+
+    /**
+     * @return the number of games player won against opponent
+     */
+    public int getWins(int player, int opponent) {
+        return wins[player][opponent];
+    }
+
+    /**
+     * @return the number of games between the two players which did not finish
+     */
+    public int getUnfinished(int player, int opponent) {
+        return unfinished[player][opponent];
+    }
+
+    /**
+     * @return the number of games played between the two players
+     */
+    public int getGames(int player, int opponent) {
+        return wins[player][opponent] + wins[opponent][player] + unfinished[player][opponent];
+    }
+
+    /**
+     * @return the number of games played in the whole tournament
+     */
+    public int getGames() {
+        int games = 0;
+        for (int i = 0; i < players.length; i++) {
+            for (int j = i + 1; j < players.length; j++) {
+                games += getGames(i, j);
+            }
+        }
+        return games;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Fit Bradley-Terry strengths to the results with the minorisation-maximisation algorithm (Hunter, 2004) and
+     * convert them to Elo ratings which average 0
+     *
+     * @return the rating of each player
+     */
+    public double[] getRatings() {
+        int n = players.length;
+        double[] strength = new double[n];
+        Arrays.fill(strength, 1.0);
+        if (n < 2) {
+            return new double[n];
+        }
+
+        double[] score = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    score[i] += wins[i][j] + (unfinished[i][j] + PRIOR_DRAWS) / 2;
+                }
+            }
+        }
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double[] next = new double[n];
+            double logSum = 0;
+            for (int i = 0; i < n; i++) {
+                double denominator = 0;
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        denominator += (getGames(i, j) + PRIOR_DRAWS) / (strength[i] + strength[j]);
+                    }
+                }
+                next[i] = score[i] / denominator;
+                logSum += Math.log(next[i]);
+            }
+
+            /* Scale so the geometric mean is 1, that is the ratings average 0 */
+            double scale = Math.exp(-logSum / n);
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                next[i] *= scale;
+                change = Math.max(change, Math.abs(Math.log(next[i] / strength[i])));
+            }
+            strength = next;
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = ELO_PER_NATURAL_UNIT * Math.log(strength[i]);
+        }
+        return ratings;
+    }
+
+    /**
+     * The half-width of a 95% confidence interval for each rating, from the inverse of the Fisher information of the
+     * Bradley-Terry model at the fitted ratings, with the ratings constrained to average 0
+     *
+     * @param ratings the ratings from getRatings()
+     * @return the error margin of each rating in Elo points
+     */
+    public double[] getErrorMargins(double[] ratings) {
+        int n = players.length;
+        double[] margins = new double[n];
+        if (n < 2) {
+            return margins;
+        }
+
+        /* The information matrix is a weighted graph Laplacian, whose pseudo-inverse is inverse(L + J/n) - J/n */
+        double[][] information = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    double p = 1 / (1 + Math.exp((ratings[j] - ratings[i]) / ELO_PER_NATURAL_UNIT));
+                    double weight = (getGames(i, j) + PRIOR_DRAWS) * p * (1 - p);
+                    information[i][j] -= weight;
+                    information[i][i] += weight;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                information[i][j] += 1.0 / n;
+            }
+        }
+
+        double[][] covariance = invert(information);
+        for (int i = 0; i < n; i++) {
+            margins[i] = Z_95 * ELO_PER_NATURAL_UNIT * Math.sqrt(Math.max(0, covariance[i][i] - 1.0 / n));
+        }
+        return margins;
+    }
+
+    /* Invert a symmetric positive definite matrix by Gauss-Jordan elimination */
+    private static double[][] invert(double[][] matrix) {
+        int n = matrix.length;
+        double[][] a = new double[n][2 * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(matrix[i], 0, a[i], 0, n);
+            a[i][n + i] = 1;
+        }
+        for (int column = 0; column < n; column++) {
+            double pivot = a[column][column];
+            for (int k = 0; k < 2 * n; k++) {
+                a[column][k] /= pivot;
+            }
+            for (int row = 0; row < n; row++) {
+                if (row != column) {
+                    double factor = a[row][column];
+                    for (int k = 0; k < 2 * n; k++) {
+                        a[row][k] -= factor * a[column][k];
+                    }
+                }
+            }
+        }
+        double[][] inverse = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(a[i], n, inverse[i], 0, n);
+        }
+        return inverse;
+    }
+
+    public String toString() {
+        int n = players.length;
+        double[] ratings = getRatings();
+        double[] margins = getErrorMargins(ratings);
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        final double[] sortBy = ratings;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(sortBy[b], sortBy[a]);
+            }
+        });
+
+        int width = 6;
+        for (String player : players) {
+            width = Math.max(width, player.length());
+        }
+
+        StringBuilder s = new StringBuilder();
+        s.append(getGames()).append(" games, ").append(getCompletedBlocks()).append(" of ").append(getTotalBlocks())
+                .append(" blocks played\n");
+        s.append(String.format("%-" + width + "s %7s %6s %7s %6s", "Player", "Elo", "+/-", "Games", "Score"));
+        for (int column : order) {
+            s.append(String.format(" %" + Math.max(6, players[column].length()) + "s", players[column]));
+        }
+        s.append('\n');
+        for (int row : order) {
+            double points = 0;
+            int games = 0;
+            for (int j = 0; j < n; j++) {
+                if (j != row) {
+                    points += wins[row][j] + unfinished[row][j] / 2.0;
+                    games += getGames(row, j);
+                }
+            }
+            s.append(String.format("%-" + width + "s %7.1f %6.1f %7d %5.1f%%", players[row], ratings[row], margins[row],
+                    games, (games == 0) ? 0 : 100 * points / games));
+            for (int column : order) {
+                String cell = (row == column) ? "-" : wins[row][column] + "-" + wins[column][row];
+                s.append(String.format(" %" + Math.max(6, players[column].length()) + "s", cell));
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+}
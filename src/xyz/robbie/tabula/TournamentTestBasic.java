@@ -0,0 +1,79 @@
+package xyz.robbie.tabula;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TournamentTestBasic {
+
+    @Test
+    public void every_pairing_plays_its_games() throws Exception {
+        TournamentResult result = Tournament.ofTypes("computer", "computer", "computer").run(12, 2, 3, null, null);
+        assertTrue(result.isFinished());
+        assertEquals(36, result.getGames());
+        assertEquals(12, result.getGames(0, 2));
+        assertEquals("computer#3", result.getPlayer(2));
+
+        double total = 0;
+        for (double rating : result.getRatings()) {
+            total += rating;
+        }
+        assertEquals(0, total, 1e-6);
+    }
+
+    @Test
+    public void ratings_follow_results() {
+        TournamentResult result = new TournamentResult(new String[]{"a", "b"}, 0, 100, 10);
+        result.recordBlock(0, 0, 1, 75, 25, 0);
+        double[] ratings = result.getRatings();
+        double[] margins = result.getErrorMargins(ratings);
+        /* 75% is 191 Elo apart, a little less with the virtual draw */
+        assertEquals(185, ratings[0] - ratings[1], 5);
+        assertEquals(-ratings[0], ratings[1], 1e-9);
+        assertTrue(margins[0] > 20 && margins[0] < 100);
+    }
+
+    @Test
+    public void resumes_from_checkpoint() throws Exception {
+        Path checkpoint = Files.createTempFile("tournament", ".json");
+        Files.delete(checkpoint);
+        try {
+            Tournament tournament = Tournament.ofTypes("computer", "computer");
+            TournamentResult first = tournament.run(20, 1, 8, checkpoint, null);
+            assertTrue(Files.exists(checkpoint));
+
+            final int[] blocksPlayed = new int[1];
+            TournamentResult resumed = tournament.run(20, 1, 8, checkpoint, new Consumer<TournamentResult>() {
+                public void accept(TournamentResult progress) {
+                    blocksPlayed[0]++;
+                }
+            });
+            assertEquals(0, blocksPlayed[0]);
+            assertEquals(first.getWins(0, 1), resumed.getWins(0, 1));
+            assertEquals(first.getWins(1, 0), resumed.getWins(1, 0));
+
+            boolean refused = false;
+            try {
+                tournament.run(30, 1, 8, checkpoint, null);
+            } catch (IOException e) {
+                refused = true;
+            }
+            assertTrue(refused);
+            assertFalse(Files.exists(checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp")));
+        } finally {
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void human_players_cannot_enter() {
+        Tournament.ofTypes("computer", "human");
+    }
+}
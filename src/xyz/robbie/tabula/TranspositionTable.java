@@ -0,0 +1,178 @@
+package xyz.robbie.tabula;
+
+/**
+ * TranspositionTable is a fixed-size cache of search results keyed by 64-bit position hashes (see ZobristKeys).
+ *
+ * The table is a single long[] split into buckets of two entries. The first entry of a bucket is depth-preferred and
+ * is only replaced by a result searched at least as deeply, and the second is always replaced, so that deep results
+ * survive while recent shallow ones still get cached. Each entry is two longs: the packed data and the key exclusive
+ * or'ed with the data, so that an entry torn by two threads writing at once fails the key check instead of being
+ * believed.
+ *
+ * The packed data holds the best turn (see EncodedTurn) in bits 0-31, the value rounded to 24 bits in bits 32-55,
+ * the depth in bits 56-61 and the bound type in bits 62-63. A bound type of 0 means there is no entry, so probe()
+ * returns 0 on a miss. The static methods below unpack the data.
+ *
+ * The hit, miss and replacement counters are not synchronised, so they are only approximate when the table is
+ * shared between threads.
+ */
+public final class TranspositionTable {
+
+    /* The stored value is exactly the value of the position */
+    public static final int EXACT = 1;
+
+    /* The value of the position is at least the stored value */
+    public static final int LOWER_BOUND = 2;
+
+    /* The value of the position is at most the stored value */
+    public static final int UPPER_BOUND = 3;
+
+    public static final int MAX_DEPTH = 63;
+
+    public static final int BYTES_PER_BUCKET = 4 * Long.BYTES;
+
+    /* The largest power of two number of buckets that still fits in one Java array */
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private static final int VALUE_SHIFT = 32;
+    private static final int VALUE_BITS = 24;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final double VALUE_SCALE = ((1 << (VALUE_BITS - 1)) - 1) / PositionEvaluator.WIN;
+    private static final int DEPTH_SHIFT = VALUE_SHIFT + VALUE_BITS;
+    private static final int DEPTH_MASK = MAX_DEPTH;
+    private static final int BOUND_SHIFT = 62;
+
+    private final long[] entries;
+    private final int bucketMask;
+
+    private long hits;
+    private long misses;
+    private long stores;
+    private long replacements;
+
+    /**
+     * @param maximumBytes the most memory the table may use, which is rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(long maximumBytes) {
+        if (maximumBytes < BYTES_PER_BUCKET) {
+            throw new IllegalArgumentException("A transposition table needs at least " + BYTES_PER_BUCKET + " bytes.");
+        }
+        long buckets = Long.highestOneBit(Math.min(maximumBytes / BYTES_PER_BUCKET, MAX_BUCKETS));
+        entries = new long[(int) buckets * 4];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Look up a position
+     *
+     * @param key the hash of the position
+     * @return the packed data stored for the position, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = (int) key & bucketMask;
+        for (int i = index * 4; i < index * 4 + 4; i += 2) {
+            long data = entries[i];
+            if (data != 0 && (entries[i + 1] ^ data) == key) {
+                hits++;
+                return data;
+            }
+        }
+        misses++;
+        return 0;
+    }
+
+    /**
+     * Store the result of searching a position
+     *
+     * @param key the hash of the position
+     * @param depth the number of plies searched, which is capped at MAX_DEPTH
+     * @param value the value found, between -PositionEvaluator.WIN and PositionEvaluator.WIN
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param turn the best turn found, or EncodedTurn.EMPTY if there is none
+     */
+    public void store(long key, int depth, double value, int bound, int turn) {
+        depth = Math.min(depth, MAX_DEPTH);
+        long data = (turn & 0xFFFFFFFFL)
+                | ((Math.round(value * VALUE_SCALE) & VALUE_MASK) << VALUE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT);
+
+        int index = ((int) key & bucketMask) * 4;
+        long preferredData = entries[index];
+        boolean samePosition = (entries[index + 1] ^ preferredData) == key;
+        if (preferredData == 0 || samePosition || depth >= depth(preferredData)) {
+            if (preferredData != 0 && !samePosition) {
+                replacements++;
+            }
+        } else {
+            index += 2;
+            if (entries[index] != 0 && (entries[index + 1] ^ entries[index]) != key) {
+                replacements++;
+            }
+        }
+        entries[index] = data;
+        entries[index + 1] = key ^ data;
+        stores++;
+    }
+
+    /**
+     * Empty the table and reset its counters
+     */
+    public void clear() {
+        java.util.Arrays.fill(entries, 0);
+        hits = 0;
+        misses = 0;
+        stores = 0;
+        replacements = 0;
+    }
+
+    /**
+     * @return the number of entries the table can hold
+     */
+    public int getCapacity() {
+        return entries.length / 2;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    /**
+     * @return the number of stores which overwrote an entry for a different position
+     */
+    public long getReplacements() {
+        return replacements;
+    }
+
+    public static double value(long data) {
+        /* Shift the 24 bit value to the top of the long and back to sign extend it */
+        return (data << (64 - DEPTH_SHIFT) >> (64 - VALUE_BITS)) / VALUE_SCALE;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /**
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT);
+    }
+
+    public static int turn(long data) {
+        return (int) data;
+    }
+
+    public String toString() {
+        return "capacity " + getCapacity() + ", hits " + hits + ", misses " + misses + ", stores " + stores + ", replacements " + replacements;
+    }
+}
@@ -0,0 +1,52 @@
+package xyz.robbie.tabula;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranspositionTableTestBasic {
+
+    private TranspositionTable table;
+
+    @Before
+    public void setUp()
+    {
+        table = new TranspositionTable(1 << 10);
+    }
+
+    @Test
+    public void memory_cap_is_respected() {
+        assertEquals(64, table.getCapacity());
+        assertEquals(64, new TranspositionTable((1 << 10) + 100).getCapacity());
+        assertEquals(2, new TranspositionTable(TranspositionTable.BYTES_PER_BUCKET).getCapacity());
+    }
+
+    @Test
+    public void stored_entries_round_trip() {
+        int turn = EncodedTurn.withMove(EncodedTurn.withMove(EncodedTurn.EMPTY, 0, EncodedMove.of(0, 6)), 1, EncodedMove.of(0, 6));
+        table.store(12345L, 3, -0.375, TranspositionTable.LOWER_BOUND, turn);
+        long entry = table.probe(12345L);
+        assertEquals(3, TranspositionTable.depth(entry));
+        assertEquals(-0.375, TranspositionTable.value(entry), 1e-6);
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry));
+        assertEquals(turn, TranspositionTable.turn(entry));
+        assertEquals(0L, table.probe(12345L + 64 * 1024));
+        assertEquals(1L, table.getHits());
+        assertEquals(1L, table.getMisses());
+    }
+
+    @Test
+    public void deep_entries_are_kept() {
+        long deep = 7;
+        long shallow = deep + table.getCapacity() / 2;   // Same bucket
+        long newest = shallow + table.getCapacity() / 2; // Same bucket again
+        table.store(deep, 4, 0.5, TranspositionTable.EXACT, EncodedTurn.EMPTY);
+        table.store(shallow, 1, 0.25, TranspositionTable.EXACT, EncodedTurn.EMPTY);
+        table.store(newest, 1, 0.125, TranspositionTable.EXACT, EncodedTurn.EMPTY);
+        assertEquals(0.5, TranspositionTable.value(table.probe(deep)), 1e-6);
+        assertEquals(0L, table.probe(shallow));
+        assertEquals(0.125, TranspositionTable.value(table.probe(newest)), 1e-6);
+        assertEquals(1L, table.getReplacements());
+    }
+}
@@ -0,0 +1,222 @@
+package xyz.robbie.tabula;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TurnGenerator finds every legal complete turn for a colour and a set of dice values.
+ *
+ * Only turns which use as many of the dice as possible are kept, as required by BoardInterface.takeTurn(), and turns
+ * which lead to the same final position are collapsed into one, so that each distinct outcome only has to be
+ * looked at once.
+ *
+ * A TurnGenerator reuses its buffers between calls, so each thread needs its own one.
+ */
+public class TurnGenerator {
+
+    /* Encoded moves for each depth of the search, MAX_MOVES_PER_DIE for each */
+    private final int[] moveBuffer = new int[EncodedTurn.MAX_MOVES * EncodedMove.MAX_MOVES_PER_DIE];
+
+    private final int[] dice = new int[EncodedTurn.MAX_MOVES];
+    private final boolean[] used = new boolean[EncodedTurn.MAX_MOVES];
+    private int numberOfDice;
+    private boolean isDouble;
+
+    private SearchBoardInterface board;
+    private Colour colour;
+
+    /* The turns found so far and the hashes of the positions they lead to */
+    private int[] turns = new int[64];
+    private long[] positionHashes = new long[64];
+    private int numberOfTurns;
+    private int movesPerTurn;
+
+    /* Open addressing set of the position hashes in positionHashes, storing (index + 1) so that 0 means empty */
+    private int[] hashSet = new int[256];
+
+    /**
+     * Find every legal turn for the given colour and dice values. The board is left as it was found.
+     *
+     * @param board the board to find turns for
+     * @param colour the colour to move
+     * @param diceValues the dice values available. There will be repeated values in the list if a double is thrown
+     * @return the number of distinct turns found, which is at least 1 as a turn with no moves is returned if no moves can be made
+     */
+    public int generateTurns(SearchBoardInterface board, Colour colour, List<Integer> diceValues) {
+        int[] values = new int[diceValues.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = diceValues.get(i);
+        }
+        return generateTurns(board, colour, values, values.length);
+    }
+
+    /**
+     * Find every legal turn for the given colour and roll. The board is left as it was found.
+     *
+     * @param board the board to find turns for
+     * @param colour the colour to move
+     * @param roll the roll of the dice
+     * @return the number of distinct turns found, which is at least 1 as a turn with no moves is returned if no moves can be made
+     */
+    public int generateTurns(SearchBoardInterface board, Colour colour, DiceRoll roll) {
+        return generateTurns(board, colour, roll.dieValues(), roll.getNumberOfDice());
+    }
+
+    /**
+     * Find every legal turn for the given colour and dice values. The board is left as it was found.
+     *
+     * @param board the board to find turns for
+     * @param colour the colour to move
+     * @param diceValues the dice values available. There will be repeated values if a double is thrown
+     * @param numberOfDice the number of values to use from diceValues, at most four
+     * @return the number of distinct turns found, which is at least 1 as a turn with no moves is returned if no moves can be made
+     */
+    public int generateTurns(SearchBoardInterface board, Colour colour, int[] diceValues, int numberOfDice) {
+        this.board = board;
+        this.colour = colour;
+        this.numberOfDice = numberOfDice;
+        isDouble = numberOfDice > 1;
+        for (int i = 0; i < numberOfDice; i++) {
+            dice[i] = diceValues[i];
+            used[i] = false;
+            isDouble &= diceValues[i] == diceValues[0];
+        }
+
+        numberOfTurns = 0;
+        movesPerTurn = 0;
+        Arrays.fill(hashSet, 0);
+
+        search(0, EncodedTurn.EMPTY, 0);
+
+        this.board = null;
+        return numberOfTurns;
+    }
+
+    /**
+     * @return the number of distinct turns found by the last call to generateTurns()
+     */
+    public int getNumberOfTurns() {
+        return numberOfTurns;
+    }
+
+    /**
+     * @return the number of moves in each of the turns found by the last call to generateTurns()
+     */
+    public int getMovesPerTurn() {
+        return movesPerTurn;
+    }
+
+    /**
+     * @param index the index of the turn, from 0 to getNumberOfTurns() - 1
+     * @return the turn, encoded as described in EncodedTurn
+     */
+    public int getTurn(int index) {
+        return turns[index];
+    }
+
+    /**
+     * @param index the index of the turn, from 0 to getNumberOfTurns() - 1
+     * @return the position hash (see SearchBoardInterface.positionHash()) of the position that the turn leads to
+     */
+    public long getPositionHash(int index) {
+        return positionHashes[index];
+    }
+
+    private void search(int depth, int turn, int minSourceLocation) {
+        boolean canMove = false;
+        int offset = depth * EncodedMove.MAX_MOVES_PER_DIE;
+
+        for (int i = 0; i < numberOfDice; i++) {
+            if (used[i] || isRepeatedDie(i)) {
+                continue;
+            }
+
+            int numberOfMoves = board.generateMoves(colour, dice[i], moveBuffer, offset);
+            canMove |= numberOfMoves > 0;
+
+            used[i] = true;
+            for (int j = offset; j < offset + numberOfMoves; j++) {
+                int move = moveBuffer[j];
+                int sourceLocation = EncodedMove.sourceLocation(move);
+
+                /* With a double, any order of the same moves leads to the same position, so only try them in order of source location */
+                if (isDouble && sourceLocation < minSourceLocation) {
+                    continue;
+                }
+
+                try {
+                    int undo = board.makeUndoableMove(colour, move);
+                    search(depth + 1, EncodedTurn.withMove(turn, depth, move), sourceLocation);
+                    board.unmakeMove(undo);
+                } catch (IllegalMoveException e) {
+                    // Should never happen as the board only generates legal moves
+                    e.printStackTrace();
+                }
+            }
+            used[i] = false;
+        }
+
+        /* If there were moves which were skipped above, the same position is reached by making them in order */
+        if (!canMove) {
+            addTurn(depth, turn);
+        }
+    }
+
+    /* True if an earlier unused die has the same value, so that the same moves are not searched twice */
+    private boolean isRepeatedDie(int dieIndex) {
+        for (int i = 0; i < dieIndex; i++) {
+            if (!used[i] && dice[i] == dice[dieIndex]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addTurn(int numberOfMoves, int turn) {
+        if (numberOfMoves < movesPerTurn) {
+            return;
+        }
+        if (numberOfMoves > movesPerTurn) {
+            /* All dice must be used if possible, so throw away the turns which used fewer */
+            movesPerTurn = numberOfMoves;
+            numberOfTurns = 0;
+            Arrays.fill(hashSet, 0);
+        }
+
+        long positionHash = board.positionHash();
+        int mask = hashSet.length - 1;
+        int slot = (int) (positionHash ^ (positionHash >>> 32)) & mask;
+        while (hashSet[slot] != 0) {
+            if (positionHashes[hashSet[slot] - 1] == positionHash) {
+                return; // Already have a turn leading to this position
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (numberOfTurns == turns.length) {
+            turns = Arrays.copyOf(turns, 2 * numberOfTurns);
+            positionHashes = Arrays.copyOf(positionHashes, 2 * numberOfTurns);
+        }
+        turns[numberOfTurns] = turn;
+        positionHashes[numberOfTurns] = positionHash;
+        numberOfTurns++;
+        hashSet[slot] = numberOfTurns;
+
+        /* Keep the set at most half full */
+        if (2 * numberOfTurns > hashSet.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        hashSet = new int[2 * hashSet.length];
+        int mask = hashSet.length - 1;
+        for (int i = 0; i < numberOfTurns; i++) {
+            int slot = (int) (positionHashes[i] ^ (positionHashes[i] >>> 32)) & mask;
+            while (hashSet[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashSet[slot] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package xyz.robbie.tabula;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class TurnGeneratorTestBasic {
+
+    private TurnGenerator generator;
+    private PackedBoard p;
+    private Random random;
+
+    @Before
+    public void setUp()
+    {
+        generator = new TurnGenerator();
+        p = new PackedBoard();
+        random = new Random(7);
+    }
+
+    /* Find the distinct final positions of the longest turns by trying every order of every move on clones */
+    private int bruteForce(BoardInterface board, Colour colour, List<Integer> diceValues, Map<Integer, Set<Long>> positionsByLength, int depth) throws Exception {
+        boolean moved = false;
+        for (int i = 0; i < diceValues.size(); i++) {
+            List<Integer> remaining = new ArrayList<Integer>(diceValues);
+            int dieValue = remaining.remove(i);
+            for (MoveInterface m : board.possibleMoves(colour, Collections.singletonList(dieValue))) {
+                BoardInterface clone = board.clone();
+                clone.makeMove(colour, m);
+                bruteForce(clone, colour, remaining, positionsByLength, depth + 1);
+                moved = true;
+            }
+        }
+        if (!moved) {
+            if (!positionsByLength.containsKey(depth)) {
+                positionsByLength.put(depth, new HashSet<Long>());
+            }
+            positionsByLength.get(depth).add(ZobristKeys.hash(board));
+        }
+        return positionsByLength.isEmpty() ? 0 : Collections.max(positionsByLength.keySet());
+    }
+
+    private void assertMatchesBruteForce(Colour colour, List<Integer> diceValues) throws Exception {
+        Map<Integer, Set<Long>> positionsByLength = new HashMap<Integer, Set<Long>>();
+        int longest = bruteForce(p.toBoard(), colour, diceValues, positionsByLength, 0);
+        long before = ZobristKeys.hash(p);
+
+        int numberOfTurns = generator.generateTurns(p, colour, diceValues);
+
+        assertEquals(before, ZobristKeys.hash(p));
+        assertEquals(longest, generator.getMovesPerTurn());
+        assertEquals(positionsByLength.get(longest).size(), numberOfTurns);
+
+        /* Every turn must be legal and lead to the position it claims to */
+        for (int i = 0; i < numberOfTurns; i++) {
+            PackedBoard clone = p.clone();
+            clone.takeTurn(colour, EncodedTurn.toTurn(generator.getTurn(i)), diceValues);
+            assertEquals(generator.getPositionHash(i), ZobristKeys.hash(clone));
+            assertEquals(true, positionsByLength.get(longest).contains(generator.getPositionHash(i)));
+        }
+    }
+
+    @Test
+    public void opening_turns_match_brute_force() throws Exception {
+        assertMatchesBruteForce(Colour.GREEN, Arrays.asList(3, 5));
+        assertMatchesBruteForce(Colour.GREEN, Arrays.asList(2, 2, 2, 2));
+    }
+
+    @Test
+    public void turns_match_brute_force_during_game() throws Exception {
+        for (int turn = 0; turn < 60 && p.winner() == null; turn++) {
+            Colour colour = Colour.values()[turn % 2];
+            int d1 = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            int d2 = random.nextInt(DieInterface.NUMBER_OF_SIDES_ON_DIE) + 1;
+            List<Integer> diceValues = (d1 == d2) ? Arrays.asList(d1, d1, d1, d1) : Arrays.asList(d1, d2);
+            assertMatchesBruteForce(colour, diceValues);
+            p.takeTurn(colour, EncodedTurn.toTurn(generator.getTurn(random.nextInt(generator.getNumberOfTurns()))), diceValues);
+        }
+    }
+
+    @Test
+    public void no_moves_gives_empty_turn() throws Exception {
+        p = new PackedBoard(false);
+        for (int i = 0; i < 15; i++) {
+            p.getEndLocation().addPieceGetKnocked(Colour.GREEN);
+            p.getEndLocation().addPieceGetKnocked(Colour.BLUE);
+        }
+        assertEquals(1, generator.generateTurns(p, Colour.GREEN, Arrays.asList(1, 2)));
+        assertEquals(EncodedTurn.EMPTY, generator.getTurn(0));
+        assertEquals(0, generator.getMovesPerTurn());
+    }
+
+    @Test
+    public void encoded_turns_round_trip() throws Exception {
+        int turn = EncodedTurn.EMPTY;
+        turn = EncodedTurn.withMove(turn, 0, EncodedMove.of(0, 6));
+        turn = EncodedTurn.withMove(turn, 1, EncodedMove.of(24, 1));
+        assertEquals(2, EncodedTurn.numberOfMoves(turn));
+        assertEquals(0, EncodedMove.sourceLocation(EncodedTurn.move(turn, 0)));
+        assertEquals(6, EncodedMove.dieValue(EncodedTurn.move(turn, 0)));
+        assertEquals(24, EncodedMove.sourceLocation(EncodedTurn.move(turn, 1)));
+        assertEquals(1, EncodedMove.dieValue(EncodedTurn.move(turn, 1)));
+    }
+}
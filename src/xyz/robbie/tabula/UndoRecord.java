@@ -0,0 +1,67 @@
+package xyz.robbie.tabula;
+
+/**
+ * UndoRecord packs everything needed to take back a single move into one int, so that boards can return it from
+ * SearchBoardInterface.makeUndoableMove() without creating any objects.
+ *
+ * Bits 0-4 hold the source location index, bits 5-9 the target location index and bit 10 the colour that moved.
+ * Bit 11 is set if an opposing piece was knocked off, and bit 12 is set if a knocked piece of the moving colour
+ * had to be transferred to the start location before the move was made.
+ */
+public final class UndoRecord {
+
+    private static final int LOCATION_BITS = 5;
+    private static final int LOCATION_MASK = (1 << LOCATION_BITS) - 1;
+    private static final int TARGET_SHIFT  = LOCATION_BITS;
+    private static final int COLOUR_SHIFT  = 2 * LOCATION_BITS;
+    private static final int KNOCKED_FLAG  = 1 << (COLOUR_SHIFT + 1);
+    private static final int ENTERED_FLAG  = 1 << (COLOUR_SHIFT + 2);
+
+    /* Colour.values() makes a new array every time it is called */
+    private static final Colour[] COLOURS = Colour.values();
+
+    private UndoRecord() {
+    }
+
+    /**
+     * @param colour the colour that moved
+     * @param sourceLocation the index of the location the piece was moved from
+     * @param targetLocation the index of the location the piece was moved to
+     * @param knocked true if and only if an opposing piece was knocked off the target location
+     * @param entered true if and only if a knocked piece was transferred to the start location first
+     * @return the undo record
+     */
+    public static int of(Colour colour, int sourceLocation, int targetLocation, boolean knocked, boolean entered) {
+        return sourceLocation
+                | (targetLocation << TARGET_SHIFT)
+                | (colour.ordinal() << COLOUR_SHIFT)
+                | (knocked ? KNOCKED_FLAG : 0)
+                | (entered ? ENTERED_FLAG : 0);
+    }
+
+    public static Colour colour(int undo) {
+        return COLOURS[(undo >>> COLOUR_SHIFT) & 1];
+    }
+
+    public static int sourceLocation(int undo) {
+        return undo & LOCATION_MASK;
+    }
+
+    public static int targetLocation(int undo) {
+        return (undo >>> TARGET_SHIFT) & LOCATION_MASK;
+    }
+
+    /**
+     * @return true if and only if the move knocked an opposing piece off its target location
+     */
+    public static boolean knocked(int undo) {
+        return (undo & KNOCKED_FLAG) != 0;
+    }
+
+    /**
+     * @return true if and only if a knocked piece was transferred to the start location before the move
+     */
+    public static boolean entered(int undo) {
+        return (undo & ENTERED_FLAG) != 0;
+    }
+}
@@ -0,0 +1,100 @@
+package xyz.robbie.tabula;
+
+import java.util.SplittableRandom;
+
+/**
+ * ZobristKeys holds the random 64-bit keys used to hash board positions. The hash of a position is the exclusive or
+ * of the key for (location, colour, number of pieces) over every location and colour, so two boards with the same
+ * pieces in the same locations always have the same hash.
+ *
+ * A separate key for each colour can be mixed in to tell apart the same position with different colours to move.
+ *
+ * The keys come from a fixed seed, so hashes are the same in every run of the program and can be stored.
+ */
+public final class ZobristKeys {
+
+    private static final long SEED = 0x7AB01A5EEDL;
+
+    /* Counts above this (only possible on an invalid board) share the key for this count */
+    private static final int MAX_COUNT = BoardInterface.PIECES_PER_PLAYER;
+
+    /* Indexed by ((locationIndex * COLOUR_COUNT + colour.ordinal()) * (MAX_COUNT + 1) + count) */
+    private static final long[] keys = new long[PackedBoard.LOCATION_COUNT * PackedBoard.COLOUR_COUNT * (MAX_COUNT + 1)];
+
+    private static final long[] sideToMoveKeys = new long[PackedBoard.COLOUR_COUNT];
+
+    /* Indexed by ((smaller die value - 1) * NUMBER_OF_SIDES_ON_DIE + larger die value - 1) */
+    private static final long[] rollKeys = new long[DieInterface.NUMBER_OF_SIDES_ON_DIE * DieInterface.NUMBER_OF_SIDES_ON_DIE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < keys.length; i++) {
+            /* Leave the key for an empty location as 0, so that empty locations do not change the hash */
+            keys[i] = (i % (MAX_COUNT + 1) == 0) ? 0 : random.nextLong();
+        }
+        for (int i = 0; i < sideToMoveKeys.length; i++) {
+            sideToMoveKeys[i] = random.nextLong();
+        }
+        for (int i = 0; i < rollKeys.length; i++) {
+            rollKeys[i] = random.nextLong();
+        }
+    }
+
+    private ZobristKeys() {
+    }
+
+    /**
+     * @param locationIndex the index of the location, from START_INDEX to KNOCKED_INDEX
+     * @param colour the colour of the pieces
+     * @param count the number of pieces of that colour in that location
+     * @return the key for that number of pieces of that colour in that location
+     */
+    public static long key(int locationIndex, Colour colour, int count) {
+        return keys[(locationIndex * PackedBoard.COLOUR_COUNT + colour.ordinal()) * (MAX_COUNT + 1) + Math.min(Math.max(count, 0), MAX_COUNT)];
+    }
+
+    /**
+     * @param colourToMove the colour which is to move next
+     * @return the key to mix into a position hash for that colour to move
+     */
+    public static long sideToMoveKey(Colour colourToMove) {
+        return sideToMoveKeys[colourToMove.ordinal()];
+    }
+
+    /**
+     * @param dieValue1 the value of one die
+     * @param dieValue2 the value of the other die
+     * @return the key to mix into a position hash for that roll of the dice, which is the same in either order
+     */
+    public static long rollKey(int dieValue1, int dieValue2) {
+        int smaller = Math.min(dieValue1, dieValue2);
+        int larger = Math.max(dieValue1, dieValue2);
+        return rollKeys[(smaller - 1) * DieInterface.NUMBER_OF_SIDES_ON_DIE + larger - 1];
+    }
+
+    /**
+     * Calculate the hash of a board from scratch
+     *
+     * @param board the board to hash
+     * @return the hash of the pieces on the board
+     */
+    public static long hash(BoardInterface board) {
+        long hash = 0;
+        if (board instanceof PackedBoard) {
+            PackedBoard packedBoard = (PackedBoard) board;
+            for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+                for (Colour c : Colour.values()) {
+                    hash ^= key(i, c, packedBoard.numberOfPieces(i, c));
+                }
+            }
+        } else {
+            for (int i = 0; i < PackedBoard.LOCATION_COUNT; i++) {
+                LocationInterface location = PackedBoard.locationOf(board, i);
+                for (Colour c : Colour.values()) {
+                    hash ^= key(i, c, location.numberOfPieces(c));
+                }
+            }
+        }
+        return hash;
+    }
+}